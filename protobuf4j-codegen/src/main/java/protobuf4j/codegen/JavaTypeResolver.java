@@ -0,0 +1,154 @@
+package protobuf4j.codegen;
+
+import com.google.protobuf.DescriptorProtos.DescriptorProto;
+import com.google.protobuf.DescriptorProtos.EnumDescriptorProto;
+import com.google.protobuf.DescriptorProtos.FileDescriptorProto;
+import com.google.protobuf.DescriptorProtos.ServiceDescriptorProto;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 按protoc生成java代码的规则，解析proto中的message/enum对应的java类名
+ * <p>
+ * author: yuanwq
+ */
+class JavaTypeResolver {
+  /**
+   * {@code .package.Message}形式的全名 -> java类名（内部类以{@code .}分隔）
+   */
+  private final Map<String, String> classNames = new HashMap<>();
+  private final Map<String, DescriptorProto> messageTypes = new HashMap<>();
+
+  void addFile(FileDescriptorProto file) {
+    String javaPrefix = javaPackage(file).isEmpty() ? "" : javaPackage(file) + ".";
+    if (!file.getOptions().getJavaMultipleFiles()) {
+      javaPrefix += outerClassName(file) + ".";
+    }
+    String protoPrefix = file.getPackage().isEmpty() ? "." : "." + file.getPackage() + ".";
+    for (DescriptorProto messageType : file.getMessageTypeList()) {
+      addMessage(protoPrefix, javaPrefix, messageType);
+    }
+    for (EnumDescriptorProto enumType : file.getEnumTypeList()) {
+      classNames.put(protoPrefix + enumType.getName(), javaPrefix + enumType.getName());
+    }
+  }
+
+  private void addMessage(String protoPrefix, String javaPrefix, DescriptorProto messageType) {
+    String protoName = protoPrefix + messageType.getName();
+    String className = javaPrefix + messageType.getName();
+    classNames.put(protoName, className);
+    messageTypes.put(protoName, messageType);
+    for (DescriptorProto nestedType : messageType.getNestedTypeList()) {
+      addMessage(protoName + ".", className + ".", nestedType);
+    }
+    for (EnumDescriptorProto enumType : messageType.getEnumTypeList()) {
+      classNames.put(protoName + "." + enumType.getName(), className + "." + enumType.getName());
+    }
+  }
+
+  /**
+   * @param typeName {@code .package.Message}形式的全名
+   */
+  String getClassName(String typeName) {
+    String className = classNames.get(typeName);
+    if (className == null) {
+      throw new IllegalArgumentException("unknown type: " + typeName);
+    }
+    return className;
+  }
+
+  /**
+   * @param typeName {@code .package.Message}形式的全名
+   */
+  DescriptorProto getMessageType(String typeName) {
+    DescriptorProto messageType = messageTypes.get(typeName);
+    if (messageType == null) {
+      throw new IllegalArgumentException("unknown message type: " + typeName);
+    }
+    return messageType;
+  }
+
+  static String javaPackage(FileDescriptorProto file) {
+    return file.getOptions().hasJavaPackage() ? file.getOptions().getJavaPackage() :
+        file.getPackage();
+  }
+
+  /**
+   * 未指定{@code java_outer_classname}时，由文件名转换，与其中定义的类型重名时加上{@code OuterClass}
+   */
+  static String outerClassName(FileDescriptorProto file) {
+    if (file.getOptions().hasJavaOuterClassname()) {
+      return file.getOptions().getJavaOuterClassname();
+    }
+    String baseName = file.getName().substring(file.getName().lastIndexOf('/') + 1);
+    if (baseName.endsWith(".proto")) {
+      baseName = baseName.substring(0, baseName.length() - ".proto".length());
+    }
+    String className = camelCase(baseName);
+    if (hasConflictingClassName(file, className)) {
+      className += "OuterClass";
+    }
+    return className;
+  }
+
+  private static boolean hasConflictingClassName(FileDescriptorProto file, String className) {
+    for (EnumDescriptorProto enumType : file.getEnumTypeList()) {
+      if (enumType.getName().equals(className)) {
+        return true;
+      }
+    }
+    for (ServiceDescriptorProto service : file.getServiceList()) {
+      if (service.getName().equals(className)) {
+        return true;
+      }
+    }
+    for (DescriptorProto messageType : file.getMessageTypeList()) {
+      if (hasConflictingClassName(messageType, className)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean hasConflictingClassName(DescriptorProto messageType, String className) {
+    if (messageType.getName().equals(className)) {
+      return true;
+    }
+    for (EnumDescriptorProto enumType : messageType.getEnumTypeList()) {
+      if (enumType.getName().equals(className)) {
+        return true;
+      }
+    }
+    for (DescriptorProto nestedType : messageType.getNestedTypeList()) {
+      if (hasConflictingClassName(nestedType, className)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * 去掉下划线等字符，首字母、下划线和数字之后的字母大写，同{@code protobuf4j.core.FieldAccessor#javaName}
+   */
+  static String camelCase(String name) {
+    StringBuilder sb = new StringBuilder(name.length());
+    boolean capNext = true;
+    for (int i = 0; i < name.length(); i++) {
+      char c = name.charAt(i);
+      if (c >= 'a' && c <= 'z') {
+        sb.append(capNext ? (char) (c - 'a' + 'A') : c);
+        capNext = false;
+      } else if (c >= 'A' && c <= 'Z') {
+        sb.append(c);
+        capNext = false;
+      } else if (c >= '0' && c <= '9') {
+        sb.append(c);
+        capNext = true;
+      } else {
+        capNext = true;
+      }
+    }
+    return sb.toString();
+  }
+}
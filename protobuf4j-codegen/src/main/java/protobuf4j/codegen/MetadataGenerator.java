@@ -0,0 +1,375 @@
+package protobuf4j.codegen;
+
+import com.google.protobuf.DescriptorProtos.DescriptorProto;
+import com.google.protobuf.DescriptorProtos.FieldDescriptorProto;
+import com.google.protobuf.DescriptorProtos.FileDescriptorProto;
+import com.google.protobuf.DescriptorProtos.OneofDescriptorProto;
+import com.google.protobuf.compiler.PluginProtos.CodeGeneratorRequest;
+import com.google.protobuf.compiler.PluginProtos.CodeGeneratorResponse;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * protoc插件，为每个生成的java顶层类生成{@code <类名>Protobuf4jMetadata}，其中包含各Message的默认实例、字段类型，
+ * 以及以方法引用直接访问字段的accessor，供{@code protobuf4j.core.ProtoMessageHelper}使用，不再需要运行时反射
+ * <p>
+ * 与生成代码的方法名可能不一致的字段（例如与{@code Object}的方法重名、与其他字段的方法重名时protoc会改名）不生成accessor，
+ * 运行时仍以protobuf的反射访问
+ * <p>
+ * author: yuanwq
+ */
+public class MetadataGenerator {
+  static final String PROVIDER_CLASS_SUFFIX = "Protobuf4jMetadata";
+  private static final String CORE_PACKAGE = "protobuf4j.core.";
+  /**
+   * protoc为避免与基类方法冲突而改名的字段
+   */
+  private static final Set<String> FORBIDDEN_FIELD_NAMES = new HashSet<>(Arrays
+      .asList("class", "cached_size", "serialized_size", "default_instance_for_type",
+          "parser_for_type", "all_fields", "descriptor_for_type", "initialization_error_string",
+          "unknown_fields"));
+
+  public static void main(String[] args) throws IOException {
+    CodeGeneratorRequest request = CodeGeneratorRequest.parseFrom(System.in);
+    generate(request).writeTo(System.out);
+    System.out.flush();
+  }
+
+  public static CodeGeneratorResponse generate(CodeGeneratorRequest request) {
+    JavaTypeResolver resolver = new JavaTypeResolver();
+    Map<String, FileDescriptorProto> files = new HashMap<>();
+    for (FileDescriptorProto file : request.getProtoFileList()) {
+      resolver.addFile(file);
+      files.put(file.getName(), file);
+    }
+    CodeGeneratorResponse.Builder response = CodeGeneratorResponse.newBuilder();
+    try {
+      for (String fileName : request.getFileToGenerateList()) {
+        FileDescriptorProto file = files.get(fileName);
+        MetadataGenerator generator = new MetadataGenerator(resolver, file);
+        if (file.getOptions().getJavaMultipleFiles()) {
+          for (DescriptorProto messageType : file.getMessageTypeList()) {
+            response.addFile(generator.generateProvider(messageType.getName(),
+                Arrays.asList(messageType)));
+          }
+        } else if (file.getMessageTypeCount() > 0) {
+          response.addFile(generator.generateProvider(JavaTypeResolver.outerClassName(file),
+              file.getMessageTypeList()));
+        }
+      }
+    } catch (RuntimeException e) {
+      return CodeGeneratorResponse.newBuilder().setError(e.toString()).build();
+    }
+    return response.build();
+  }
+
+  private final JavaTypeResolver resolver;
+  private final FileDescriptorProto file;
+  private final String protoPrefix;
+  private final boolean proto3;
+
+  private MetadataGenerator(JavaTypeResolver resolver, FileDescriptorProto file) {
+    this.resolver = resolver;
+    this.file = file;
+    this.protoPrefix = file.getPackage().isEmpty() ? "." : "." + file.getPackage() + ".";
+    this.proto3 = "proto3".equals(file.getSyntax());
+  }
+
+  /**
+   * @param topLevelName 顶层类的类名
+   * @param messageTypes 顶层类中（不含嵌套的）的message
+   */
+  private CodeGeneratorResponse.File generateProvider(String topLevelName,
+      List<DescriptorProto> messageTypes) {
+    List<String> protoNames = new ArrayList<>();
+    for (DescriptorProto messageType : messageTypes) {
+      collectMessages(protoPrefix + messageType.getName(), messageType, protoNames);
+    }
+    String javaPackage = JavaTypeResolver.javaPackage(file);
+    String className = topLevelName + PROVIDER_CLASS_SUFFIX;
+    StringBuilder sb = new StringBuilder();
+    sb.append("// Generated by protobuf4j-codegen.  DO NOT EDIT!\n");
+    sb.append("// source: ").append(file.getName()).append("\n\n");
+    if (!javaPackage.isEmpty()) {
+      sb.append("package ").append(javaPackage).append(";\n\n");
+    }
+    sb.append("public final class ").append(className).append(" implements ")
+        .append(CORE_PACKAGE).append("IMessageMetadataProvider {\n");
+    sb.append("  @java.lang.Override\n");
+    sb.append("  public java.util.List<").append(CORE_PACKAGE)
+        .append("MessageMetadata<?>> getMessageMetadata() {\n");
+    sb.append("    return java.util.Arrays.<").append(CORE_PACKAGE)
+        .append("MessageMetadata<?>>asList(");
+    for (int i = 0; i < protoNames.size(); i++) {
+      sb.append(i == 0 ? "\n        " : ",\n        ").append("metadata").append(i).append("()");
+    }
+    sb.append(");\n  }\n");
+    for (int i = 0; i < protoNames.size(); i++) {
+      sb.append("\n");
+      appendMessageMetadata(sb, "metadata" + i, protoNames.get(i));
+    }
+    sb.append("}\n");
+    String path = javaPackage.isEmpty() ? "" : javaPackage.replace('.', '/') + "/";
+    return CodeGeneratorResponse.File.newBuilder().setName(path + className + ".java")
+        .setContent(sb.toString()).build();
+  }
+
+  private void collectMessages(String protoName, DescriptorProto messageType,
+      List<String> protoNames) {
+    if (messageType.getOptions().getMapEntry()) {
+      return;
+    }
+    protoNames.add(protoName);
+    for (DescriptorProto nestedType : messageType.getNestedTypeList()) {
+      collectMessages(protoName + "." + nestedType.getName(), nestedType, protoNames);
+    }
+  }
+
+  private void appendMessageMetadata(StringBuilder sb, String methodName, String protoName) {
+    DescriptorProto messageType = resolver.getMessageType(protoName);
+    String messageClass = resolver.getClassName(protoName);
+    String metadataClass = CORE_PACKAGE + "MessageMetadata";
+    Set<String> accessibleFields = findAccessibleFields(messageType);
+    sb.append("  private static ").append(metadataClass).append("<").append(messageClass)
+        .append("> ").append(methodName).append("() {\n");
+    sb.append("    return ").append(metadataClass).append(".newBuilder(").append(messageClass)
+        .append(".class, ").append(messageClass).append(".getDefaultInstance())");
+    for (FieldDescriptorProto field : messageType.getFieldList()) {
+      sb.append("\n        .addField(").append(metadataClass).append(".<").append(messageClass)
+          .append(">field(\"").append(field.getName()).append("\", ");
+      FieldDescriptorProto mapValue = mapValueField(field);
+      if (mapValue != null) {
+        sb.append("java.util.Map.class, ").append(valueClass(mapValue)).append(".class)");
+      } else if (field.getLabel() == FieldDescriptorProto.Label.LABEL_REPEATED) {
+        sb.append("java.util.List.class, ").append(valueClass(field)).append(".class)");
+      } else {
+        sb.append(valueClass(field)).append(".class)");
+      }
+      if (accessibleFields.contains(field.getName())) {
+        appendAccessors(sb, messageClass, field, mapValue != null);
+      }
+      sb.append(")");
+    }
+    sb.append("\n        .build();\n  }\n");
+  }
+
+  private void appendAccessors(StringBuilder sb, String messageClass, FieldDescriptorProto field,
+      boolean map) {
+    String name = JavaTypeResolver.camelCase(field.getName());
+    String prefix = "\n            .";
+    String ref = messageClass + "::";
+    if (map) {
+      sb.append(prefix).append("countGetter(").append(ref).append("get").append(name)
+          .append("Count)");
+      sb.append(prefix).append("mapGetter(").append(ref).append("get").append(name)
+          .append("Map)");
+      return;
+    }
+    FieldDescriptorProto.Type type = field.getType();
+    if (field.getLabel() == FieldDescriptorProto.Label.LABEL_REPEATED) {
+      sb.append(prefix).append("countGetter(").append(ref).append("get").append(name)
+          .append("Count)");
+      if (type != FieldDescriptorProto.Type.TYPE_ENUM) {
+        sb.append(prefix).append("getter(").append(ref).append("get").append(name)
+            .append("List)");
+      }
+      return;
+    }
+    switch (type) {
+      case TYPE_MESSAGE:
+      case TYPE_GROUP:
+        sb.append(prefix).append("getter(").append(ref).append("get").append(name).append(")");
+        sb.append(prefix).append("hasMethod(").append(ref).append("has").append(name)
+            .append(")");
+        return;
+      case TYPE_ENUM:
+        if (proto3) {
+          sb.append(prefix).append("longGetter(").append(ref).append("get").append(name)
+              .append("Value)");
+        }
+        break;
+      default:
+        sb.append(prefix).append("getter(").append(ref).append("get").append(name).append(")");
+        String primitiveGetter = primitiveGetter(type);
+        if (primitiveGetter != null) {
+          sb.append(prefix).append(primitiveGetter).append("(").append(ref).append("get")
+              .append(name).append(")");
+        }
+        sb.append(prefix).append("setter((").append(messageClass).append(".Builder b, ")
+            .append("java.lang.Object v) -> b.set").append(name).append("((")
+            .append(valueClass(field)).append(") v))");
+    }
+    if (!proto3) {
+      sb.append(prefix).append("hasMethod(").append(ref).append("has").append(name).append(")");
+    }
+  }
+
+  private static String primitiveGetter(FieldDescriptorProto.Type type) {
+    switch (valueClass(type)) {
+      case "java.lang.Integer":
+      case "java.lang.Long":
+        return "longGetter";
+      case "java.lang.Float":
+      case "java.lang.Double":
+        return "doubleGetter";
+      case "java.lang.Boolean":
+        return "booleanGetter";
+      default:
+        return null;
+    }
+  }
+
+  /**
+   * @return map字段的value字段，不是map字段时返回null
+   */
+  private FieldDescriptorProto mapValueField(FieldDescriptorProto field) {
+    if (field.getLabel() != FieldDescriptorProto.Label.LABEL_REPEATED ||
+        field.getType() != FieldDescriptorProto.Type.TYPE_MESSAGE) {
+      return null;
+    }
+    DescriptorProto entryType = resolver.getMessageType(field.getTypeName());
+    return entryType.getOptions().getMapEntry() ? entryType.getField(1) : null;
+  }
+
+  /**
+   * @return 单值或元素的java类型，基本类型为包装类型
+   */
+  private String valueClass(FieldDescriptorProto field) {
+    switch (field.getType()) {
+      case TYPE_MESSAGE:
+      case TYPE_GROUP:
+      case TYPE_ENUM:
+        return resolver.getClassName(field.getTypeName());
+      default:
+        return valueClass(field.getType());
+    }
+  }
+
+  private static String valueClass(FieldDescriptorProto.Type type) {
+    switch (type) {
+      case TYPE_INT32:
+      case TYPE_UINT32:
+      case TYPE_SINT32:
+      case TYPE_FIXED32:
+      case TYPE_SFIXED32:
+        return "java.lang.Integer";
+      case TYPE_INT64:
+      case TYPE_UINT64:
+      case TYPE_SINT64:
+      case TYPE_FIXED64:
+      case TYPE_SFIXED64:
+        return "java.lang.Long";
+      case TYPE_FLOAT:
+        return "java.lang.Float";
+      case TYPE_DOUBLE:
+        return "java.lang.Double";
+      case TYPE_BOOL:
+        return "java.lang.Boolean";
+      case TYPE_STRING:
+        return "java.lang.String";
+      case TYPE_BYTES:
+        return "com.google.protobuf.ByteString";
+      default:
+        throw new IllegalArgumentException("not a scalar type: " + type);
+    }
+  }
+
+  /**
+   * @return 生成代码的方法名可以确定的字段：不在{@link #FORBIDDEN_FIELD_NAMES}中，且方法名不与其他字段或oneof冲突
+   */
+  private Set<String> findAccessibleFields(DescriptorProto messageType) {
+    Map<String, Integer> methodCounts = new HashMap<>();
+    for (FieldDescriptorProto field : messageType.getFieldList()) {
+      for (String method : methodNames(field)) {
+        methodCounts.merge(method, 1, Integer::sum);
+      }
+    }
+    for (OneofDescriptorProto oneof : messageType.getOneofDeclList()) {
+      String name = JavaTypeResolver.camelCase(oneof.getName());
+      methodCounts.merge("get" + name + "Case", 1, Integer::sum);
+      methodCounts.merge("clear" + name, 1, Integer::sum);
+    }
+    Set<String> accessibleFields = new HashSet<>();
+    for (FieldDescriptorProto field : messageType.getFieldList()) {
+      if (FORBIDDEN_FIELD_NAMES.contains(field.getName())) {
+        continue;
+      }
+      boolean conflicting = false;
+      for (String method : methodNames(field)) {
+        conflicting |= methodCounts.get(method) > 1;
+      }
+      if (!conflicting) {
+        accessibleFields.add(field.getName());
+      }
+    }
+    return accessibleFields;
+  }
+
+  /**
+   * 字段在生成代码的Message和Builder中的方法名
+   */
+  private List<String> methodNames(FieldDescriptorProto field) {
+    String name = JavaTypeResolver.camelCase(field.getName());
+    List<String> names = new ArrayList<>();
+    FieldDescriptorProto mapValue = mapValueField(field);
+    if (mapValue != null) {
+      for (String suffix : mapValue.getType() == FieldDescriptorProto.Type.TYPE_ENUM && proto3 ?
+          Arrays.asList("", "Value") : Arrays.asList("")) {
+        names.addAll(Arrays
+            .asList("get" + name + suffix, "get" + name + suffix + "Map",
+                "get" + name + suffix + "OrDefault", "get" + name + suffix + "OrThrow",
+                "put" + name + suffix, "putAll" + name + suffix, "getMutable" + name + suffix));
+      }
+      names.addAll(Arrays.asList("get" + name + "Count", "contains" + name, "remove" + name,
+          "clear" + name));
+      return names;
+    }
+    boolean repeated = field.getLabel() == FieldDescriptorProto.Label.LABEL_REPEATED;
+    names.addAll(Arrays.asList("get" + name, "set" + name, "clear" + name));
+    if (repeated) {
+      names.addAll(Arrays.asList("get" + name + "List", "get" + name + "Count", "add" + name,
+          "addAll" + name));
+    } else {
+      names.add("has" + name);
+    }
+    switch (field.getType()) {
+      case TYPE_STRING:
+        names.add("get" + name + "Bytes");
+        names.add("set" + name + "Bytes");
+        if (repeated) {
+          names.add("add" + name + "Bytes");
+        }
+        break;
+      case TYPE_ENUM:
+        names.add("get" + name + "Value");
+        names.add("set" + name + "Value");
+        if (repeated) {
+          names.add("get" + name + "ValueList");
+          names.add("add" + name + "Value");
+          names.add("addAll" + name + "Value");
+        }
+        break;
+      case TYPE_MESSAGE:
+      case TYPE_GROUP:
+        names.add("get" + name + "OrBuilder");
+        names.add("get" + name + "Builder");
+        if (repeated) {
+          names.add("get" + name + "OrBuilderList");
+          names.add("get" + name + "BuilderList");
+          names.add("add" + name + "Builder");
+        } else {
+          names.add("merge" + name);
+        }
+        break;
+      default:
+    }
+    return names;
+  }
+}
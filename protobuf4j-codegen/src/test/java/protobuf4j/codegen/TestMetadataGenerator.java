@@ -0,0 +1,110 @@
+package protobuf4j.codegen;
+
+import com.google.protobuf.DescriptorProtos.DescriptorProto;
+import com.google.protobuf.DescriptorProtos.FieldDescriptorProto;
+import com.google.protobuf.DescriptorProtos.FileDescriptorProto;
+import com.google.protobuf.DescriptorProtos.FileOptions;
+import com.google.protobuf.Descriptors;
+import com.google.protobuf.compiler.PluginProtos.CodeGeneratorRequest;
+import com.google.protobuf.compiler.PluginProtos.CodeGeneratorResponse;
+import org.junit.Test;
+import protobuf4j.test.proto.TestModel;
+
+import static org.junit.Assert.*;
+
+/**
+ * author: yuanwq
+ */
+public class TestMetadataGenerator {
+  private static CodeGeneratorRequest request(Descriptors.FileDescriptor file) {
+    CodeGeneratorRequest.Builder request = CodeGeneratorRequest.newBuilder();
+    for (Descriptors.FileDescriptor dependency : file.getDependencies()) {
+      request.addProtoFile(dependency.toProto());
+    }
+    return request.addProtoFile(file.toProto()).addFileToGenerate(file.getName()).build();
+  }
+
+  @Test
+  public void testGenerate() {
+    CodeGeneratorResponse response =
+        MetadataGenerator.generate(request(TestModel.getDescriptor()));
+    assertFalse(response.getError(), response.hasError());
+    assertEquals(1, response.getFileCount());
+    CodeGeneratorResponse.File file = response.getFile(0);
+    assertEquals("protobuf4j/test/proto/TestModelProtobuf4jMetadata.java", file.getName());
+    String content = file.getContent();
+    assertTrue(content.contains("public final class TestModelProtobuf4jMetadata implements " +
+        "protobuf4j.core.IMessageMetadataProvider"));
+    assertTrue(content.contains(">field(\"enuma\", protobuf4j.test.proto.TestModel.EnumA.class)" +
+        "\n            .longGetter(protobuf4j.test.proto.TestModel.MsgA::getEnumaValue))"));
+    assertTrue(content.contains(
+        ">field(\"create_time\", com.google.protobuf.Timestamp.class)\n            .getter(" +
+            "protobuf4j.test.proto.TestModel.DbMsg::getCreateTime)"));
+    assertTrue(content.contains(">field(\"enuma_map\", java.util.Map.class, " +
+        "protobuf4j.test.proto.TestModel.EnumA.class)"));
+    assertTrue(content.contains(
+        ".setter((protobuf4j.test.proto.TestModel.MsgB.Builder b, java.lang.Object v) -> " +
+            "b.setId((java.lang.String) v))"));
+    // 不为map entry生成
+    assertFalse(content.contains("Entry"));
+  }
+
+  @Test
+  public void testJavaNames() {
+    FileDescriptorProto file =
+        FileDescriptorProto.newBuilder().setName("a/b/foo_bar2baz.proto").setPackage("p.q")
+            .setSyntax("proto3")
+            .addMessageType(DescriptorProto.newBuilder().setName("Msg")
+                .addNestedType(DescriptorProto.newBuilder().setName("Inner"))).build();
+    assertEquals("p.q", JavaTypeResolver.javaPackage(file));
+    assertEquals("FooBar2Baz", JavaTypeResolver.outerClassName(file));
+    JavaTypeResolver resolver = new JavaTypeResolver();
+    resolver.addFile(file);
+    assertEquals("p.q.FooBar2Baz.Msg.Inner", resolver.getClassName(".p.q.Msg.Inner"));
+
+    FileDescriptorProto conflicting = file.toBuilder()
+        .addMessageType(DescriptorProto.newBuilder().setName("FooBar2Baz")).build();
+    assertEquals("FooBar2BazOuterClass", JavaTypeResolver.outerClassName(conflicting));
+
+    FileDescriptorProto multipleFiles = file.toBuilder()
+        .setOptions(FileOptions.newBuilder().setJavaPackage("x.y").setJavaMultipleFiles(true))
+        .build();
+    resolver = new JavaTypeResolver();
+    resolver.addFile(multipleFiles);
+    assertEquals("x.y.Msg.Inner", resolver.getClassName(".p.q.Msg.Inner"));
+    CodeGeneratorResponse response = MetadataGenerator.generate(
+        CodeGeneratorRequest.newBuilder().addProtoFile(multipleFiles)
+            .addFileToGenerate(multipleFiles.getName()).build());
+    assertEquals(1, response.getFileCount());
+    assertEquals("x/y/MsgProtobuf4jMetadata.java", response.getFile(0).getName());
+    assertTrue(response.getFile(0).getContent().contains("x.y.Msg.Inner.getDefaultInstance()"));
+  }
+
+  @Test
+  public void testConflictingFields() {
+    DescriptorProto message = DescriptorProto.newBuilder().setName("Msg")
+        .addField(field("class", 1, FieldDescriptorProto.Label.LABEL_OPTIONAL))
+        .addField(field("foo", 2, FieldDescriptorProto.Label.LABEL_REPEATED))
+        .addField(field("foo_count", 3, FieldDescriptorProto.Label.LABEL_OPTIONAL))
+        .addField(field("bar", 4, FieldDescriptorProto.Label.LABEL_OPTIONAL)).build();
+    FileDescriptorProto file =
+        FileDescriptorProto.newBuilder().setName("msg.proto").setSyntax("proto3")
+            .addMessageType(message).build();
+    CodeGeneratorResponse response = MetadataGenerator.generate(
+        CodeGeneratorRequest.newBuilder().addProtoFile(file).addFileToGenerate(file.getName())
+            .build());
+    assertFalse(response.getError(), response.hasError());
+    String content = response.getFile(0).getContent();
+    assertFalse(content.contains("Msg::getClass"));
+    assertFalse(content.contains("Msg::getFooCount"));
+    assertFalse(content.contains("Msg::getFooList"));
+    assertTrue(content.contains(">field(\"foo\", java.util.List.class, java.lang.Long.class))"));
+    assertTrue(content.contains("Msg::getBar)"));
+  }
+
+  private static FieldDescriptorProto field(String name, int number,
+      FieldDescriptorProto.Label label) {
+    return FieldDescriptorProto.newBuilder().setName(name).setNumber(number).setLabel(label)
+        .setType(FieldDescriptorProto.Type.TYPE_INT64).build();
+  }
+}
@@ -0,0 +1,349 @@
+package protobuf4j.core;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Maps;
+import com.google.common.primitives.Primitives;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Descriptors;
+import com.google.protobuf.Message;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * 访问Message中一个field的值，通过{@link LambdaMetafactory}直接绑定生成代码中的
+ * {@code getXxx}/{@code getXxxList}/{@code hasXxx}/{@code setXxx}方法，可以被JIT内联，基本类型不装箱
+ * <p>
+ * 结果与{@link Message#getField}、{@link Message#hasField}和{@link Message.Builder#setField}一致：
+ * enum/map字段的值、oneof字段是否设置、message字段的赋值，以及找不到对应方法时，仍使用protobuf的反射
+ * <p>
+ * author: yuanwq
+ */
+public final class FieldAccessor {
+  private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+  private final Descriptors.FieldDescriptor fd;
+  private final Function<Message, Object> getter;
+  /**
+   * int32/int64及其变体的值，enum为{@code getXxxValue}，只用于判断是否设置
+   */
+  private final ToLongFunction<Message> longGetter;
+  private final ToDoubleFunction<Message> doubleGetter;
+  private final Predicate<Message> booleanGetter;
+  private final Predicate<Message> hasMethod;
+  private final ToIntFunction<Message> countGetter;
+  private final BiConsumer<Message.Builder, Object> setter;
+  /**
+   * map字段的{@code getXxxMap}
+   */
+  private final Function<Message, Object> mapGetter;
+
+  FieldAccessor(Class<?> messageClass, Class<?> builderClass, Descriptors.FieldDescriptor fd) {
+    this.fd = fd;
+    if (!isVisible(messageClass)) {
+      // 生成的lambda类无法解析到messageClass，全部使用反射
+      this.getter = null;
+      this.longGetter = null;
+      this.doubleGetter = null;
+      this.booleanGetter = null;
+      this.hasMethod = null;
+      this.countGetter = null;
+      this.setter = null;
+      this.mapGetter = null;
+      return;
+    }
+    String name = javaName(fd);
+    Descriptors.FieldDescriptor.JavaType javaType = fd.getJavaType();
+    if (fd.isRepeated()) {
+      this.getter = fd.isMapField() || javaType == Descriptors.FieldDescriptor.JavaType.ENUM ? null :
+          getter(messageClass, "get" + name + "List", List.class);
+      this.longGetter = null;
+      this.doubleGetter = null;
+      this.booleanGetter = null;
+      this.hasMethod = null;
+      this.countGetter = lambda(ToIntFunction.class, "applyAsInt", int.class, messageClass,
+          findMethod(messageClass, "get" + name + "Count", int.class));
+      this.setter = null;
+      this.mapGetter =
+          fd.isMapField() ? getter(messageClass, "get" + name + "Map", Map.class) : null;
+      return;
+    }
+    Class<?> valueType = valueType(messageClass, fd);
+    this.getter = valueType == null ? null : getter(messageClass, "get" + name, valueType);
+    this.longGetter = javaType == Descriptors.FieldDescriptor.JavaType.INT ||
+        javaType == Descriptors.FieldDescriptor.JavaType.LONG ?
+        lambda(ToLongFunction.class, "applyAsLong", long.class, messageClass,
+            findMethod(messageClass, "get" + name, valueType)) :
+        javaType == Descriptors.FieldDescriptor.JavaType.ENUM ?
+            lambda(ToLongFunction.class, "applyAsLong", long.class, messageClass,
+                findMethod(messageClass, "get" + name + "Value", int.class)) : null;
+    this.doubleGetter = javaType == Descriptors.FieldDescriptor.JavaType.FLOAT ||
+        javaType == Descriptors.FieldDescriptor.JavaType.DOUBLE ?
+        lambda(ToDoubleFunction.class, "applyAsDouble", double.class, messageClass,
+            findMethod(messageClass, "get" + name, valueType)) : null;
+    this.booleanGetter = javaType == Descriptors.FieldDescriptor.JavaType.BOOLEAN ?
+        lambda(Predicate.class, "test", boolean.class, messageClass,
+            findMethod(messageClass, "get" + name, boolean.class)) : null;
+    this.hasMethod = lambda(Predicate.class, "test", boolean.class, messageClass,
+        findMethod(messageClass, "has" + name, boolean.class));
+    this.countGetter = null;
+    this.mapGetter = null;
+    this.setter = valueType == null || javaType == Descriptors.FieldDescriptor.JavaType.MESSAGE ?
+        null : setter(builderClass, "set" + name, valueType);
+  }
+
+  /**
+   * 使用编译期生成的访问方法，不需要反射
+   */
+  @SuppressWarnings("unchecked")
+  FieldAccessor(Descriptors.FieldDescriptor fd, MessageMetadata.FieldMetadata<?> metadata) {
+    this.fd = fd;
+    this.getter = (Function<Message, Object>) metadata.getter;
+    this.longGetter = (ToLongFunction<Message>) metadata.longGetter;
+    this.doubleGetter = (ToDoubleFunction<Message>) metadata.doubleGetter;
+    this.booleanGetter = (Predicate<Message>) metadata.booleanGetter;
+    this.hasMethod = (Predicate<Message>) metadata.hasMethod;
+    this.countGetter = (ToIntFunction<Message>) metadata.countGetter;
+    this.setter = metadata.setter;
+    this.mapGetter = (Function<Message, Object>) metadata.mapGetter;
+  }
+
+  public Descriptors.FieldDescriptor getFieldDescriptor() {
+    return fd;
+  }
+
+  /**
+   * @see Message#getField(Descriptors.FieldDescriptor)
+   */
+  public Object get(Message msg) {
+    return getter != null ? getter.apply(msg) : msg.getField(fd);
+  }
+
+  /**
+   * 以{@link Map}形式读取map字段的值，比较时与顺序无关；值为enum时与生成代码的{@code getXxxMap}一致
+   */
+  @SuppressWarnings("unchecked")
+  public Map<Object, Object> getMap(Message msg) {
+    Preconditions.checkState(fd.isMapField(), "not a map field: " + fd.getFullName());
+    if (mapGetter != null) {
+      return (Map<Object, Object>) mapGetter.apply(msg);
+    }
+    Descriptors.FieldDescriptor keyFd = fd.getMessageType().getFields().get(0);
+    Descriptors.FieldDescriptor valueFd = fd.getMessageType().getFields().get(1);
+    List<?> entries = (List<?>) msg.getField(fd);
+    Map<Object, Object> map = Maps.newLinkedHashMapWithExpectedSize(entries.size());
+    for (Object entry : entries) {
+      map.put(((Message) entry).getField(keyFd), ((Message) entry).getField(valueFd));
+    }
+    return map;
+  }
+
+  /**
+   * 不装箱地读取int32/int64类型及其变体的值
+   */
+  public long getLong(Message msg) {
+    if (longGetter != null && fd.getJavaType() != Descriptors.FieldDescriptor.JavaType.ENUM) {
+      return longGetter.applyAsLong(msg);
+    }
+    return ((Number) msg.getField(fd)).longValue();
+  }
+
+  /**
+   * 不装箱地读取float/double类型的值
+   */
+  public double getDouble(Message msg) {
+    return doubleGetter != null ? doubleGetter.applyAsDouble(msg) :
+        ((Number) msg.getField(fd)).doubleValue();
+  }
+
+  /**
+   * 不装箱地读取bool类型的值
+   */
+  public boolean getBoolean(Message msg) {
+    return booleanGetter != null ? booleanGetter.test(msg) : (Boolean) msg.getField(fd);
+  }
+
+  /**
+   * @return repeated字段：不为空；单值字段：与{@link Message#hasField(Descriptors.FieldDescriptor)}一致
+   */
+  public boolean isSet(Message msg) {
+    if (fd.isRepeated()) {
+      return (countGetter != null ? countGetter.applyAsInt(msg) : msg.getRepeatedFieldCount(fd)) > 0;
+    } else if (hasMethod != null) {
+      return hasMethod.test(msg);
+    } else if (fd.getContainingOneof() != null) {
+      return msg.hasField(fd);
+    }
+    // proto3的基本类型字段，不等于默认值即为已设置
+    switch (fd.getJavaType()) {
+      case INT:
+      case LONG:
+      case ENUM:
+        return longGetter != null ? longGetter.applyAsLong(msg) != 0 : msg.hasField(fd);
+      case FLOAT:
+      case DOUBLE:
+        return doubleGetter != null ?
+            Double.doubleToRawLongBits(doubleGetter.applyAsDouble(msg)) != 0 : msg.hasField(fd);
+      case BOOLEAN:
+        return booleanGetter != null ? booleanGetter.test(msg) : msg.hasField(fd);
+      case STRING:
+        return getter != null ? !((String) getter.apply(msg)).isEmpty() : msg.hasField(fd);
+      case BYTE_STRING:
+        return getter != null ? !((ByteString) getter.apply(msg)).isEmpty() : msg.hasField(fd);
+      default:
+        return msg.hasField(fd);
+    }
+  }
+
+  /**
+   * @see Message.Builder#setField(Descriptors.FieldDescriptor, Object)
+   */
+  public void set(Message.Builder builder, Object value) {
+    if (setter != null) {
+      setter.accept(builder, value);
+    } else {
+      builder.setField(fd, value);
+    }
+  }
+
+  /**
+   * 与protoc生成java代码时的命名规则一致：去掉下划线，首字母、下划线和数字之后的字母大写
+   */
+  public static String javaName(Descriptors.FieldDescriptor fd) {
+    String name = fd.getName();
+    StringBuilder sb = new StringBuilder(name.length());
+    boolean capNext = true;
+    for (int i = 0; i < name.length(); i++) {
+      char c = name.charAt(i);
+      if (c >= 'a' && c <= 'z') {
+        sb.append(capNext ? (char) (c - 'a' + 'A') : c);
+        capNext = false;
+      } else if (c >= 'A' && c <= 'Z') {
+        sb.append(c);
+        capNext = false;
+      } else if (c >= '0' && c <= '9') {
+        sb.append(c);
+        capNext = true;
+      } else {
+        capNext = true;
+      }
+    }
+    return sb.toString();
+  }
+
+  private static boolean isVisible(Class<?> messageClass) {
+    try {
+      return Class.forName(messageClass.getName(), false, FieldAccessor.class.getClassLoader()) ==
+          messageClass;
+    } catch (ClassNotFoundException | LinkageError e) {
+      return false;
+    }
+  }
+
+  /**
+   * @return 单值字段的java类型，enum返回null
+   */
+  private static Class<?> valueType(Class<?> messageClass, Descriptors.FieldDescriptor fd) {
+    switch (fd.getJavaType()) {
+      case INT:
+        return int.class;
+      case LONG:
+        return long.class;
+      case FLOAT:
+        return float.class;
+      case DOUBLE:
+        return double.class;
+      case BOOLEAN:
+        return boolean.class;
+      case STRING:
+        return String.class;
+      case BYTE_STRING:
+        return ByteString.class;
+      case MESSAGE:
+        Method method = findMethod(messageClass, "get" + javaName(fd), null);
+        return method == null || !Message.class.isAssignableFrom(method.getReturnType()) ? null :
+            method.getReturnType();
+      default:
+        return null;
+    }
+  }
+
+  /**
+   * @param returnType 为null时不检查返回值类型
+   * @return 找不到或返回值类型不符时返回null，例如与{@link Object}的方法重名时protoc会改名
+   */
+  private static Method findMethod(Class<?> cls, String name, Class<?> returnType,
+      Class<?>... parameterTypes) {
+    try {
+      Method method = cls.getMethod(name, parameterTypes);
+      if (returnType != null && method.getReturnType() != returnType) {
+        return null;
+      }
+      return method;
+    } catch (NoSuchMethodException e) {
+      return null;
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Function<Message, Object> getter(Class<?> messageClass, String name,
+      Class<?> returnType) {
+    Method method = findMethod(messageClass, name, null);
+    if (method == null || !returnType.isAssignableFrom(method.getReturnType())) {
+      return null;
+    }
+    return lambda(Function.class, "apply", Object.class, messageClass, method);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static BiConsumer<Message.Builder, Object> setter(Class<?> builderClass, String name,
+      Class<?> valueType) {
+    Method method = findMethod(builderClass, name, builderClass, valueType);
+    if (method == null) {
+      return null;
+    }
+    try {
+      CallSite site = LambdaMetafactory
+          .metafactory(LOOKUP, "accept", MethodType.methodType(BiConsumer.class),
+              MethodType.methodType(void.class, Object.class, Object.class),
+              LOOKUP.unreflect(method),
+              MethodType.methodType(void.class, builderClass, Primitives.wrap(valueType)));
+      return (BiConsumer<Message.Builder, Object>) site.getTarget().invoke();
+    } catch (Throwable e) {
+      return null;
+    }
+  }
+
+  /**
+   * 以{@code method}实现只有一个参数的{@code functionalInterface}
+   *
+   * @return {@code method}为null或无法生成时返回null
+   */
+  @SuppressWarnings("unchecked")
+  private static <F> F lambda(Class<?> functionalInterface, String samName, Class<?> samReturnType,
+      Class<?> messageClass, Method method) {
+    if (method == null) {
+      return null;
+    }
+    try {
+      CallSite site = LambdaMetafactory
+          .metafactory(LOOKUP, samName, MethodType.methodType(functionalInterface),
+              MethodType.methodType(samReturnType, Object.class), LOOKUP.unreflect(method),
+              MethodType.methodType(samReturnType, messageClass));
+      return (F) site.getTarget().invoke();
+    } catch (Throwable e) {
+      return null;
+    }
+  }
+}
@@ -93,6 +93,21 @@ public interface IMessageHelper<T> {
    */
   T setFieldValue(T message, String fieldName, Object fieldValue);
 
+  /**
+   * 设置message的多个字段，只复制一次message
+   *
+   * @param fieldValues 字段名和字段值，值为null表示清除该字段
+   * @return new message with the fields set
+   * @throws RuntimeException no field found
+   * @see #mutate(Object)
+   */
+  T setFieldValues(T message, Map<String, ?> fieldValues);
+
+  /**
+   * 以{@code message}为基础批量修改字段，只复制一次message
+   */
+  IMessageMutator<T> mutate(T message);
+
   /**
    * 统一处理message的toString
    */
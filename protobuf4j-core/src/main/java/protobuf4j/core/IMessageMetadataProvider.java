@@ -0,0 +1,17 @@
+package protobuf4j.core;
+
+import java.util.List;
+
+/**
+ * protobuf4j-codegen生成的元数据类实现的接口，需要有public的无参构造函数
+ * <p>
+ * author: yuanwq
+ *
+ * @see MessageMetadata
+ */
+public interface IMessageMetadataProvider {
+  /**
+   * @return 顶层类中（包括嵌套的）所有Message的元数据
+   */
+  List<MessageMetadata<?>> getMessageMetadata();
+}
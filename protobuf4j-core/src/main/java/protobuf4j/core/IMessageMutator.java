@@ -0,0 +1,37 @@
+package protobuf4j.core;
+
+/**
+ * 在一次复制中修改message的多个字段，最后通过{@link #build()}得到新的message
+ * <p>
+ * author: yuanwq
+ *
+ * @see IMessageHelper#mutate(Object)
+ */
+public interface IMessageMutator<T> {
+
+  /**
+   * 设置{@code fieldName}字段的值，{@code fieldValue}为null时清除该字段
+   *
+   * @throws RuntimeException no field found
+   */
+  IMessageMutator<T> set(String fieldName, Object fieldValue);
+
+  /**
+   * 清除{@code fieldName}字段，恢复为默认值
+   *
+   * @throws RuntimeException no field found
+   */
+  IMessageMutator<T> clear(String fieldName);
+
+  /**
+   * 向集合类型的{@code fieldName}字段追加一个元素
+   *
+   * @throws RuntimeException no field found, or not a repeated field
+   */
+  IMessageMutator<T> add(String fieldName, Object element);
+
+  /**
+   * @return 应用所有修改后的message
+   */
+  T build();
+}
@@ -0,0 +1,129 @@
+package protobuf4j.core;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.protobuf.Descriptors;
+import com.google.protobuf.FieldMask;
+import com.google.protobuf.Message;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 按字段比较同一类型的两个Message（protoc生成的类），找出变化的字段
+ * <p>
+ * 两边都未设置的字段不读取值；同一个实例（例如{@code toBuilder().build()}后未修改的repeated字段）直接跳过；
+ * 嵌套Message先比较缓存的{@link Message#hashCode()}，不同时无需逐字段比较；map字段的比较与顺序无关
+ * <p>
+ * 字段是否变化与{@link Message#equals(Object)}一致：message字段设置为默认值与未设置也视为变化
+ * <p>
+ * author: yuanwq
+ */
+public final class MessageDiffer {
+  private MessageDiffer() {
+  }
+
+  /**
+   * @return 值不同的字段，按{@link Descriptors.FieldDescriptor#getIndex()}排列
+   */
+  public static List<Descriptors.FieldDescriptor> diff(Message oldMessage, Message newMessage) {
+    checkSameType(oldMessage, newMessage);
+    if (oldMessage == newMessage) {
+      return Collections.emptyList();
+    }
+    ProtoMessageHelper<Message> helper = ProtoMessageHelper.getHelper(newMessage);
+    long[] oldPresence = helper.setFieldMask(oldMessage);
+    long[] newPresence = helper.setFieldMask(newMessage);
+    List<Descriptors.FieldDescriptor> changed = Lists.newArrayList();
+    for (int i = 0; i < helper.getFieldCount(); i++) {
+      boolean oldSet = ProtoMessageHelper.isSet(oldPresence, i);
+      boolean newSet = ProtoMessageHelper.isSet(newPresence, i);
+      if (oldSet != newSet) {
+        changed.add(helper.getFieldDescriptor(i));
+      } else if (oldSet && !fieldEquals(helper.getFieldAccessor(i), oldMessage, newMessage)) {
+        changed.add(helper.getFieldDescriptor(i));
+      }
+    }
+    return changed;
+  }
+
+  /**
+   * @param recursive 为true时，两边都设置了的非map、非repeated的message字段，输出其内部变化的字段路径
+   * @return 变化的字段路径
+   */
+  public static FieldMask diffMask(Message oldMessage, Message newMessage, boolean recursive) {
+    FieldMask.Builder mask = FieldMask.newBuilder();
+    appendPaths(mask, "", oldMessage, newMessage, recursive);
+    return mask.build();
+  }
+
+  private static void appendPaths(FieldMask.Builder mask, String prefix, Message oldMessage,
+      Message newMessage, boolean recursive) {
+    for (Descriptors.FieldDescriptor fd : diff(oldMessage, newMessage)) {
+      String path = prefix + fd.getName();
+      if (recursive && !fd.isRepeated() &&
+          fd.getJavaType() == Descriptors.FieldDescriptor.JavaType.MESSAGE &&
+          oldMessage.hasField(fd) && newMessage.hasField(fd)) {
+        int size = mask.getPathsCount();
+        appendPaths(mask, path + ".", (Message) oldMessage.getField(fd),
+            (Message) newMessage.getField(fd), true);
+        if (mask.getPathsCount() == size) {
+          // 只有unknown fields不同
+          mask.addPaths(path);
+        }
+      } else {
+        mask.addPaths(path);
+      }
+    }
+  }
+
+  private static void checkSameType(Message oldMessage, Message newMessage) {
+    Preconditions.checkNotNull(oldMessage);
+    Preconditions.checkNotNull(newMessage);
+    Preconditions.checkArgument(
+        oldMessage.getDescriptorForType() == newMessage.getDescriptorForType(),
+        "different message types: " + oldMessage.getDescriptorForType().getFullName() + ", " +
+            newMessage.getDescriptorForType().getFullName());
+  }
+
+  private static boolean fieldEquals(FieldAccessor accessor, Message oldMessage,
+      Message newMessage) {
+    Descriptors.FieldDescriptor fd = accessor.getFieldDescriptor();
+    if (fd.isMapField()) {
+      Map<Object, Object> oldMap = accessor.getMap(oldMessage);
+      Map<Object, Object> newMap = accessor.getMap(newMessage);
+      return oldMap == newMap || oldMap.size() == newMap.size() && oldMap.equals(newMap);
+    }
+    Object oldValue = accessor.get(oldMessage);
+    Object newValue = accessor.get(newMessage);
+    if (oldValue == newValue) {
+      return true;
+    } else if (!fd.isRepeated()) {
+      return valueEquals(oldValue, newValue);
+    }
+    List<?> oldList = (List<?>) oldValue;
+    List<?> newList = (List<?>) newValue;
+    if (oldList.size() != newList.size()) {
+      return false;
+    }
+    for (int i = 0; i < oldList.size(); i++) {
+      if (!valueEquals(oldList.get(i), newList.get(i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Message缓存了hashCode，hashCode不同时不需要逐字段比较
+   */
+  private static boolean valueEquals(Object oldValue, Object newValue) {
+    if (oldValue == newValue) {
+      return true;
+    } else if (oldValue instanceof Message && oldValue.hashCode() != newValue.hashCode()) {
+      return false;
+    }
+    return oldValue.equals(newValue);
+  }
+}
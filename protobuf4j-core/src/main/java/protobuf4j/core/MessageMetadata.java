@@ -0,0 +1,258 @@
+package protobuf4j.core;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.protobuf.Descriptors;
+import com.google.protobuf.Message;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * protobuf4j-codegen在编译期为Message生成的元数据：默认实例、各字段的类型和直接引用生成代码方法的accessor，
+ * {@link ProtoMessageHelper}存在元数据时不再通过反射查找
+ * <p>
+ * 生成的类与Message所在的顶层类同包，名为{@code <顶层类名>}{@value #PROVIDER_CLASS_SUFFIX}，
+ * 实现{@link IMessageMetadataProvider}
+ * <p>
+ * author: yuanwq
+ */
+public final class MessageMetadata<T extends Message> {
+  public static final String PROVIDER_CLASS_SUFFIX = "Protobuf4jMetadata";
+
+  /**
+   * 每个顶层类中各Message的元数据，没有生成元数据时为空
+   */
+  private static final ClassValue<Map<Class<?>, MessageMetadata<?>>> providers =
+      new ClassValue<Map<Class<?>, MessageMetadata<?>>>() {
+        @Override
+        protected Map<Class<?>, MessageMetadata<?>> computeValue(Class<?> type) {
+          return loadProvider(type);
+        }
+      };
+
+  /**
+   * @return {@code messageType}的元数据，没有生成时返回null
+   */
+  @SuppressWarnings("unchecked")
+  @Nullable
+  public static <T extends Message> MessageMetadata<T> find(@Nonnull Class<T> messageType) {
+    Preconditions.checkNotNull(messageType);
+    Class<?> topLevel = messageType;
+    while (topLevel.getEnclosingClass() != null) {
+      topLevel = topLevel.getEnclosingClass();
+    }
+    return (MessageMetadata<T>) providers.get(topLevel).get(messageType);
+  }
+
+  private static Map<Class<?>, MessageMetadata<?>> loadProvider(Class<?> topLevel) {
+    Class<?> providerClass;
+    try {
+      providerClass = Class.forName(topLevel.getName() + PROVIDER_CLASS_SUFFIX, true,
+          topLevel.getClassLoader());
+    } catch (ClassNotFoundException e) {
+      return Collections.emptyMap();
+    }
+    IMessageMetadataProvider provider;
+    try {
+      provider = (IMessageMetadataProvider) providerClass.newInstance();
+    } catch (Exception e) {
+      throw new RuntimeException("fail to create metadata provider " + providerClass.getName(), e);
+    }
+    Map<Class<?>, MessageMetadata<?>> metadataMap = new IdentityHashMap<>();
+    for (MessageMetadata<?> metadata : provider.getMessageMetadata()) {
+      metadataMap.put(metadata.getMessageType(), metadata);
+    }
+    return metadataMap;
+  }
+
+  public static <T extends Message> Builder<T> newBuilder(@Nonnull Class<T> messageType,
+      @Nonnull T defaultInstance) {
+    return new Builder<>(messageType, defaultInstance);
+  }
+
+  /**
+   * 单值字段
+   *
+   * @param name 字段名，用于检查与Message的定义是否一致
+   */
+  public static <T extends Message> FieldMetadata<T> field(@Nonnull String name,
+      @Nonnull Class<?> type) {
+    return new FieldMetadata<>(name, type, type);
+  }
+
+  /**
+   * repeated或map字段
+   *
+   * @param name      字段名，用于检查与Message的定义是否一致
+   * @param valueType repeated字段的元素类型，或map字段的value类型
+   */
+  public static <T extends Message> FieldMetadata<T> field(@Nonnull String name,
+      @Nonnull Class<?> type, @Nonnull Class<?> valueType) {
+    return new FieldMetadata<>(name, type, valueType);
+  }
+
+  private final Class<T> messageType;
+  private final T defaultInstance;
+  private final List<FieldMetadata<T>> fields;
+
+  private MessageMetadata(Builder<T> builder) {
+    this.messageType = builder.messageType;
+    this.defaultInstance = builder.defaultInstance;
+    this.fields = Collections.unmodifiableList(builder.fields);
+  }
+
+  public Class<T> getMessageType() {
+    return messageType;
+  }
+
+  public T getDefaultInstance() {
+    return defaultInstance;
+  }
+
+  public int getFieldCount() {
+    return fields.size();
+  }
+
+  /**
+   * @param fieldIndex {@link Descriptors.FieldDescriptor#getIndex()}
+   */
+  public FieldMetadata<T> getField(int fieldIndex) {
+    return fields.get(fieldIndex);
+  }
+
+  /**
+   * @return 字段与{@code descriptor}的定义是否一致，不一致时说明生成元数据后Message又重新生成过
+   */
+  public boolean matches(Descriptors.Descriptor descriptor) {
+    List<Descriptors.FieldDescriptor> fds = descriptor.getFields();
+    if (fds.size() != fields.size()) {
+      return false;
+    }
+    for (int i = 0; i < fds.size(); i++) {
+      if (!fds.get(i).getName().equals(fields.get(i).getName())) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  public static class Builder<T extends Message> {
+    private final Class<T> messageType;
+    private final T defaultInstance;
+    private final List<FieldMetadata<T>> fields = Lists.newArrayList();
+
+    private Builder(Class<T> messageType, T defaultInstance) {
+      this.messageType = Preconditions.checkNotNull(messageType);
+      this.defaultInstance = Preconditions.checkNotNull(defaultInstance);
+    }
+
+    /**
+     * 按字段的定义顺序添加
+     */
+    public Builder<T> addField(@Nonnull FieldMetadata<T> field) {
+      fields.add(Preconditions.checkNotNull(field));
+      return this;
+    }
+
+    public MessageMetadata<T> build() {
+      return new MessageMetadata<>(this);
+    }
+  }
+
+  /**
+   * 字段的类型（同{@link ProtoMessageHelper#getFieldType(String)}）和访问方法，未设置的方法由
+   * {@link FieldAccessor}通过protobuf的反射处理
+   */
+  public static class FieldMetadata<T extends Message> {
+    private final String name;
+    private final Class<?> type;
+    private final Class<?> valueType;
+    Function<T, Object> getter;
+    ToLongFunction<T> longGetter;
+    ToDoubleFunction<T> doubleGetter;
+    Predicate<T> booleanGetter;
+    Predicate<T> hasMethod;
+    ToIntFunction<T> countGetter;
+    BiConsumer<Message.Builder, Object> setter;
+    Function<T, Object> mapGetter;
+
+    private FieldMetadata(String name, Class<?> type, Class<?> valueType) {
+      this.name = Preconditions.checkNotNull(name);
+      this.type = Preconditions.checkNotNull(type);
+      this.valueType = Preconditions.checkNotNull(valueType);
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public Class<?> getType() {
+      return type;
+    }
+
+    public Class<?> getValueType() {
+      return valueType;
+    }
+
+    /**
+     * 与{@link Message#getField}一致的值，enum/map字段不设置
+     */
+    public FieldMetadata<T> getter(Function<T, Object> getter) {
+      this.getter = getter;
+      return this;
+    }
+
+    /**
+     * int32/int64及其变体，enum为{@code getXxxValue}
+     */
+    public FieldMetadata<T> longGetter(ToLongFunction<T> longGetter) {
+      this.longGetter = longGetter;
+      return this;
+    }
+
+    public FieldMetadata<T> doubleGetter(ToDoubleFunction<T> doubleGetter) {
+      this.doubleGetter = doubleGetter;
+      return this;
+    }
+
+    public FieldMetadata<T> booleanGetter(Predicate<T> booleanGetter) {
+      this.booleanGetter = booleanGetter;
+      return this;
+    }
+
+    public FieldMetadata<T> hasMethod(Predicate<T> hasMethod) {
+      this.hasMethod = hasMethod;
+      return this;
+    }
+
+    public FieldMetadata<T> countGetter(ToIntFunction<T> countGetter) {
+      this.countGetter = countGetter;
+      return this;
+    }
+
+    /**
+     * message字段不设置
+     */
+    @SuppressWarnings("unchecked")
+    public <B extends Message.Builder> FieldMetadata<T> setter(BiConsumer<B, Object> setter) {
+      this.setter = (BiConsumer<Message.Builder, Object>) setter;
+      return this;
+    }
+
+    public FieldMetadata<T> mapGetter(Function<T, Object> mapGetter) {
+      this.mapGetter = mapGetter;
+      return this;
+    }
+  }
+}
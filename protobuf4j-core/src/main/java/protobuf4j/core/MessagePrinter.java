@@ -0,0 +1,315 @@
+package protobuf4j.core;
+
+import com.google.common.base.Preconditions;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Descriptors;
+import com.google.protobuf.GeneratedMessageV3;
+import com.google.protobuf.Message;
+import com.google.protobuf.TextFormat;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 以单行的unicode text format输出Message，用于日志
+ * <p>
+ * 直接写入{@link StringBuilder}，不生成中间字符串；字符串中的{@code \r}/{@code \n}转义输出，中文等字符原样输出。
+ * 输出超过{@code maxLength}个字符时，截断其余的字段、repeated/map的元素或string/bytes的内容，并以
+ * {@link #TRUNCATED}标记
+ * <p>
+ * author: yuanwq
+ *
+ * @see TextFormat#printToUnicodeString(com.google.protobuf.MessageOrBuilder)
+ */
+public class MessagePrinter {
+  public static final int DEFAULT_MAX_LENGTH = 4096;
+  public static final String TRUNCATED = "...(truncated)";
+  /**
+   * {@link ProtoMessageHelper#toString(Message)}使用的printer
+   */
+  public static final MessagePrinter DEFAULT = new MessagePrinter(DEFAULT_MAX_LENGTH);
+
+  private final int maxLength;
+
+  /**
+   * @param maxLength 输出的最大字符数（不含截断标记），{@link Integer#MAX_VALUE}表示不截断
+   */
+  public MessagePrinter(int maxLength) {
+    Preconditions.checkArgument(maxLength > 0, "maxLength(>0): " + maxLength);
+    this.maxLength = maxLength;
+  }
+
+  public int getMaxLength() {
+    return maxLength;
+  }
+
+  /**
+   * 输出{@code message}的所有字段，格式如{@code int32: 1 msgb { id: "a" } int32_arr: 1 int32_arr: 2}
+   *
+   * @return {@code sb}
+   */
+  public StringBuilder print(Message message, StringBuilder sb) {
+    int start = sb.length();
+    int limit = maxLength > Integer.MAX_VALUE - start ? Integer.MAX_VALUE : start + maxLength;
+    printFields(message, sb, limit, false);
+    return sb;
+  }
+
+  public void print(Message message, Appendable out) throws IOException {
+    if (out instanceof StringBuilder) {
+      print(message, (StringBuilder) out);
+    } else {
+      out.append(print(message, new StringBuilder()));
+    }
+  }
+
+  /**
+   * @return {@code 类型全名{字段}}，{@code message}为null时返回{@code "null"}
+   */
+  public String printToString(@Nullable Message message) {
+    if (message == null) {
+      return "null";
+    }
+    StringBuilder sb = new StringBuilder();
+    sb.append(message.getDescriptorForType().getFullName()).append('{');
+    return print(message, sb).append('}').toString();
+  }
+
+  /**
+   * @param separate 第一个字段前是否需要分隔符
+   * @return 是否完整输出，被截断时返回false
+   */
+  private boolean printFields(Message message, StringBuilder sb, int limit, boolean separate) {
+    if (message instanceof GeneratedMessageV3) {
+      ProtoMessageHelper<?> helper = ProtoMessageHelper.getHelper(message);
+      for (int i = 0; i < helper.getFieldCount(); i++) {
+        FieldAccessor accessor = helper.getFieldAccessor(i);
+        if (!accessor.isSet(message)) {
+          continue;
+        }
+        if (!printField(message, accessor, sb, limit, separate)) {
+          return false;
+        }
+        separate = true;
+      }
+    } else {
+      for (Map.Entry<Descriptors.FieldDescriptor, Object> entry : message.getAllFields()
+          .entrySet()) {
+        if (!printField(entry.getKey(), entry.getValue(), sb, limit, separate)) {
+          return false;
+        }
+        separate = true;
+      }
+    }
+    if (!message.getUnknownFields().asMap().isEmpty()) {
+      if (separate) {
+        sb.append(' ');
+      }
+      sb.append(TextFormat.shortDebugString(message.getUnknownFields()));
+    }
+    return true;
+  }
+
+  private boolean printField(Message message, FieldAccessor accessor, StringBuilder sb, int limit,
+      boolean separate) {
+    Descriptors.FieldDescriptor fd = accessor.getFieldDescriptor();
+    if (fd.isRepeated()) {
+      return printField(fd, accessor.get(message), sb, limit, separate);
+    }
+    if (!startField(fd, sb, limit, separate)) {
+      return false;
+    }
+    // 基本类型不装箱
+    switch (fd.getJavaType()) {
+      case INT:
+      case LONG:
+        sb.append(": ");
+        appendLong(fd, accessor.getLong(message), sb);
+        return true;
+      case FLOAT:
+        sb.append(": ").append((float) accessor.getDouble(message));
+        return true;
+      case DOUBLE:
+        sb.append(": ").append(accessor.getDouble(message));
+        return true;
+      case BOOLEAN:
+        sb.append(": ").append(accessor.getBoolean(message));
+        return true;
+      default:
+        return printValue(fd, accessor.get(message), sb, limit);
+    }
+  }
+
+  private boolean printField(Descriptors.FieldDescriptor fd, Object value, StringBuilder sb,
+      int limit, boolean separate) {
+    if (!fd.isRepeated()) {
+      return startField(fd, sb, limit, separate) && printValue(fd, value, sb, limit);
+    }
+    for (Object element : (List<?>) value) {
+      if (!startField(fd, sb, limit, separate) || !printValue(fd, element, sb, limit)) {
+        return false;
+      }
+      separate = true;
+    }
+    return true;
+  }
+
+  /**
+   * 输出分隔符和字段名，已超过长度时输出截断标记
+   */
+  private boolean startField(Descriptors.FieldDescriptor fd, StringBuilder sb, int limit,
+      boolean separate) {
+    if (separate) {
+      sb.append(' ');
+    }
+    if (sb.length() >= limit) {
+      sb.append(TRUNCATED);
+      return false;
+    }
+    if (fd.isExtension()) {
+      sb.append('[').append(fd.getFullName()).append(']');
+    } else {
+      sb.append(fd.getName());
+    }
+    return true;
+  }
+
+  private boolean printValue(Descriptors.FieldDescriptor fd, Object value, StringBuilder sb,
+      int limit) {
+    switch (fd.getJavaType()) {
+      case MESSAGE:
+        sb.append(" {");
+        boolean complete;
+        if (fd.isMapField()) {
+          Descriptors.FieldDescriptor keyFd = fd.getMessageType().getFields().get(0);
+          Descriptors.FieldDescriptor valueFd = fd.getMessageType().getFields().get(1);
+          Message entry = (Message) value;
+          complete = printField(keyFd, entry.getField(keyFd), sb, limit, true) &&
+              printField(valueFd, entry.getField(valueFd), sb, limit, true);
+        } else {
+          complete = printFields((Message) value, sb, limit, true);
+        }
+        sb.append(" }");
+        return complete;
+      case INT:
+      case LONG:
+        sb.append(": ");
+        appendLong(fd, ((Number) value).longValue(), sb);
+        return true;
+      case ENUM:
+        sb.append(": ").append(((Descriptors.EnumValueDescriptor) value).getName());
+        return true;
+      case STRING:
+        sb.append(": ");
+        return appendString((String) value, sb, limit);
+      case BYTE_STRING:
+        sb.append(": ");
+        return appendBytes((ByteString) value, sb, limit);
+      default:
+        // float/double/bool
+        sb.append(": ").append(value);
+        return true;
+    }
+  }
+
+  private static void appendLong(Descriptors.FieldDescriptor fd, long value, StringBuilder sb) {
+    switch (fd.getType()) {
+      case UINT32:
+      case FIXED32:
+        sb.append(value & 0xFFFFFFFFL);
+        break;
+      case UINT64:
+      case FIXED64:
+        sb.append(value < 0 ? Long.toUnsignedString(value) : Long.toString(value));
+        break;
+      default:
+        sb.append(value);
+    }
+  }
+
+  private static boolean appendString(String value, StringBuilder sb, int limit) {
+    sb.append('"');
+    for (int i = 0; i < value.length(); i++) {
+      if (sb.length() >= limit) {
+        sb.append(TRUNCATED).append('"');
+        return false;
+      }
+      char c = value.charAt(i);
+      switch (c) {
+        case '"':
+          sb.append("\\\"");
+          break;
+        case '\\':
+          sb.append("\\\\");
+          break;
+        case '\n':
+          sb.append("\\n");
+          break;
+        case '\r':
+          sb.append("\\r");
+          break;
+        default:
+          sb.append(c);
+      }
+    }
+    sb.append('"');
+    return true;
+  }
+
+  /**
+   * 与{@link TextFormat}对bytes的转义一致：可打印的ASCII字符原样输出，其他字节以8进制转义
+   */
+  private static boolean appendBytes(ByteString value, StringBuilder sb, int limit) {
+    sb.append('"');
+    for (int i = 0; i < value.size(); i++) {
+      if (sb.length() >= limit) {
+        sb.append(TRUNCATED).append('"');
+        return false;
+      }
+      int b = value.byteAt(i) & 0xFF;
+      switch (b) {
+        case 0x07:
+          sb.append("\\a");
+          break;
+        case '\b':
+          sb.append("\\b");
+          break;
+        case '\f':
+          sb.append("\\f");
+          break;
+        case '\n':
+          sb.append("\\n");
+          break;
+        case '\r':
+          sb.append("\\r");
+          break;
+        case '\t':
+          sb.append("\\t");
+          break;
+        case 0x0b:
+          sb.append("\\v");
+          break;
+        case '\\':
+          sb.append("\\\\");
+          break;
+        case '\'':
+          sb.append("\\'");
+          break;
+        case '"':
+          sb.append("\\\"");
+          break;
+        default:
+          if (b >= 0x20 && b < 0x7F) {
+            sb.append((char) b);
+          } else {
+            sb.append('\\').append((char) ('0' + (b >>> 6))).append((char) ('0' + ((b >>> 3) & 7)))
+                .append((char) ('0' + (b & 7)));
+          }
+      }
+    }
+    sb.append('"');
+    return true;
+  }
+}
@@ -8,28 +8,44 @@ import com.google.protobuf.ProtocolMessageEnum;
 import org.apache.commons.lang3.reflect.MethodUtils;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * author: yuanwq
  * date: 2018/7/9
  */
 public class ProtoEnumHelper<T extends ProtocolMessageEnum> implements IEnumHelper<T> {
-  @SuppressWarnings("rawtypes")
-  private static ConcurrentHashMap<String, ProtoEnumHelper> helperMap = new ConcurrentHashMap<>();
+  /**
+   * 每个枚举类的helper，首次访问时创建，之后的查找无锁、不分配对象
+   */
+  private static final ClassValue<ProtoEnumHelper<?>> helpers =
+      new ClassValue<ProtoEnumHelper<?>>() {
+        @SuppressWarnings("unchecked")
+        @Override
+        protected ProtoEnumHelper<?> computeValue(Class<?> type) {
+          return new ProtoEnumHelper<>((Class<ProtocolMessageEnum>) type);
+        }
+      };
 
   @SuppressWarnings("unchecked")
   public static <T extends ProtocolMessageEnum> ProtoEnumHelper<T> getHelper(
       @Nonnull Class<T> cls) {
     Preconditions.checkNotNull(cls);
-    if (!helperMap.contains(cls.getName())) {
-      ProtoEnumHelper<T> helper = new ProtoEnumHelper<>(cls);
-      helperMap.putIfAbsent(cls.getName(), helper);
+    return (ProtoEnumHelper<T>) helpers.get(cls);
+  }
+
+  /**
+   * 预先创建{@code classes}的helper，避免首次访问时的反射开销
+   */
+  public static void preload(
+      @Nonnull Iterable<? extends Class<? extends ProtocolMessageEnum>> classes) {
+    for (Class<? extends ProtocolMessageEnum> cls : classes) {
+      getHelper(cls);
     }
-    return helperMap.get(cls.getName());
   }
 
   @SuppressWarnings("unchecked")
@@ -38,11 +54,28 @@ public class ProtoEnumHelper<T extends ProtocolMessageEnum> implements IEnumHelp
     return (ProtoEnumHelper<T>) getHelper(enumValue.getClass());
   }
 
+  /**
+   * number范围不超过该值（或不超过值个数的2倍）时使用数组直接查找
+   */
+  private static final int MAX_SPARSE_DENSE_RANGE = 64;
+
   private final Class<T> cls;
   private final Descriptors.EnumDescriptor descriptor;
   private final T unrecognized;
   private final Map<Integer, T> numberValueMap = Maps.newLinkedHashMap();
   private final Map<String, T> nameValueMap = Maps.newLinkedHashMap();
+  /**
+   * number连续（或较密集）时，以{@code number - minNumber}为下标直接查找，否则在有序的numbers中二分查找
+   */
+  private final int minNumber;
+  private final T[] denseValues;
+  private final int[] sortedNumbers;
+  private final T[] sortedValues;
+  /**
+   * 按name的hash开放寻址的表，可以直接用{@link CharSequence}或字符/字节数组的片段查找，不需要创建String
+   */
+  private final String[] nameTable;
+  private final T[] nameTableValues;
 
   @SuppressWarnings("unchecked")
   public ProtoEnumHelper(Class<T> cls) {
@@ -62,6 +95,40 @@ public class ProtoEnumHelper<T extends ProtocolMessageEnum> implements IEnumHelp
     } catch (IllegalAccessException | NoSuchFieldException e) {
       throw new RuntimeException(e);
     }
+
+    int count = numberValueMap.size();
+    this.sortedNumbers = new int[count];
+    this.sortedValues = (T[]) new ProtocolMessageEnum[count];
+    int i = 0;
+    for (Integer number : numberValueMap.keySet()) {
+      sortedNumbers[i++] = number;
+    }
+    Arrays.sort(sortedNumbers);
+    for (i = 0; i < count; i++) {
+      sortedValues[i] = numberValueMap.get(sortedNumbers[i]);
+    }
+    this.minNumber = count == 0 ? 0 : sortedNumbers[0];
+    long range = count == 0 ? 0 : (long) sortedNumbers[count - 1] - minNumber + 1;
+    if (range <= Math.max(MAX_SPARSE_DENSE_RANGE, 2L * count)) {
+      this.denseValues = (T[]) new ProtocolMessageEnum[(int) range];
+      for (i = 0; i < count; i++) {
+        denseValues[sortedNumbers[i] - minNumber] = sortedValues[i];
+      }
+    } else {
+      this.denseValues = null;
+    }
+
+    int tableSize = Integer.highestOneBit(Math.max(nameValueMap.size(), 1) * 2) << 1;
+    this.nameTable = new String[tableSize];
+    this.nameTableValues = (T[]) new ProtocolMessageEnum[tableSize];
+    for (Map.Entry<String, T> entry : nameValueMap.entrySet()) {
+      int index = entry.getKey().hashCode() & (tableSize - 1);
+      while (nameTable[index] != null) {
+        index = (index + 1) & (tableSize - 1);
+      }
+      nameTable[index] = entry.getKey();
+      nameTableValues[index] = entry.getValue();
+    }
   }
 
   private Object invokeStaticMethodUnchecked(String method) {
@@ -107,12 +174,106 @@ public class ProtoEnumHelper<T extends ProtocolMessageEnum> implements IEnumHelp
 
   @Override
   public T of(String name) {
-    return nameValueMap.get(name);
+    if (name == null) {
+      return null;
+    }
+    int mask = nameTable.length - 1;
+    for (int index = name.hashCode() & mask; nameTable[index] != null;
+        index = (index + 1) & mask) {
+      if (nameTable[index].equals(name)) {
+        return nameTableValues[index];
+      }
+    }
+    return null;
+  }
+
+  /**
+   * 同{@link #of(String)}，{@code name}不是String时不创建String
+   */
+  public T of(@Nullable CharSequence name) {
+    if (name == null || name instanceof String) {
+      return of((String) name);
+    }
+    int hash = 0;
+    for (int i = 0; i < name.length(); i++) {
+      hash = 31 * hash + name.charAt(i);
+    }
+    int mask = nameTable.length - 1;
+    for (int index = hash & mask; nameTable[index] != null; index = (index + 1) & mask) {
+      String candidate = nameTable[index];
+      if (candidate.length() == name.length() && candidate.contentEquals(name)) {
+        return nameTableValues[index];
+      }
+    }
+    return null;
+  }
+
+  /**
+   * 根据{@code buf[offset, offset + len)}中的name查找枚举值，用于直接从解析器的缓冲区查找
+   */
+  public T of(char[] buf, int offset, int len) {
+    Preconditions.checkPositionIndexes(offset, offset + len, buf.length);
+    int hash = 0;
+    for (int i = offset; i < offset + len; i++) {
+      hash = 31 * hash + buf[i];
+    }
+    int mask = nameTable.length - 1;
+    for (int index = hash & mask; nameTable[index] != null; index = (index + 1) & mask) {
+      String candidate = nameTable[index];
+      if (candidate.length() == len && regionEquals(candidate, buf, offset)) {
+        return nameTableValues[index];
+      }
+    }
+    return null;
+  }
+
+  /**
+   * 同{@link #of(char[], int, int)}，{@code buf}为UTF-8（或ASCII）编码；枚举值的name只包含ASCII字符，
+   * 按字节比较即可
+   */
+  public T of(byte[] buf, int offset, int len) {
+    Preconditions.checkPositionIndexes(offset, offset + len, buf.length);
+    int hash = 0;
+    for (int i = offset; i < offset + len; i++) {
+      hash = 31 * hash + (buf[i] & 0xFF);
+    }
+    int mask = nameTable.length - 1;
+    for (int index = hash & mask; nameTable[index] != null; index = (index + 1) & mask) {
+      String candidate = nameTable[index];
+      if (candidate.length() == len && regionEquals(candidate, buf, offset)) {
+        return nameTableValues[index];
+      }
+    }
+    return null;
+  }
+
+  private static boolean regionEquals(String name, char[] buf, int offset) {
+    for (int i = 0; i < name.length(); i++) {
+      if (name.charAt(i) != buf[offset + i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean regionEquals(String name, byte[] buf, int offset) {
+    for (int i = 0; i < name.length(); i++) {
+      if (name.charAt(i) != (buf[offset + i] & 0xFF)) {
+        return false;
+      }
+    }
+    return true;
   }
 
   @Override
   public T forNumber(int number) {
-    return numberValueMap.get(number);
+    if (denseValues != null) {
+      // 溢出后也会落在下标范围之外
+      int index = number - minNumber;
+      return index >= 0 && index < denseValues.length ? denseValues[index] : null;
+    }
+    int index = Arrays.binarySearch(sortedNumbers, number);
+    return index >= 0 ? sortedValues[index] : null;
   }
 
   @Override
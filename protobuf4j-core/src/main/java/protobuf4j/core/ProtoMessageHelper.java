@@ -10,7 +10,6 @@ import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.lang.reflect.Method;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * 处理Protobuf Message反射的辅助类
@@ -19,18 +18,31 @@ import java.util.concurrent.ConcurrentHashMap;
  * date: 2018/7/2
  */
 public class ProtoMessageHelper<T extends Message> implements IMessageHelper<T> {
-  @SuppressWarnings("rawtypes")
-  private static ConcurrentHashMap<String, ProtoMessageHelper> helperMap =
-      new ConcurrentHashMap<>();
+  /**
+   * 每个Message类的helper，首次访问时创建，之后的查找无锁、不分配对象
+   */
+  private static final ClassValue<ProtoMessageHelper<?>> helpers =
+      new ClassValue<ProtoMessageHelper<?>>() {
+        @SuppressWarnings("unchecked")
+        @Override
+        protected ProtoMessageHelper<?> computeValue(Class<?> type) {
+          return new ProtoMessageHelper<>((Class<Message>) type);
+        }
+      };
 
   @SuppressWarnings("unchecked")
   public static <T extends Message> ProtoMessageHelper<T> getHelper(@Nonnull Class<T> cls) {
     Preconditions.checkNotNull(cls);
-    if (!helperMap.contains(cls.getName())) {
-      ProtoMessageHelper<T> helper = new ProtoMessageHelper<>(cls);
-      helperMap.putIfAbsent(cls.getName(), helper);
+    return (ProtoMessageHelper<T>) helpers.get(cls);
+  }
+
+  /**
+   * 预先创建{@code classes}的helper，避免首次访问时的反射开销
+   */
+  public static void preload(@Nonnull Iterable<? extends Class<? extends Message>> classes) {
+    for (Class<? extends Message> cls : classes) {
+      getHelper(cls);
     }
-    return helperMap.get(cls.getName());
   }
 
   @SuppressWarnings("unchecked")
@@ -45,10 +57,7 @@ public class ProtoMessageHelper<T extends Message> implements IMessageHelper<T>
    * @see #toString(Message)
    */
   public static String printToString(@Nullable Message message) {
-    if (message == null) {
-      return "null";
-    }
-    return getHelper(message).toString(message);
+    return MessagePrinter.DEFAULT.printToString(message);
   }
 
   private static final String METHOD_GET_DESCRIPTOR = "getDescriptor";
@@ -58,7 +67,24 @@ public class ProtoMessageHelper<T extends Message> implements IMessageHelper<T>
   private Descriptors.Descriptor descriptor;
   private Map<String, Descriptors.FieldDescriptor> field2descriptor;
   private Map<String, Class<?>> field2type;
+  /**
+   * 按{@link Descriptors.FieldDescriptor#getIndex()}索引的field
+   */
+  private Descriptors.FieldDescriptor[] fieldDescriptors;
+  /**
+   * 按{@link Descriptors.FieldDescriptor#getIndex()}索引的{@link FieldAccessor}
+   */
+  private FieldAccessor[] fieldAccessors;
+  /**
+   * 单值float/double字段，proto3中值为-0.0时不会被序列化
+   */
+  private FieldAccessor[] floatingFieldAccessors;
   private Message.Builder internalBuilder;
+  /**
+   * 编译期生成的元数据，没有时通过反射处理
+   */
+  @Nullable
+  private MessageMetadata<T> metadata;
 
   private ProtoMessageHelper(Class<T> messageType) {
     Preconditions.checkNotNull(messageType);
@@ -67,8 +93,20 @@ public class ProtoMessageHelper<T extends Message> implements IMessageHelper<T>
   }
 
   private void doInit() {
-    this.descriptor = (Descriptors.Descriptor) invokeStaticMethodUnchecked(METHOD_GET_DESCRIPTOR);
-    this.internalBuilder = newBuilder();
+    this.metadata = MessageMetadata.find(messageType);
+    if (metadata != null) {
+      this.descriptor = metadata.getDefaultInstance().getDescriptorForType();
+      if (!metadata.matches(descriptor)) {
+        this.metadata = null;
+      }
+    }
+    if (metadata != null) {
+      this.internalBuilder = metadata.getDefaultInstance().newBuilderForType();
+    } else {
+      this.descriptor =
+          (Descriptors.Descriptor) invokeStaticMethodUnchecked(METHOD_GET_DESCRIPTOR);
+      this.internalBuilder = (Message.Builder) invokeStaticMethodUnchecked(METHOD_NEW_BUILDER);
+    }
     ImmutableMap.Builder<String, Descriptors.FieldDescriptor> field2descriptorBuilder =
         ImmutableMap.builder();
     ImmutableMap.Builder<String, Class<?>> field2typeBuilder = ImmutableMap.builder();
@@ -76,10 +114,27 @@ public class ProtoMessageHelper<T extends Message> implements IMessageHelper<T>
     for (Descriptors.FieldDescriptor fd : this.descriptor.getFields()) {
       String name = fd.getName();
       field2descriptorBuilder.put(name, fd);
-      field2typeBuilder.put(name, resolveFieldType(fd));
+      field2typeBuilder.put(name, metadata != null ? metadata.getField(fd.getIndex()).getType() :
+          resolveFieldType(fd));
     }
     this.field2descriptor = field2descriptorBuilder.build();
     this.field2type = field2typeBuilder.build();
+    this.fieldDescriptors = this.descriptor.getFields().toArray(new Descriptors.FieldDescriptor[0]);
+    this.fieldAccessors = new FieldAccessor[fieldDescriptors.length];
+    for (Descriptors.FieldDescriptor fd : fieldDescriptors) {
+      fieldAccessors[fd.getIndex()] = metadata != null ?
+          new FieldAccessor(fd, metadata.getField(fd.getIndex())) :
+          new FieldAccessor(messageType, internalBuilder.getClass(), fd);
+    }
+    List<FieldAccessor> floatingFields = new ArrayList<>();
+    for (FieldAccessor accessor : fieldAccessors) {
+      Descriptors.FieldDescriptor fd = accessor.getFieldDescriptor();
+      if (!fd.isRepeated() && (fd.getJavaType() == Descriptors.FieldDescriptor.JavaType.FLOAT ||
+          fd.getJavaType() == Descriptors.FieldDescriptor.JavaType.DOUBLE)) {
+        floatingFields.add(accessor);
+      }
+    }
+    this.floatingFieldAccessors = floatingFields.toArray(new FieldAccessor[0]);
   }
 
   /**
@@ -143,6 +198,8 @@ public class ProtoMessageHelper<T extends Message> implements IMessageHelper<T>
     Preconditions.checkArgument(fd.isRepeated(), "not a repeated field: " + fd.getFullName());
     if (fd.isMapField()) {
       return MapEntry.class;
+    } else if (isOwnField(fd) && metadata != null) {
+      return metadata.getField(fd.getIndex()).getValueType();
     }
     switch (fd.getJavaType()) {
       case MESSAGE:
@@ -172,6 +229,9 @@ public class ProtoMessageHelper<T extends Message> implements IMessageHelper<T>
 
   public Class<?> resolveMapFieldValueType(Descriptors.FieldDescriptor fd) {
     Preconditions.checkArgument(fd.isMapField(), "not a map field: " + fd.getFullName());
+    if (isOwnField(fd) && metadata != null) {
+      return metadata.getField(fd.getIndex()).getValueType();
+    }
     Descriptors.FieldDescriptor valueFd = fd.getMessageType().findFieldByName("value");
     switch (valueFd.getJavaType()) {
       case MESSAGE:
@@ -203,7 +263,7 @@ public class ProtoMessageHelper<T extends Message> implements IMessageHelper<T>
 
   @SuppressWarnings("unchecked")
   public <R extends Message.Builder> R newBuilder() {
-    return (R) invokeStaticMethodUnchecked(METHOD_NEW_BUILDER);
+    return (R) defaultValue().newBuilderForType();
   }
 
   public Message.Builder newBuilderForField(String fieldName) {
@@ -228,7 +288,18 @@ public class ProtoMessageHelper<T extends Message> implements IMessageHelper<T>
 
   @Override
   public boolean isEmpty(T msg) {
-    return msg == null || defaultValue().equals(msg);
+    if (msg == null) {
+      return true;
+    } else if (msg.getSerializedSize() != 0) {
+      // 序列化长度是缓存的，设置了任何字段（包括设置为默认值的message字段）或unknown field时都不为0
+      return false;
+    }
+    for (FieldAccessor accessor : floatingFieldAccessors) {
+      if (accessor.isSet(msg)) {
+        return false;
+      }
+    }
+    return true;
   }
 
   @Override
@@ -261,6 +332,36 @@ public class ProtoMessageHelper<T extends Message> implements IMessageHelper<T>
     return field2descriptor.get(fieldName);
   }
 
+  /**
+   * @param fieldIndex {@link Descriptors.FieldDescriptor#getIndex()}
+   */
+  public Descriptors.FieldDescriptor getFieldDescriptor(int fieldIndex) {
+    return fieldDescriptors[fieldIndex];
+  }
+
+  /**
+   * @param fieldIndex {@link Descriptors.FieldDescriptor#getIndex()}
+   */
+  public FieldAccessor getFieldAccessor(int fieldIndex) {
+    return fieldAccessors[fieldIndex];
+  }
+
+  /**
+   * @return {@code fd}属于其他Message时返回null
+   */
+  @Nullable
+  public FieldAccessor getFieldAccessor(Descriptors.FieldDescriptor fd) {
+    return isOwnField(fd) ? fieldAccessors[fd.getIndex()] : null;
+  }
+
+  private boolean isOwnField(Descriptors.FieldDescriptor fd) {
+    return fd.getContainingType() == descriptor;
+  }
+
+  public int getFieldCount() {
+    return fieldDescriptors.length;
+  }
+
   public Map<String, Descriptors.FieldDescriptor> getFieldDescriptorMap() {
     return field2descriptor;
   }
@@ -284,40 +385,158 @@ public class ProtoMessageHelper<T extends Message> implements IMessageHelper<T>
 
   @Override
   public boolean isFieldSet(T msg, String fieldName) {
-    Descriptors.FieldDescriptor fd = checkFieldDescriptor(fieldName);
-    if (fd.isRepeated()) {
-      return !((Collection<?>) msg.getField(fd)).isEmpty();
+    return isFieldSet(msg, checkFieldDescriptor(fieldName));
+  }
+
+  /**
+   * @param fieldIndex {@link Descriptors.FieldDescriptor#getIndex()}
+   * @see #isFieldSet(Message, String)
+   */
+  public boolean isFieldSet(T msg, int fieldIndex) {
+    return fieldAccessors[fieldIndex].isSet(msg);
+  }
+
+  /**
+   * @see #isFieldSet(Message, String)
+   */
+  public boolean isFieldSet(T msg, Descriptors.FieldDescriptor fd) {
+    FieldAccessor accessor = getFieldAccessor(fd);
+    if (accessor != null) {
+      return accessor.isSet(msg);
+    } else if (fd.isRepeated()) {
+      return msg.getRepeatedFieldCount(fd) > 0;
     }
     return msg.hasField(fd);
   }
 
+  /**
+   * @return 按{@link Descriptors.FieldDescriptor#getIndex()}记录各字段是否设置的bitmap，
+   * 第i个字段对应{@code mask[i >>> 6]}的第{@code i & 63}位
+   * @see #isFieldSet(Message, String)
+   * @see #isSet(long[], int)
+   */
+  public long[] setFieldMask(T msg) {
+    return mergeSetFieldMask(new long[(fieldAccessors.length + 63) >>> 6], msg);
+  }
+
+  /**
+   * 将{@code msg}中设置了的字段合并到{@code mask}中，{@code mask}中已有的字段不再检查，用于统计一批message设置了的字段
+   *
+   * @param mask 长度不小于{@link #setFieldMask(Message)}的返回值
+   * @return {@code mask}
+   */
+  public long[] mergeSetFieldMask(long[] mask, T msg) {
+    for (int i = 0; i < fieldAccessors.length; i++) {
+      long bit = 1L << i;
+      if ((mask[i >>> 6] & bit) == 0 && fieldAccessors[i].isSet(msg)) {
+        mask[i >>> 6] |= bit;
+      }
+    }
+    return mask;
+  }
+
+  /**
+   * @param fieldIndex {@link Descriptors.FieldDescriptor#getIndex()}
+   * @see #setFieldMask(Message)
+   */
+  public static boolean isSet(long[] setFieldMask, int fieldIndex) {
+    return (setFieldMask[fieldIndex >>> 6] & (1L << fieldIndex)) != 0;
+  }
+
   @Override
   public Object getFieldValue(T msg, String fieldName) {
-    Descriptors.FieldDescriptor fd = checkFieldDescriptor(fieldName);
-    return msg.getField(fd);
+    return getFieldValue(msg, checkFieldDescriptor(fieldName));
+  }
+
+  /**
+   * @param fieldIndex {@link Descriptors.FieldDescriptor#getIndex()}
+   * @see #getFieldValue(Message, String)
+   */
+  public Object getFieldValue(T msg, int fieldIndex) {
+    return fieldAccessors[fieldIndex].get(msg);
+  }
+
+  /**
+   * @see #getFieldValue(Message, String)
+   */
+  public Object getFieldValue(T msg, Descriptors.FieldDescriptor fd) {
+    FieldAccessor accessor = getFieldAccessor(fd);
+    return accessor != null ? accessor.get(msg) : msg.getField(fd);
   }
 
-  @SuppressWarnings("unchecked")
   @Override
   public T setFieldValue(T msg, String fieldName, Object fieldValue) {
-    Descriptors.FieldDescriptor fd = checkFieldDescriptor(fieldName);
-    return (T) msg.toBuilder().setField(fd, fieldValue).build();
+    return setFieldValue(msg, checkFieldDescriptor(fieldName), fieldValue);
+  }
+
+  /**
+   * @param fieldIndex {@link Descriptors.FieldDescriptor#getIndex()}
+   * @see #setFieldValue(Message, String, Object)
+   */
+  public T setFieldValue(T msg, int fieldIndex, Object fieldValue) {
+    return setFieldValue(msg, fieldDescriptors[fieldIndex], fieldValue);
+  }
+
+  /**
+   * @see #setFieldValue(Message, String, Object)
+   */
+  @SuppressWarnings("unchecked")
+  public T setFieldValue(T msg, Descriptors.FieldDescriptor fd, Object fieldValue) {
+    Message.Builder builder = msg.toBuilder();
+    setField(builder, fd, fieldValue);
+    return (T) builder.build();
+  }
+
+  @Override
+  public T setFieldValues(T msg, Map<String, ?> fieldValues) {
+    ProtoMessageMutator<T> mutator = mutate(msg);
+    for (Map.Entry<String, ?> entry : fieldValues.entrySet()) {
+      mutator.set(entry.getKey(), entry.getValue());
+    }
+    return mutator.build();
+  }
+
+  /**
+   * @param fieldValues 值为null表示清除该字段
+   * @see #setFieldValues(Message, Map)
+   */
+  public T setFields(T msg, Map<Descriptors.FieldDescriptor, ?> fieldValues) {
+    return mutate(msg).setAll(fieldValues).build();
   }
 
+  @Override
+  public ProtoMessageMutator<T> mutate(T msg) {
+    Preconditions.checkNotNull(msg);
+    return new ProtoMessageMutator<>(this, msg);
+  }
+
+  /**
+   * 设置{@code builder}的字段值，优先调用生成代码中的setter
+   *
+   * @see Message.Builder#setField(Descriptors.FieldDescriptor, Object)
+   */
+  public void setField(Message.Builder builder, Descriptors.FieldDescriptor fd, Object value) {
+    FieldAccessor accessor = getFieldAccessor(fd);
+    if (accessor != null) {
+      accessor.set(builder, value);
+    } else {
+      builder.setField(fd, value);
+    }
+  }
+
+  /**
+   * @see MessagePrinter#DEFAULT
+   */
   @Override
   public String toString(T msg) {
-    String text;
+    StringBuilder sb = new StringBuilder();
+    sb.append(descriptor.getFullName()).append('{');
     if (msg == null) {
-      text = "null";
+      sb.append("null");
     } else {
-      // TextFormat.shortDebugString 中文是类似"\350\212\261\345"这样的编码，无法可视化
-      // 所以，我们用下面这种方式，略tricky
-      text = TextFormat.printToUnicodeString(msg);
-      // 把内容中的\r转义，以免在进行文件读取一行时因为\r分行导致出错
-      text = text.replace("\r", "\\r");
-      // text format中换行都是\n，把它们变成空格
-      text = text.replace("\n", " ");
+      MessagePrinter.DEFAULT.print(msg, sb);
     }
-    return String.format("%s{%s}", descriptor.getFullName(), text);
+    return sb.append('}').toString();
   }
+
 }
@@ -0,0 +1,78 @@
+package protobuf4j.core;
+
+import com.google.common.base.Preconditions;
+import com.google.protobuf.Descriptors;
+import com.google.protobuf.Message;
+
+import java.util.Map;
+
+/**
+ * 在同一个builder上修改Protobuf Message的多个字段，字段可以以名称或{@link Descriptors.FieldDescriptor}指定
+ * <p>
+ * author: yuanwq
+ *
+ * @see ProtoMessageHelper#mutate(Message)
+ */
+public class ProtoMessageMutator<T extends Message> implements IMessageMutator<T> {
+  private final ProtoMessageHelper<T> messageHelper;
+  private final Message.Builder builder;
+
+  ProtoMessageMutator(ProtoMessageHelper<T> messageHelper, T message) {
+    this.messageHelper = messageHelper;
+    this.builder = message.toBuilder();
+  }
+
+  @Override
+  public ProtoMessageMutator<T> set(String fieldName, Object fieldValue) {
+    return set(messageHelper.checkFieldDescriptor(fieldName), fieldValue);
+  }
+
+  public ProtoMessageMutator<T> set(Descriptors.FieldDescriptor fd, Object fieldValue) {
+    if (fieldValue == null) {
+      builder.clearField(fd);
+    } else {
+      messageHelper.setField(builder, fd, fieldValue);
+    }
+    return this;
+  }
+
+  /**
+   * @param fieldValues 值为null表示清除该字段
+   */
+  public ProtoMessageMutator<T> setAll(Map<Descriptors.FieldDescriptor, ?> fieldValues) {
+    for (Map.Entry<Descriptors.FieldDescriptor, ?> entry : fieldValues.entrySet()) {
+      set(entry.getKey(), entry.getValue());
+    }
+    return this;
+  }
+
+  @Override
+  public ProtoMessageMutator<T> clear(String fieldName) {
+    return clear(messageHelper.checkFieldDescriptor(fieldName));
+  }
+
+  public ProtoMessageMutator<T> clear(Descriptors.FieldDescriptor fd) {
+    builder.clearField(fd);
+    return this;
+  }
+
+  @Override
+  public ProtoMessageMutator<T> add(String fieldName, Object element) {
+    return add(messageHelper.checkFieldDescriptor(fieldName), element);
+  }
+
+  /**
+   * @param element map字段的元素为{@link com.google.protobuf.MapEntry}
+   */
+  public ProtoMessageMutator<T> add(Descriptors.FieldDescriptor fd, Object element) {
+    Preconditions.checkArgument(fd.isRepeated(), "not a repeated field: " + fd.getFullName());
+    builder.addRepeatedField(fd, element);
+    return this;
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public T build() {
+    return (T) builder.build();
+  }
+}
@@ -3,6 +3,7 @@ package protobuf4j.core;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.*;
 import com.fasterxml.jackson.databind.cfg.MutableConfigOverride;
 import com.fasterxml.jackson.databind.deser.Deserializers;
@@ -108,19 +109,34 @@ public class ProtobufObjectMapper extends ObjectMapper {
   protected static class ProtoEnumDeserializer<T extends ProtocolMessageEnum>
       extends StdDeserializer<T> {
     private final Class<T> cls;
+    private final ProtoEnumHelper<T> helper;
 
     protected ProtoEnumDeserializer(Class<?> vc) {
       super(vc);
       this.cls = (Class<T>) vc;
+      this.helper = ProtoEnumHelper.getHelper(this.cls);
     }
 
     @Override
     public T deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+      if (p.hasToken(JsonToken.VALUE_NUMBER_INT) &&
+          p.getNumberType() == JsonParser.NumberType.INT) {
+        return helper.forNumber(p.getIntValue());
+      }
+      if (p.hasToken(JsonToken.VALUE_STRING)) {
+        // 直接在解析器的缓冲区中查找name，不创建String
+        char[] buf = p.getTextCharacters();
+        int offset = p.getTextOffset();
+        int len = p.getTextLength();
+        if (len > 0 && !Character.isDigit(buf[offset])) {
+          return helper.of(buf, offset, len);
+        }
+      }
       String text = p.getText();
       if (StringUtils.isNumeric(text)) {
-        return ProtoEnumHelper.getHelper(this.cls).forNumber(Integer.parseInt(text));
+        return helper.forNumber(Integer.parseInt(text));
       }
-      return ProtoEnumHelper.getHelper(this.cls).of(text);
+      return helper.of(text);
     }
   }
 
@@ -8,38 +8,50 @@ import com.google.protobuf.ProtocolMessageEnum;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.io.IOException;
-import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Created by tuqc on 15-5-24.
  */
 public abstract class Codecs {
 
-  private static ConcurrentHashMap<Class<?>, ProtoMessageCodec<?>> protoCodecMap =
-      new ConcurrentHashMap<>();
-  private static ConcurrentHashMap<Class<?>, ProtoEnumCodec<?>> protoEnumCodecMap =
-      new ConcurrentHashMap<>();
+  private static final ClassValue<ProtoMessageCodec<?>> protoCodecs =
+      new ClassValue<ProtoMessageCodec<?>>() {
+        @SuppressWarnings("unchecked")
+        @Override
+        protected ProtoMessageCodec<?> computeValue(Class<?> type) {
+          return new ProtoMessageCodec<>((Class<GeneratedMessageV3>) type);
+        }
+      };
+  private static final ClassValue<ProtoEnumCodec<?>> protoEnumCodecs =
+      new ClassValue<ProtoEnumCodec<?>>() {
+        @SuppressWarnings("unchecked")
+        @Override
+        protected ProtoEnumCodec<?> computeValue(Class<?> type) {
+          return new ProtoEnumCodec<>((Class<ProtocolMessageEnum>) type);
+        }
+      };
 
   @SuppressWarnings("unchecked")
   public static <T extends GeneratedMessageV3> ProtoMessageCodec<T> getProtoMessageCodec(
       @Nonnull Class<T> cls) {
     Preconditions.checkNotNull(cls);
-    if (!protoCodecMap.contains(cls)) {
-      ProtoMessageCodec<T> codec = new ProtoMessageCodec<>(cls);
-      protoCodecMap.putIfAbsent(cls, codec);
-    }
-    return (ProtoMessageCodec<T>) protoCodecMap.get(cls);
+    return (ProtoMessageCodec<T>) protoCodecs.get(cls);
   }
 
   @SuppressWarnings("unchecked")
   public static <T extends ProtocolMessageEnum> ProtoEnumCodec<T> getProtoEnumCodec(
       @Nonnull Class<T> cls) {
     Preconditions.checkNotNull(cls);
-    if (!protoEnumCodecMap.contains(cls)) {
-      ProtoEnumCodec<T> codec = new ProtoEnumCodec<>(cls);
-      protoEnumCodecMap.putIfAbsent(cls, codec);
+    return (ProtoEnumCodec<T>) protoEnumCodecs.get(cls);
+  }
+
+  /**
+   * 预先创建{@code classes}的codec，避免首次访问时的反射开销
+   */
+  public static void preload(@Nonnull Iterable<? extends Class<?>> classes) {
+    for (Class<?> cls : classes) {
+      getCodec(cls);
     }
-    return (ProtoEnumCodec<T>) protoEnumCodecMap.get(cls);
   }
 
   @SuppressWarnings("unchecked")
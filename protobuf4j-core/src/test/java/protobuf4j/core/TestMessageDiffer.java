@@ -0,0 +1,81 @@
+package protobuf4j.core;
+
+import com.google.common.collect.Lists;
+import com.google.protobuf.Descriptors;
+import com.google.protobuf.FieldMask;
+import com.google.protobuf.InvalidProtocolBufferException;
+import org.junit.Test;
+import protobuf4j.test.MsgsForTest;
+import protobuf4j.test.proto.TestModel;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * author: yuanwq
+ */
+public class TestMessageDiffer {
+  private final ProtoMessageHelper<TestModel.MsgA> helper =
+      ProtoMessageHelper.getHelper(TestModel.MsgA.class);
+
+  private List<Descriptors.FieldDescriptor> fields(String... names) {
+    List<Descriptors.FieldDescriptor> fds = Lists.newArrayList();
+    for (String name : names) {
+      fds.add(helper.getFieldDescriptor(name));
+    }
+    return fds;
+  }
+
+  @Test
+  public void testDiff() throws InvalidProtocolBufferException {
+    TestModel.MsgA msgA = MsgsForTest.allSetMsgA;
+    assertEquals(Collections.emptyList(), MessageDiffer.diff(msgA, msgA));
+    assertEquals(Collections.emptyList(), MessageDiffer.diff(msgA, msgA.toBuilder().build()));
+    assertEquals(Collections.emptyList(),
+        MessageDiffer.diff(msgA, TestModel.MsgA.parseFrom(msgA.toByteString())));
+
+    TestModel.MsgA changed = msgA.toBuilder().setInt32(100).clearString().addInt32Arr(5)
+        .putInt32Map("new", 1).setMsgb(msgA.getMsgb().toBuilder().setId("changed")).build();
+    assertEquals(fields("int32", "string", "msgb", "int32_arr", "int32_map"),
+        MessageDiffer.diff(msgA, changed));
+    assertEquals(fields("int32", "string", "msgb", "int32_arr", "int32_map"),
+        MessageDiffer.diff(changed, msgA));
+
+    // message字段设置为默认值也是变化
+    TestModel.MsgA empty = TestModel.MsgA.getDefaultInstance();
+    TestModel.MsgA defaultMsgb =
+        empty.toBuilder().setMsgb(TestModel.MsgB.getDefaultInstance()).build();
+    assertNotEquals(empty, defaultMsgb);
+    assertEquals(fields("msgb"), MessageDiffer.diff(empty, defaultMsgb));
+
+    // map与顺序无关
+    TestModel.MsgA map1 = empty.toBuilder().putInt32Map("a", 1).putInt32Map("b", 2).build();
+    TestModel.MsgA map2 = empty.toBuilder().putInt32Map("b", 2).putInt32Map("a", 1).build();
+    assertEquals(Collections.emptyList(), MessageDiffer.diff(map1, map2));
+
+    try {
+      MessageDiffer.diff(empty, TestModel.MsgB.getDefaultInstance());
+      fail();
+    } catch (IllegalArgumentException e) {
+      System.out.println(e.getMessage());
+    }
+  }
+
+  @Test
+  public void testDiffMask() {
+    TestModel.MsgA msgA = MsgsForTest.allSetMsgA;
+    TestModel.MsgA changed = msgA.toBuilder().setInt64(100)
+        .setMsgb(msgA.getMsgb().toBuilder().setId("changed").setCreateTime(1)).build();
+    assertEquals(FieldMask.newBuilder().addPaths("int64").addPaths("msgb").build(),
+        MessageDiffer.diffMask(msgA, changed, false));
+    assertEquals(FieldMask.newBuilder().addPaths("int64").addPaths("msgb.id")
+        .addPaths("msgb.create_time").build(), MessageDiffer.diffMask(msgA, changed, true));
+
+    TestModel.MsgA cleared = msgA.toBuilder().clearMsgb().build();
+    assertEquals(FieldMask.newBuilder().addPaths("msgb").build(),
+        MessageDiffer.diffMask(msgA, cleared, true));
+    assertEquals(FieldMask.getDefaultInstance(), MessageDiffer.diffMask(msgA, msgA, true));
+  }
+}
@@ -4,6 +4,8 @@ import org.junit.Before;
 import org.junit.Test;
 import protobuf4j.test.proto.TestModel;
 
+import java.nio.charset.StandardCharsets;
+
 import static org.junit.Assert.*;
 
 /**
@@ -55,6 +57,54 @@ public class TestProtoEnumHelper {
     assertEquals(null, helper.forNumber(10000));
   }
 
+  @Test
+  public void testFindValueSparse() {
+    ProtoEnumHelper<TestModel.EnumSparse> sparseHelper =
+        ProtoEnumHelper.getHelper(TestModel.EnumSparse.class);
+    assertEquals(TestModel.EnumSparse.ES0, sparseHelper.defaultValue());
+    assertEquals(TestModel.EnumSparse.ES_NEG, sparseHelper.forNumber(-100));
+    assertEquals(TestModel.EnumSparse.ES1000, sparseHelper.forNumber(1000));
+    assertEquals(TestModel.EnumSparse.ES_MAX, sparseHelper.forNumber(Integer.MAX_VALUE));
+    assertNull(sparseHelper.forNumber(1));
+    assertNull(sparseHelper.forNumber(-1));
+    assertNull(sparseHelper.forNumber(Integer.MIN_VALUE));
+    assertEquals(TestModel.EnumSparse.ES1000, sparseHelper.of("ES_ALIAS"));
+    assertEquals(TestModel.EnumSparse.ES_NEG, sparseHelper.of("ES_NEG"));
+    assertEquals(4, sparseHelper.getEnumValueNumbers().size());
+    assertEquals(5, sparseHelper.getEnumValueNames().size());
+
+    assertNull(helper.forNumber(Integer.MIN_VALUE));
+    assertNull(helper.forNumber(Integer.MAX_VALUE));
+  }
+
+  @Test
+  public void testFindValueBySlice() {
+    char[] chars = "xEA2,EA4,EA10".toCharArray();
+    assertEquals(TestModel.EnumA.EA2, helper.of(chars, 1, 3));
+    assertEquals(TestModel.EnumA.EA4, helper.of(chars, 5, 3));
+    assertNull(helper.of(chars, 9, 4));
+    assertNull(helper.of(chars, 1, 2));
+    assertNull(helper.of(chars, 0, 0));
+
+    byte[] bytes = "xEA2,EA4,EA10,中文".getBytes(StandardCharsets.UTF_8);
+    assertEquals(TestModel.EnumA.EA2, helper.of(bytes, 1, 3));
+    assertEquals(TestModel.EnumA.EA4, helper.of(bytes, 5, 3));
+    assertNull(helper.of(bytes, 9, 4));
+    assertNull(helper.of(bytes, 14, bytes.length - 14));
+
+    assertEquals(TestModel.EnumA.EA0, helper.of(new StringBuilder("EA0")));
+    assertEquals(TestModel.EnumA.EA0, helper.of((CharSequence) "EA0"));
+    assertNull(helper.of(new StringBuilder("EA1")));
+    assertNull(helper.of((CharSequence) null));
+
+    try {
+      helper.of(chars, 10, 4);
+      fail();
+    } catch (IndexOutOfBoundsException e) {
+      System.out.println(e.getMessage());
+    }
+  }
+
   private void assertUnsupport(Runnable func) {
     try {
       func.run();
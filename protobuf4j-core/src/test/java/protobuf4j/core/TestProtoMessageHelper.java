@@ -1,14 +1,22 @@
 package protobuf4j.core;
 
+import com.google.common.base.Strings;
 import com.google.common.collect.Lists;
 import com.google.protobuf.ByteString;
+import com.google.protobuf.Descriptors;
 import com.google.protobuf.MapEntry;
+import com.google.protobuf.TextFormat;
+import org.junit.Assume;
 import org.junit.Before;
 import org.junit.Test;
 import protobuf4j.test.MsgsForTest;
 import protobuf4j.test.proto.TestModel;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -27,6 +35,35 @@ public class TestProtoMessageHelper {
     helper = ProtoMessageHelper.getHelper(TestModel.MsgA.class);
   }
 
+  @Test
+  public void testRegistry() {
+    ProtoMessageHelper.preload(Lists.newArrayList(TestModel.MsgA.class, TestModel.MsgB.class));
+    assertSame(helper, ProtoMessageHelper.getHelper(TestModel.MsgA.class));
+    ProtoEnumHelper.preload(Collections.singletonList(TestModel.EnumA.class));
+    assertSame(ProtoEnumHelper.getHelper(TestModel.EnumA.class),
+        ProtoEnumHelper.getHelper(TestModel.EnumA.class));
+
+    // 稳定后的查找不分配对象
+    java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+    com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) bean;
+    Assume.assumeTrue(threadBean.isThreadAllocatedMemorySupported() &&
+        threadBean.isThreadAllocatedMemoryEnabled());
+    long threadId = Thread.currentThread().getId();
+    for (int round = 0; round < 3; round++) {
+      long before = threadBean.getThreadAllocatedBytes(threadId);
+      for (int i = 0; i < 100000; i++) {
+        if (ProtoMessageHelper.getHelper(TestModel.MsgA.class) != helper) {
+          fail();
+        }
+      }
+      long allocated = threadBean.getThreadAllocatedBytes(threadId) - before;
+      if (round == 2) {
+        assertTrue("allocated " + allocated + " bytes", allocated < 1024);
+      }
+    }
+  }
+
   @Test
   public void testMessage() {
     System.out.println("fields: " + helper.getFieldNames());
@@ -47,6 +84,8 @@ public class TestProtoMessageHelper {
         TestModel.MsgA.newBuilder().setMsgb(TestModel.MsgB.getDefaultInstance()).build();
     assertFalse(helper.isEmpty(msgaWithMsgb));
     assertTrue(helper.isFieldSet(msgaWithMsgb, "msgb"));
+    assertFalse(helper.isEmpty(TestModel.MsgA.newBuilder().setFloat(-0.0f).build()));
+    assertFalse(helper.isEmpty(TestModel.MsgA.newBuilder().addInt32Arr(0).build()));
 
     try {
       helper.newBuilderForField("aaaaaaa");
@@ -204,6 +243,9 @@ public class TestProtoMessageHelper {
     for (String field : helper.getFieldNames()) {
       try {
         assertEquals(expect, helper.isFieldSet(msga, field));
+        Descriptors.FieldDescriptor fd = helper.getFieldDescriptor(field);
+        assertEquals(expect, helper.isFieldSet(msga, fd));
+        assertEquals(expect, helper.isFieldSet(msga, fd.getIndex()));
       } catch (AssertionError e) {
         throw new AssertionError("assert `" + field + "`, " + e.getMessage());
       }
@@ -226,6 +268,100 @@ public class TestProtoMessageHelper {
         helper.getFieldValue(msga, "int32_map"));
   }
 
+  @Test
+  public void testSetFieldMask() {
+    for (TestModel.MsgA msga : Lists.newArrayList(TestModel.MsgA.getDefaultInstance(),
+        MsgsForTest.allSetMsgA, TestModel.MsgA.newBuilder().setInt64(1).addBoolArr(false)
+            .putInt32Map("a", 0).setMsgb(TestModel.MsgB.getDefaultInstance()).build())) {
+      long[] mask = helper.setFieldMask(msga);
+      for (Descriptors.FieldDescriptor fd : helper.getFieldDescriptorList()) {
+        assertEquals(fd.getName(), helper.isFieldSet(msga, fd),
+            ProtoMessageHelper.isSet(mask, fd.getIndex()));
+      }
+    }
+
+    TestModel.MsgA int32 = TestModel.MsgA.newBuilder().setInt32(1).build();
+    TestModel.MsgA msgb =
+        TestModel.MsgA.newBuilder().setMsgb(TestModel.MsgB.getDefaultInstance()).build();
+    long[] mask = helper.mergeSetFieldMask(helper.setFieldMask(int32), msgb);
+    for (Descriptors.FieldDescriptor fd : helper.getFieldDescriptorList()) {
+      boolean expected = fd.getName().equals("int32") || fd.getName().equals("msgb");
+      assertEquals(fd.getName(), expected, ProtoMessageHelper.isSet(mask, fd.getIndex()));
+    }
+  }
+
+  @Test
+  public void testFieldIndex() {
+    assertEquals(helper.getFieldNames().size(), helper.getFieldCount());
+    TestModel.MsgA msga = MsgsForTest.allSetMsgA;
+    for (int i = 0; i < helper.getFieldCount(); i++) {
+      Descriptors.FieldDescriptor fd = helper.getFieldDescriptor(i);
+      assertSame(fd, helper.getFieldDescriptor(fd.getName()));
+      assertEquals(helper.getFieldValue(msga, fd.getName()), helper.getFieldValue(msga, i));
+      assertEquals(helper.getFieldValue(msga, fd.getName()), helper.getFieldValue(msga, fd));
+    }
+    int int32Index = helper.getFieldDescriptor("int32").getIndex();
+    assertEquals(2, helper.setFieldValue(msga, int32Index, 2).getInt32());
+    assertEquals(3, helper.setFieldValue(msga, helper.getFieldDescriptor("int32"), 3).getInt32());
+  }
+
+  @Test
+  public void testFieldAccessor() {
+    TestModel.MsgA negativeZero = TestModel.MsgA.newBuilder().setFloat(-0.0f).build();
+    for (TestModel.MsgA msga : Lists.newArrayList(TestModel.MsgA.getDefaultInstance(),
+        MsgsForTest.allSetMsgA, negativeZero)) {
+      for (Descriptors.FieldDescriptor fd : helper.getFieldDescriptorList()) {
+        FieldAccessor accessor = helper.getFieldAccessor(fd);
+        assertSame(accessor, helper.getFieldAccessor(fd.getIndex()));
+        assertEquals(fd.getName(), msga.getField(fd), accessor.get(msga));
+        boolean set = fd.isRepeated() ? msga.getRepeatedFieldCount(fd) > 0 : msga.hasField(fd);
+        assertEquals(fd.getName(), set, accessor.isSet(msga));
+      }
+    }
+    assertEquals(1L, helper.getFieldAccessor(helper.getFieldDescriptor("int32"))
+        .getLong(MsgsForTest.allSetMsgA));
+    assertEquals(MsgsForTest.allSetMsgA.getDouble(),
+        helper.getFieldAccessor(helper.getFieldDescriptor("double"))
+            .getDouble(MsgsForTest.allSetMsgA), 0);
+    assertTrue(helper.getFieldAccessor(helper.getFieldDescriptor("bool"))
+        .getBoolean(MsgsForTest.allSetMsgA));
+    assertNull(helper.getFieldAccessor(TestModel.MsgB.getDescriptor().findFieldByName("id")));
+
+    TestModel.MsgA.Builder builder = TestModel.MsgA.newBuilder();
+    for (Descriptors.FieldDescriptor fd : helper.getFieldDescriptorList()) {
+      helper.setField(builder, fd, MsgsForTest.allSetMsgA.getField(fd));
+    }
+    assertEquals(MsgsForTest.allSetMsgA, builder.build());
+    assertEquals("Int32Arr", FieldAccessor.javaName(helper.getFieldDescriptor("int32_arr")));
+  }
+
+  @Test
+  public void testMetadata() {
+    // test源码中有protobuf4j-codegen为test.proto生成的元数据
+    MessageMetadata<TestModel.MsgA> metadata = MessageMetadata.find(TestModel.MsgA.class);
+    assertNotNull(metadata);
+    assertTrue(metadata.matches(TestModel.MsgA.getDescriptor()));
+    assertFalse(metadata.matches(TestModel.MsgB.getDescriptor()));
+    assertSame(TestModel.MsgA.getDefaultInstance(), metadata.getDefaultInstance());
+    assertNotNull(MessageMetadata.find(TestModel.DbMsg.class));
+    assertNull(MessageMetadata.find(MapEntry.class));
+
+    for (Descriptors.FieldDescriptor fd : helper.getFieldDescriptorList()) {
+      FieldAccessor reflective =
+          new FieldAccessor(TestModel.MsgA.class, TestModel.MsgA.Builder.class, fd);
+      FieldAccessor generated = helper.getFieldAccessor(fd);
+      for (TestModel.MsgA msga : Lists.newArrayList(TestModel.MsgA.getDefaultInstance(),
+          MsgsForTest.allSetMsgA)) {
+        assertEquals(fd.getName(), reflective.get(msga), generated.get(msga));
+        assertEquals(fd.getName(), reflective.isSet(msga), generated.isSet(msga));
+        if (fd.isMapField()) {
+          assertEquals(fd.getName(), reflective.getMap(msga), generated.getMap(msga));
+        }
+      }
+    }
+    assertTrue(helper.newBuilder() instanceof TestModel.MsgA.Builder);
+  }
+
   @SuppressWarnings("unchecked")
   @Test
   public void testSetFieldValue() {
@@ -244,6 +380,45 @@ public class TestProtoMessageHelper {
   }
 
   @SuppressWarnings("unchecked")
+  @Test
+  public void testMutate() {
+    TestModel.MsgA msgA = MsgsForTest.allSetMsgA;
+    TestModel.MsgA mutated =
+        helper.mutate(msgA).set("int32", 5).set("string", null).clear("bool").add("int32_arr", 7)
+            .add(helper.getFieldDescriptor("int64_map"), newEntry("int64_map", "new", 3L))
+            .build();
+    assertEquals(5, mutated.getInt32());
+    assertEquals("", mutated.getString());
+    assertFalse(mutated.getBool());
+    assertEquals(msgA.getInt32ArrCount() + 1, mutated.getInt32ArrCount());
+    assertEquals(7, mutated.getInt32Arr(msgA.getInt32ArrCount()));
+    assertEquals(3L, mutated.getInt64MapOrThrow("new"));
+    assertEquals(msgA.getInt64(), mutated.getInt64());
+
+    Map<String, Object> fieldValues = new LinkedHashMap<>();
+    fieldValues.put("int32", 6);
+    fieldValues.put("int64", null);
+    fieldValues.put("int32_arr", Lists.newArrayList(1, 2));
+    mutated = helper.setFieldValues(msgA, fieldValues);
+    assertEquals(6, mutated.getInt32());
+    assertEquals(0L, mutated.getInt64());
+    assertEquals(Lists.newArrayList(1, 2), mutated.getInt32ArrList());
+
+    Map<Descriptors.FieldDescriptor, Object> fdValues = new LinkedHashMap<>();
+    fdValues.put(helper.getFieldDescriptor("string"), "s");
+    fdValues.put(helper.getFieldDescriptor("enuma"), TestModel.EnumA.EA4.getValueDescriptor());
+    mutated = helper.setFields(TestModel.MsgA.getDefaultInstance(), fdValues);
+    assertEquals("s", mutated.getString());
+    assertEquals(TestModel.EnumA.EA4, mutated.getEnuma());
+
+    try {
+      helper.mutate(msgA).add("int32", 1);
+      fail();
+    } catch (IllegalArgumentException e) {
+      System.out.println(e.getMessage());
+    }
+  }
+
   private <V> MapEntry<String, V> newEntry(String field, String key, V value) {
     return ((MapEntry.Builder<String, V>) helper.newBuilderForField(field)).setKey(key)
         .setValue(value).build();
@@ -256,6 +431,51 @@ public class TestProtoMessageHelper {
     System.out.println("null: " + helper.toString(null));
     System.out.println("empty: " + helper.toString(TestModel.MsgA.getDefaultInstance()));
     System.out.println("MsgsForTest.allSetMsgA: " + helper.toString(MsgsForTest.allSetMsgA));
+
+    assertEquals("test.MsgA{null}", helper.toString(null));
+    assertEquals("test.MsgA{}", helper.toString(TestModel.MsgA.getDefaultInstance()));
+    String expected = TextFormat.printToUnicodeString(MsgsForTest.allSetMsgA)
+        .replaceAll("\\s+", " ").trim();
+    assertEquals("test.MsgA{" + expected + "}", helper.toString(MsgsForTest.allSetMsgA));
+    assertEquals(helper.toString(MsgsForTest.allSetMsgA),
+        ProtoMessageHelper.printToString(MsgsForTest.allSetMsgA));
+
+    TestModel.MsgA msgA = TestModel.MsgA.newBuilder().setString("a\r\n\"中文\"")
+        .setBytes(ByteString.copyFrom(new byte[]{'a', 0, (byte) 0xff})).setFloat(1.5f)
+        .setEnuma(TestModel.EnumA.EA2).setMsgb(TestModel.MsgB.getDefaultInstance()).build();
+    assertEquals("test.MsgA{float: 1.5 string: \"a\\r\\n\\\"中文\\\"\" " +
+            "bytes: \"a\\000\\377\" enuma: EA2 msgb { }}", helper.toString(msgA));
+  }
+
+  @Test
+  public void testPrinterTruncate() throws IOException {
+    TestModel.MsgA.Builder builder = TestModel.MsgA.newBuilder();
+    for (int i = 0; i < 1000; i++) {
+      builder.addInt32Arr(i).putStringMap("key" + i, "value" + i);
+    }
+    builder.setString(Strings.repeat("s", 1000));
+    TestModel.MsgA msgA = builder.build();
+
+    MessagePrinter printer = new MessagePrinter(100);
+    String text = printer.print(msgA, new StringBuilder()).toString();
+    assertTrue(text, text.startsWith("string: \"sss"));
+    assertTrue(text, text.endsWith(MessagePrinter.TRUNCATED + "\""));
+    assertTrue(text, text.length() <= 100 + MessagePrinter.TRUNCATED.length() + 1);
+
+    text = printer.print(msgA.toBuilder().clearString().build(), new StringBuilder()).toString();
+    assertTrue(text, text.startsWith("int32_arr: 0 int32_arr: 1 "));
+    assertTrue(text, text.endsWith(MessagePrinter.TRUNCATED));
+    assertTrue(text, text.length() <= 120);
+
+    StringWriter writer = new StringWriter();
+    printer.print(msgA, writer);
+    assertEquals(printer.print(msgA, new StringBuilder()).toString(), writer.toString());
+
+    String full = new MessagePrinter(Integer.MAX_VALUE).printToString(msgA);
+    assertFalse(full.contains(MessagePrinter.TRUNCATED));
+    assertTrue(full.contains("string_map { key: \"key999\" value: \"value999\" }"));
+    assertTrue(helper.toString(msgA).length() <
+        MessagePrinter.DEFAULT_MAX_LENGTH + MessagePrinter.TRUNCATED.length() + 20);
   }
 
   @Test
@@ -23,8 +23,11 @@ public class TestCodec {
     assertTrue(codec instanceof ProtoMessageCodec);
     assertEquals(TestModel.MsgA.class, codec.getValueType());
 
+    assertSame(codec, Codecs.getProtoMessageCodec(TestModel.MsgA.class));
+
     codec = Codecs.getCodec(TestModel.EnumA.class);
     assertTrue(codec instanceof ProtoEnumCodec);
+    assertSame(codec, Codecs.getProtoEnumCodec(TestModel.EnumA.class));
     assertEquals(TestModel.EnumA.class, codec.getValueType());
 
     assertTrue(Codecs.getCodec(String.class) instanceof StringCodec);
@@ -0,0 +1,280 @@
+// Generated by protobuf4j-codegen.  DO NOT EDIT!
+// source: test.proto
+
+package protobuf4j.test.proto;
+
+public final class TestModelProtobuf4jMetadata implements protobuf4j.core.IMessageMetadataProvider {
+  @java.lang.Override
+  public java.util.List<protobuf4j.core.MessageMetadata<?>> getMessageMetadata() {
+    return java.util.Arrays.<protobuf4j.core.MessageMetadata<?>>asList(
+        metadata0(),
+        metadata1(),
+        metadata2(),
+        metadata3(),
+        metadata4(),
+        metadata5());
+  }
+
+  private static protobuf4j.core.MessageMetadata<protobuf4j.test.proto.TestModel.MsgA> metadata0() {
+    return protobuf4j.core.MessageMetadata.newBuilder(protobuf4j.test.proto.TestModel.MsgA.class, protobuf4j.test.proto.TestModel.MsgA.getDefaultInstance())
+        .addField(protobuf4j.core.MessageMetadata.<protobuf4j.test.proto.TestModel.MsgA>field("int32", java.lang.Integer.class)
+            .getter(protobuf4j.test.proto.TestModel.MsgA::getInt32)
+            .longGetter(protobuf4j.test.proto.TestModel.MsgA::getInt32)
+            .setter((protobuf4j.test.proto.TestModel.MsgA.Builder b, java.lang.Object v) -> b.setInt32((java.lang.Integer) v)))
+        .addField(protobuf4j.core.MessageMetadata.<protobuf4j.test.proto.TestModel.MsgA>field("int64", java.lang.Long.class)
+            .getter(protobuf4j.test.proto.TestModel.MsgA::getInt64)
+            .longGetter(protobuf4j.test.proto.TestModel.MsgA::getInt64)
+            .setter((protobuf4j.test.proto.TestModel.MsgA.Builder b, java.lang.Object v) -> b.setInt64((java.lang.Long) v)))
+        .addField(protobuf4j.core.MessageMetadata.<protobuf4j.test.proto.TestModel.MsgA>field("float", java.lang.Float.class)
+            .getter(protobuf4j.test.proto.TestModel.MsgA::getFloat)
+            .doubleGetter(protobuf4j.test.proto.TestModel.MsgA::getFloat)
+            .setter((protobuf4j.test.proto.TestModel.MsgA.Builder b, java.lang.Object v) -> b.setFloat((java.lang.Float) v)))
+        .addField(protobuf4j.core.MessageMetadata.<protobuf4j.test.proto.TestModel.MsgA>field("double", java.lang.Double.class)
+            .getter(protobuf4j.test.proto.TestModel.MsgA::getDouble)
+            .doubleGetter(protobuf4j.test.proto.TestModel.MsgA::getDouble)
+            .setter((protobuf4j.test.proto.TestModel.MsgA.Builder b, java.lang.Object v) -> b.setDouble((java.lang.Double) v)))
+        .addField(protobuf4j.core.MessageMetadata.<protobuf4j.test.proto.TestModel.MsgA>field("bool", java.lang.Boolean.class)
+            .getter(protobuf4j.test.proto.TestModel.MsgA::getBool)
+            .booleanGetter(protobuf4j.test.proto.TestModel.MsgA::getBool)
+            .setter((protobuf4j.test.proto.TestModel.MsgA.Builder b, java.lang.Object v) -> b.setBool((java.lang.Boolean) v)))
+        .addField(protobuf4j.core.MessageMetadata.<protobuf4j.test.proto.TestModel.MsgA>field("string", java.lang.String.class)
+            .getter(protobuf4j.test.proto.TestModel.MsgA::getString)
+            .setter((protobuf4j.test.proto.TestModel.MsgA.Builder b, java.lang.Object v) -> b.setString((java.lang.String) v)))
+        .addField(protobuf4j.core.MessageMetadata.<protobuf4j.test.proto.TestModel.MsgA>field("bytes", com.google.protobuf.ByteString.class)
+            .getter(protobuf4j.test.proto.TestModel.MsgA::getBytes)
+            .setter((protobuf4j.test.proto.TestModel.MsgA.Builder b, java.lang.Object v) -> b.setBytes((com.google.protobuf.ByteString) v)))
+        .addField(protobuf4j.core.MessageMetadata.<protobuf4j.test.proto.TestModel.MsgA>field("enuma", protobuf4j.test.proto.TestModel.EnumA.class)
+            .longGetter(protobuf4j.test.proto.TestModel.MsgA::getEnumaValue))
+        .addField(protobuf4j.core.MessageMetadata.<protobuf4j.test.proto.TestModel.MsgA>field("msgb", protobuf4j.test.proto.TestModel.MsgB.class)
+            .getter(protobuf4j.test.proto.TestModel.MsgA::getMsgb)
+            .hasMethod(protobuf4j.test.proto.TestModel.MsgA::hasMsgb))
+        .addField(protobuf4j.core.MessageMetadata.<protobuf4j.test.proto.TestModel.MsgA>field("msga", protobuf4j.test.proto.TestModel.MsgA.class)
+            .getter(protobuf4j.test.proto.TestModel.MsgA::getMsga)
+            .hasMethod(protobuf4j.test.proto.TestModel.MsgA::hasMsga))
+        .addField(protobuf4j.core.MessageMetadata.<protobuf4j.test.proto.TestModel.MsgA>field("int32_arr", java.util.List.class, java.lang.Integer.class)
+            .countGetter(protobuf4j.test.proto.TestModel.MsgA::getInt32ArrCount)
+            .getter(protobuf4j.test.proto.TestModel.MsgA::getInt32ArrList))
+        .addField(protobuf4j.core.MessageMetadata.<protobuf4j.test.proto.TestModel.MsgA>field("int64_arr", java.util.List.class, java.lang.Long.class)
+            .countGetter(protobuf4j.test.proto.TestModel.MsgA::getInt64ArrCount)
+            .getter(protobuf4j.test.proto.TestModel.MsgA::getInt64ArrList))
+        .addField(protobuf4j.core.MessageMetadata.<protobuf4j.test.proto.TestModel.MsgA>field("float_arr", java.util.List.class, java.lang.Float.class)
+            .countGetter(protobuf4j.test.proto.TestModel.MsgA::getFloatArrCount)
+            .getter(protobuf4j.test.proto.TestModel.MsgA::getFloatArrList))
+        .addField(protobuf4j.core.MessageMetadata.<protobuf4j.test.proto.TestModel.MsgA>field("double_arr", java.util.List.class, java.lang.Double.class)
+            .countGetter(protobuf4j.test.proto.TestModel.MsgA::getDoubleArrCount)
+            .getter(protobuf4j.test.proto.TestModel.MsgA::getDoubleArrList))
+        .addField(protobuf4j.core.MessageMetadata.<protobuf4j.test.proto.TestModel.MsgA>field("bool_arr", java.util.List.class, java.lang.Boolean.class)
+            .countGetter(protobuf4j.test.proto.TestModel.MsgA::getBoolArrCount)
+            .getter(protobuf4j.test.proto.TestModel.MsgA::getBoolArrList))
+        .addField(protobuf4j.core.MessageMetadata.<protobuf4j.test.proto.TestModel.MsgA>field("string_arr", java.util.List.class, java.lang.String.class)
+            .countGetter(protobuf4j.test.proto.TestModel.MsgA::getStringArrCount)
+            .getter(protobuf4j.test.proto.TestModel.MsgA::getStringArrList))
+        .addField(protobuf4j.core.MessageMetadata.<protobuf4j.test.proto.TestModel.MsgA>field("bytes_arr", java.util.List.class, com.google.protobuf.ByteString.class)
+            .countGetter(protobuf4j.test.proto.TestModel.MsgA::getBytesArrCount)
+            .getter(protobuf4j.test.proto.TestModel.MsgA::getBytesArrList))
+        .addField(protobuf4j.core.MessageMetadata.<protobuf4j.test.proto.TestModel.MsgA>field("enuma_arr", java.util.List.class, protobuf4j.test.proto.TestModel.EnumA.class)
+            .countGetter(protobuf4j.test.proto.TestModel.MsgA::getEnumaArrCount))
+        .addField(protobuf4j.core.MessageMetadata.<protobuf4j.test.proto.TestModel.MsgA>field("msgb_arr", java.util.List.class, protobuf4j.test.proto.TestModel.MsgB.class)
+            .countGetter(protobuf4j.test.proto.TestModel.MsgA::getMsgbArrCount)
+            .getter(protobuf4j.test.proto.TestModel.MsgA::getMsgbArrList))
+        .addField(protobuf4j.core.MessageMetadata.<protobuf4j.test.proto.TestModel.MsgA>field("int32_map", java.util.Map.class, java.lang.Integer.class)
+            .countGetter(protobuf4j.test.proto.TestModel.MsgA::getInt32MapCount)
+            .mapGetter(protobuf4j.test.proto.TestModel.MsgA::getInt32MapMap))
+        .addField(protobuf4j.core.MessageMetadata.<protobuf4j.test.proto.TestModel.MsgA>field("int64_map", java.util.Map.class, java.lang.Long.class)
+            .countGetter(protobuf4j.test.proto.TestModel.MsgA::getInt64MapCount)
+            .mapGetter(protobuf4j.test.proto.TestModel.MsgA::getInt64MapMap))
+        .addField(protobuf4j.core.MessageMetadata.<protobuf4j.test.proto.TestModel.MsgA>field("float_map", java.util.Map.class, java.lang.Float.class)
+            .countGetter(protobuf4j.test.proto.TestModel.MsgA::getFloatMapCount)
+            .mapGetter(protobuf4j.test.proto.TestModel.MsgA::getFloatMapMap))
+        .addField(protobuf4j.core.MessageMetadata.<protobuf4j.test.proto.TestModel.MsgA>field("double_map", java.util.Map.class, java.lang.Double.class)
+            .countGetter(protobuf4j.test.proto.TestModel.MsgA::getDoubleMapCount)
+            .mapGetter(protobuf4j.test.proto.TestModel.MsgA::getDoubleMapMap))
+        .addField(protobuf4j.core.MessageMetadata.<protobuf4j.test.proto.TestModel.MsgA>field("bool_map", java.util.Map.class, java.lang.Boolean.class)
+            .countGetter(protobuf4j.test.proto.TestModel.MsgA::getBoolMapCount)
+            .mapGetter(protobuf4j.test.proto.TestModel.MsgA::getBoolMapMap))
+        .addField(protobuf4j.core.MessageMetadata.<protobuf4j.test.proto.TestModel.MsgA>field("string_map", java.util.Map.class, java.lang.String.class)
+            .countGetter(protobuf4j.test.proto.TestModel.MsgA::getStringMapCount)
+            .mapGetter(protobuf4j.test.proto.TestModel.MsgA::getStringMapMap))
+        .addField(protobuf4j.core.MessageMetadata.<protobuf4j.test.proto.TestModel.MsgA>field("bytes_map", java.util.Map.class, com.google.protobuf.ByteString.class)
+            .countGetter(protobuf4j.test.proto.TestModel.MsgA::getBytesMapCount)
+            .mapGetter(protobuf4j.test.proto.TestModel.MsgA::getBytesMapMap))
+        .addField(protobuf4j.core.MessageMetadata.<protobuf4j.test.proto.TestModel.MsgA>field("enuma_map", java.util.Map.class, protobuf4j.test.proto.TestModel.EnumA.class)
+            .countGetter(protobuf4j.test.proto.TestModel.MsgA::getEnumaMapCount)
+            .mapGetter(protobuf4j.test.proto.TestModel.MsgA::getEnumaMapMap))
+        .addField(protobuf4j.core.MessageMetadata.<protobuf4j.test.proto.TestModel.MsgA>field("msgb_map", java.util.Map.class, protobuf4j.test.proto.TestModel.MsgB.class)
+            .countGetter(protobuf4j.test.proto.TestModel.MsgA::getMsgbMapCount)
+            .mapGetter(protobuf4j.test.proto.TestModel.MsgA::getMsgbMapMap))
+        .build();
+  }
+
+  private static protobuf4j.core.MessageMetadata<protobuf4j.test.proto.TestModel.MsgB> metadata1() {
+    return protobuf4j.core.MessageMetadata.newBuilder(protobuf4j.test.proto.TestModel.MsgB.class, protobuf4j.test.proto.TestModel.MsgB.getDefaultInstance())
+        .addField(protobuf4j.core.MessageMetadata.<protobuf4j.test.proto.TestModel.MsgB>field("id", java.lang.String.class)
+            .getter(protobuf4j.test.proto.TestModel.MsgB::getId)
+            .setter((protobuf4j.test.proto.TestModel.MsgB.Builder b, java.lang.Object v) -> b.setId((java.lang.String) v)))
+        .addField(protobuf4j.core.MessageMetadata.<protobuf4j.test.proto.TestModel.MsgB>field("create_time", java.lang.Long.class)
+            .getter(protobuf4j.test.proto.TestModel.MsgB::getCreateTime)
+            .longGetter(protobuf4j.test.proto.TestModel.MsgB::getCreateTime)
+            .setter((protobuf4j.test.proto.TestModel.MsgB.Builder b, java.lang.Object v) -> b.setCreateTime((java.lang.Long) v)))
+        .build();
+  }
+
+  private static protobuf4j.core.MessageMetadata<protobuf4j.test.proto.TestModel.DbMsg> metadata2() {
+    return protobuf4j.core.MessageMetadata.newBuilder(protobuf4j.test.proto.TestModel.DbMsg.class, protobuf4j.test.proto.TestModel.DbMsg.getDefaultInstance())
+        .addField(protobuf4j.core.MessageMetadata.<protobuf4j.test.proto.TestModel.DbMsg>field("id", java.lang.Long.class)
+            .getter(protobuf4j.test.proto.TestModel.DbMsg::getId)
+            .longGetter(protobuf4j.test.proto.TestModel.DbMsg::getId)
+            .setter((protobuf4j.test.proto.TestModel.DbMsg.Builder b, java.lang.Object v) -> b.setId((java.lang.Long) v)))
+        .addField(protobuf4j.core.MessageMetadata.<protobuf4j.test.proto.TestModel.DbMsg>field("int32_v", java.lang.Integer.class)
+            .getter(protobuf4j.test.proto.TestModel.DbMsg::getInt32V)
+            .longGetter(protobuf4j.test.proto.TestModel.DbMsg::getInt32V)
+            .setter((protobuf4j.test.proto.TestModel.DbMsg.Builder b, java.lang.Object v) -> b.setInt32V((java.lang.Integer) v)))
+        .addField(protobuf4j.core.MessageMetadata.<protobuf4j.test.proto.TestModel.DbMsg>field("int64_v", java.lang.Long.class)
+            .getter(protobuf4j.test.proto.TestModel.DbMsg::getInt64V)
+            .longGetter(protobuf4j.test.proto.TestModel.DbMsg::getInt64V)
+            .setter((protobuf4j.test.proto.TestModel.DbMsg.Builder b, java.lang.Object v) -> b.setInt64V((java.lang.Long) v)))
+        .addField(protobuf4j.core.MessageMetadata.<protobuf4j.test.proto.TestModel.DbMsg>field("float_v", java.lang.Float.class)
+            .getter(protobuf4j.test.proto.TestModel.DbMsg::getFloatV)
+            .doubleGetter(protobuf4j.test.proto.TestModel.DbMsg::getFloatV)
+            .setter((protobuf4j.test.proto.TestModel.DbMsg.Builder b, java.lang.Object v) -> b.setFloatV((java.lang.Float) v)))
+        .addField(protobuf4j.core.MessageMetadata.<protobuf4j.test.proto.TestModel.DbMsg>field("double_v", java.lang.Double.class)
+            .getter(protobuf4j.test.proto.TestModel.DbMsg::getDoubleV)
+            .doubleGetter(protobuf4j.test.proto.TestModel.DbMsg::getDoubleV)
+            .setter((protobuf4j.test.proto.TestModel.DbMsg.Builder b, java.lang.Object v) -> b.setDoubleV((java.lang.Double) v)))
+        .addField(protobuf4j.core.MessageMetadata.<protobuf4j.test.proto.TestModel.DbMsg>field("bool_v", java.lang.Boolean.class)
+            .getter(protobuf4j.test.proto.TestModel.DbMsg::getBoolV)
+            .booleanGetter(protobuf4j.test.proto.TestModel.DbMsg::getBoolV)
+            .setter((protobuf4j.test.proto.TestModel.DbMsg.Builder b, java.lang.Object v) -> b.setBoolV((java.lang.Boolean) v)))
+        .addField(protobuf4j.core.MessageMetadata.<protobuf4j.test.proto.TestModel.DbMsg>field("string_v", java.lang.String.class)
+            .getter(protobuf4j.test.proto.TestModel.DbMsg::getStringV)
+            .setter((protobuf4j.test.proto.TestModel.DbMsg.Builder b, java.lang.Object v) -> b.setStringV((java.lang.String) v)))
+        .addField(protobuf4j.core.MessageMetadata.<protobuf4j.test.proto.TestModel.DbMsg>field("enuma_v", protobuf4j.test.proto.TestModel.EnumA.class)
+            .longGetter(protobuf4j.test.proto.TestModel.DbMsg::getEnumaVValue))
+        .addField(protobuf4j.core.MessageMetadata.<protobuf4j.test.proto.TestModel.DbMsg>field("int32_arr", java.util.List.class, java.lang.Integer.class)
+            .countGetter(protobuf4j.test.proto.TestModel.DbMsg::getInt32ArrCount)
+            .getter(protobuf4j.test.proto.TestModel.DbMsg::getInt32ArrList))
+        .addField(protobuf4j.core.MessageMetadata.<protobuf4j.test.proto.TestModel.DbMsg>field("int64_arr", java.util.List.class, java.lang.Long.class)
+            .countGetter(protobuf4j.test.proto.TestModel.DbMsg::getInt64ArrCount)
+            .getter(protobuf4j.test.proto.TestModel.DbMsg::getInt64ArrList))
+        .addField(protobuf4j.core.MessageMetadata.<protobuf4j.test.proto.TestModel.DbMsg>field("float_arr", java.util.List.class, java.lang.Float.class)
+            .countGetter(protobuf4j.test.proto.TestModel.DbMsg::getFloatArrCount)
+            .getter(protobuf4j.test.proto.TestModel.DbMsg::getFloatArrList))
+        .addField(protobuf4j.core.MessageMetadata.<protobuf4j.test.proto.TestModel.DbMsg>field("double_arr", java.util.List.class, java.lang.Double.class)
+            .countGetter(protobuf4j.test.proto.TestModel.DbMsg::getDoubleArrCount)
+            .getter(protobuf4j.test.proto.TestModel.DbMsg::getDoubleArrList))
+        .addField(protobuf4j.core.MessageMetadata.<protobuf4j.test.proto.TestModel.DbMsg>field("bool_arr", java.util.List.class, java.lang.Boolean.class)
+            .countGetter(protobuf4j.test.proto.TestModel.DbMsg::getBoolArrCount)
+            .getter(protobuf4j.test.proto.TestModel.DbMsg::getBoolArrList))
+        .addField(protobuf4j.core.MessageMetadata.<protobuf4j.test.proto.TestModel.DbMsg>field("string_arr", java.util.List.class, java.lang.String.class)
+            .countGetter(protobuf4j.test.proto.TestModel.DbMsg::getStringArrCount)
+            .getter(protobuf4j.test.proto.TestModel.DbMsg::getStringArrList))
+        .addField(protobuf4j.core.MessageMetadata.<protobuf4j.test.proto.TestModel.DbMsg>field("enuma_arr", java.util.List.class, protobuf4j.test.proto.TestModel.EnumA.class)
+            .countGetter(protobuf4j.test.proto.TestModel.DbMsg::getEnumaArrCount))
+        .addField(protobuf4j.core.MessageMetadata.<protobuf4j.test.proto.TestModel.DbMsg>field("int32_map", java.util.Map.class, java.lang.Integer.class)
+            .countGetter(protobuf4j.test.proto.TestModel.DbMsg::getInt32MapCount)
+            .mapGetter(protobuf4j.test.proto.TestModel.DbMsg::getInt32MapMap))
+        .addField(protobuf4j.core.MessageMetadata.<protobuf4j.test.proto.TestModel.DbMsg>field("int64_map", java.util.Map.class, java.lang.Long.class)
+            .countGetter(protobuf4j.test.proto.TestModel.DbMsg::getInt64MapCount)
+            .mapGetter(protobuf4j.test.proto.TestModel.DbMsg::getInt64MapMap))
+        .addField(protobuf4j.core.MessageMetadata.<protobuf4j.test.proto.TestModel.DbMsg>field("float_map", java.util.Map.class, java.lang.Float.class)
+            .countGetter(protobuf4j.test.proto.TestModel.DbMsg::getFloatMapCount)
+            .mapGetter(protobuf4j.test.proto.TestModel.DbMsg::getFloatMapMap))
+        .addField(protobuf4j.core.MessageMetadata.<protobuf4j.test.proto.TestModel.DbMsg>field("double_map", java.util.Map.class, java.lang.Double.class)
+            .countGetter(protobuf4j.test.proto.TestModel.DbMsg::getDoubleMapCount)
+            .mapGetter(protobuf4j.test.proto.TestModel.DbMsg::getDoubleMapMap))
+        .addField(protobuf4j.core.MessageMetadata.<protobuf4j.test.proto.TestModel.DbMsg>field("bool_map", java.util.Map.class, java.lang.Boolean.class)
+            .countGetter(protobuf4j.test.proto.TestModel.DbMsg::getBoolMapCount)
+            .mapGetter(protobuf4j.test.proto.TestModel.DbMsg::getBoolMapMap))
+        .addField(protobuf4j.core.MessageMetadata.<protobuf4j.test.proto.TestModel.DbMsg>field("string_map", java.util.Map.class, java.lang.String.class)
+            .countGetter(protobuf4j.test.proto.TestModel.DbMsg::getStringMapCount)
+            .mapGetter(protobuf4j.test.proto.TestModel.DbMsg::getStringMapMap))
+        .addField(protobuf4j.core.MessageMetadata.<protobuf4j.test.proto.TestModel.DbMsg>field("enuma_map", java.util.Map.class, protobuf4j.test.proto.TestModel.EnumA.class)
+            .countGetter(protobuf4j.test.proto.TestModel.DbMsg::getEnumaMapCount)
+            .mapGetter(protobuf4j.test.proto.TestModel.DbMsg::getEnumaMapMap))
+        .addField(protobuf4j.core.MessageMetadata.<protobuf4j.test.proto.TestModel.DbMsg>field("create_time", com.google.protobuf.Timestamp.class)
+            .getter(protobuf4j.test.proto.TestModel.DbMsg::getCreateTime)
+            .hasMethod(protobuf4j.test.proto.TestModel.DbMsg::hasCreateTime))
+        .build();
+  }
+
+  private static protobuf4j.core.MessageMetadata<protobuf4j.test.proto.TestModel.SlotCounter> metadata3() {
+    return protobuf4j.core.MessageMetadata.newBuilder(protobuf4j.test.proto.TestModel.SlotCounter.class, protobuf4j.test.proto.TestModel.SlotCounter.getDefaultInstance())
+        .addField(protobuf4j.core.MessageMetadata.<protobuf4j.test.proto.TestModel.SlotCounter>field("counter_key", java.lang.String.class)
+            .getter(protobuf4j.test.proto.TestModel.SlotCounter::getCounterKey)
+            .setter((protobuf4j.test.proto.TestModel.SlotCounter.Builder b, java.lang.Object v) -> b.setCounterKey((java.lang.String) v)))
+        .addField(protobuf4j.core.MessageMetadata.<protobuf4j.test.proto.TestModel.SlotCounter>field("slot", java.lang.Integer.class)
+            .getter(protobuf4j.test.proto.TestModel.SlotCounter::getSlot)
+            .longGetter(protobuf4j.test.proto.TestModel.SlotCounter::getSlot)
+            .setter((protobuf4j.test.proto.TestModel.SlotCounter.Builder b, java.lang.Object v) -> b.setSlot((java.lang.Integer) v)))
+        .addField(protobuf4j.core.MessageMetadata.<protobuf4j.test.proto.TestModel.SlotCounter>field("view_count", java.lang.Long.class)
+            .getter(protobuf4j.test.proto.TestModel.SlotCounter::getViewCount)
+            .longGetter(protobuf4j.test.proto.TestModel.SlotCounter::getViewCount)
+            .setter((protobuf4j.test.proto.TestModel.SlotCounter.Builder b, java.lang.Object v) -> b.setViewCount((java.lang.Long) v)))
+        .addField(protobuf4j.core.MessageMetadata.<protobuf4j.test.proto.TestModel.SlotCounter>field("like_count", java.lang.Integer.class)
+            .getter(protobuf4j.test.proto.TestModel.SlotCounter::getLikeCount)
+            .longGetter(protobuf4j.test.proto.TestModel.SlotCounter::getLikeCount)
+            .setter((protobuf4j.test.proto.TestModel.SlotCounter.Builder b, java.lang.Object v) -> b.setLikeCount((java.lang.Integer) v)))
+        .build();
+  }
+
+  private static protobuf4j.core.MessageMetadata<protobuf4j.test.proto.TestModel.BinMsg> metadata4() {
+    return protobuf4j.core.MessageMetadata.newBuilder(protobuf4j.test.proto.TestModel.BinMsg.class, protobuf4j.test.proto.TestModel.BinMsg.getDefaultInstance())
+        .addField(protobuf4j.core.MessageMetadata.<protobuf4j.test.proto.TestModel.BinMsg>field("id", java.lang.Long.class)
+            .getter(protobuf4j.test.proto.TestModel.BinMsg::getId)
+            .longGetter(protobuf4j.test.proto.TestModel.BinMsg::getId)
+            .setter((protobuf4j.test.proto.TestModel.BinMsg.Builder b, java.lang.Object v) -> b.setId((java.lang.Long) v)))
+        .addField(protobuf4j.core.MessageMetadata.<protobuf4j.test.proto.TestModel.BinMsg>field("msgb", protobuf4j.test.proto.TestModel.MsgB.class)
+            .getter(protobuf4j.test.proto.TestModel.BinMsg::getMsgb)
+            .hasMethod(protobuf4j.test.proto.TestModel.BinMsg::hasMsgb))
+        .addField(protobuf4j.core.MessageMetadata.<protobuf4j.test.proto.TestModel.BinMsg>field("int32_arr", java.util.List.class, java.lang.Integer.class)
+            .countGetter(protobuf4j.test.proto.TestModel.BinMsg::getInt32ArrCount)
+            .getter(protobuf4j.test.proto.TestModel.BinMsg::getInt32ArrList))
+        .addField(protobuf4j.core.MessageMetadata.<protobuf4j.test.proto.TestModel.BinMsg>field("string_arr", java.util.List.class, java.lang.String.class)
+            .countGetter(protobuf4j.test.proto.TestModel.BinMsg::getStringArrCount)
+            .getter(protobuf4j.test.proto.TestModel.BinMsg::getStringArrList))
+        .addField(protobuf4j.core.MessageMetadata.<protobuf4j.test.proto.TestModel.BinMsg>field("msgb_arr", java.util.List.class, protobuf4j.test.proto.TestModel.MsgB.class)
+            .countGetter(protobuf4j.test.proto.TestModel.BinMsg::getMsgbArrCount)
+            .getter(protobuf4j.test.proto.TestModel.BinMsg::getMsgbArrList))
+        .addField(protobuf4j.core.MessageMetadata.<protobuf4j.test.proto.TestModel.BinMsg>field("int64_map", java.util.Map.class, java.lang.Long.class)
+            .countGetter(protobuf4j.test.proto.TestModel.BinMsg::getInt64MapCount)
+            .mapGetter(protobuf4j.test.proto.TestModel.BinMsg::getInt64MapMap))
+        .addField(protobuf4j.core.MessageMetadata.<protobuf4j.test.proto.TestModel.BinMsg>field("msgb_map", java.util.Map.class, protobuf4j.test.proto.TestModel.MsgB.class)
+            .countGetter(protobuf4j.test.proto.TestModel.BinMsg::getMsgbMapCount)
+            .mapGetter(protobuf4j.test.proto.TestModel.BinMsg::getMsgbMapMap))
+        .addField(protobuf4j.core.MessageMetadata.<protobuf4j.test.proto.TestModel.BinMsg>field("bytes_v", com.google.protobuf.ByteString.class)
+            .getter(protobuf4j.test.proto.TestModel.BinMsg::getBytesV)
+            .setter((protobuf4j.test.proto.TestModel.BinMsg.Builder b, java.lang.Object v) -> b.setBytesV((com.google.protobuf.ByteString) v)))
+        .addField(protobuf4j.core.MessageMetadata.<protobuf4j.test.proto.TestModel.BinMsg>field("bytes_arr", java.util.List.class, com.google.protobuf.ByteString.class)
+            .countGetter(protobuf4j.test.proto.TestModel.BinMsg::getBytesArrCount)
+            .getter(protobuf4j.test.proto.TestModel.BinMsg::getBytesArrList))
+        .addField(protobuf4j.core.MessageMetadata.<protobuf4j.test.proto.TestModel.BinMsg>field("bytes_map", java.util.Map.class, com.google.protobuf.ByteString.class)
+            .countGetter(protobuf4j.test.proto.TestModel.BinMsg::getBytesMapCount)
+            .mapGetter(protobuf4j.test.proto.TestModel.BinMsg::getBytesMapMap))
+        .build();
+  }
+
+  private static protobuf4j.core.MessageMetadata<protobuf4j.test.proto.TestModel.BlobMsg> metadata5() {
+    return protobuf4j.core.MessageMetadata.newBuilder(protobuf4j.test.proto.TestModel.BlobMsg.class, protobuf4j.test.proto.TestModel.BlobMsg.getDefaultInstance())
+        .addField(protobuf4j.core.MessageMetadata.<protobuf4j.test.proto.TestModel.BlobMsg>field("id", java.lang.Long.class)
+            .getter(protobuf4j.test.proto.TestModel.BlobMsg::getId)
+            .longGetter(protobuf4j.test.proto.TestModel.BlobMsg::getId)
+            .setter((protobuf4j.test.proto.TestModel.BlobMsg.Builder b, java.lang.Object v) -> b.setId((java.lang.Long) v)))
+        .addField(protobuf4j.core.MessageMetadata.<protobuf4j.test.proto.TestModel.BlobMsg>field("status", java.lang.Integer.class)
+            .getter(protobuf4j.test.proto.TestModel.BlobMsg::getStatus)
+            .longGetter(protobuf4j.test.proto.TestModel.BlobMsg::getStatus)
+            .setter((protobuf4j.test.proto.TestModel.BlobMsg.Builder b, java.lang.Object v) -> b.setStatus((java.lang.Integer) v)))
+        .addField(protobuf4j.core.MessageMetadata.<protobuf4j.test.proto.TestModel.BlobMsg>field("name", java.lang.String.class)
+            .getter(protobuf4j.test.proto.TestModel.BlobMsg::getName)
+            .setter((protobuf4j.test.proto.TestModel.BlobMsg.Builder b, java.lang.Object v) -> b.setName((java.lang.String) v)))
+        .addField(protobuf4j.core.MessageMetadata.<protobuf4j.test.proto.TestModel.BlobMsg>field("tags", java.util.List.class, java.lang.String.class)
+            .countGetter(protobuf4j.test.proto.TestModel.BlobMsg::getTagsCount)
+            .getter(protobuf4j.test.proto.TestModel.BlobMsg::getTagsList))
+        .addField(protobuf4j.core.MessageMetadata.<protobuf4j.test.proto.TestModel.BlobMsg>field("msgb", protobuf4j.test.proto.TestModel.MsgB.class)
+            .getter(protobuf4j.test.proto.TestModel.BlobMsg::getMsgb)
+            .hasMethod(protobuf4j.test.proto.TestModel.BlobMsg::hasMsgb))
+        .addField(protobuf4j.core.MessageMetadata.<protobuf4j.test.proto.TestModel.BlobMsg>field("int64_map", java.util.Map.class, java.lang.Long.class)
+            .countGetter(protobuf4j.test.proto.TestModel.BlobMsg::getInt64MapCount)
+            .mapGetter(protobuf4j.test.proto.TestModel.BlobMsg::getInt64MapMap))
+        .build();
+  }
+}
@@ -4,6 +4,7 @@ import org.springframework.boot.autoconfigure.AutoConfigureAfter;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.autoconfigure.jdbc.JdbcTemplateAutoConfiguration;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.jdbc.core.JdbcTemplate;
@@ -18,10 +19,17 @@ import org.springframework.jdbc.core.JdbcTemplate;
 @ConditionalOnProperty(value = "protobuf4j.datasource.auto-enable", matchIfMissing = true)
 @ConditionalOnBean(JdbcTemplate.class)
 @AutoConfigureAfter(JdbcTemplateAutoConfiguration.class)
+@EnableConfigurationProperties(DaoWarmUpProperties.class)
 public class DaoJdbcAutoConfiguration {
   @Bean
   public DaoJdbcTemplatePostProcessor daoJdbcTemplatePostProcessor() {
     return new DaoJdbcTemplatePostProcessor();
   }
 
+  @Bean
+  @ConditionalOnProperty(value = "protobuf4j.datasource.warm-up.enabled", matchIfMissing = true)
+  public DaoWarmUpListener daoWarmUpListener(DaoWarmUpProperties properties) {
+    return new DaoWarmUpListener(properties);
+  }
+
 }
@@ -0,0 +1,108 @@
+package protobuf4j.orm;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.protobuf.Message;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationContextAware;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.ContextRefreshedEvent;
+import protobuf4j.core.ProtoMessageHelper;
+import protobuf4j.orm.dao.IMessageDao;
+import protobuf4j.orm.dao.ProtoMessageDao;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * context刷新后并行预热所有的{@link IMessageDao}，并记录每个dao的耗时
+ * <p>
+ * author: yuanwq
+ *
+ * @see ProtoMessageDao#warmUp(boolean)
+ */
+class DaoWarmUpListener
+    implements ApplicationListener<ContextRefreshedEvent>, ApplicationContextAware {
+  private static final Logger logger = LoggerFactory.getLogger(DaoWarmUpListener.class);
+
+  private final DaoWarmUpProperties properties;
+  private ApplicationContext applicationContext;
+
+  DaoWarmUpListener(DaoWarmUpProperties properties) {
+    Preconditions.checkArgument(properties.getParallelism() > 0,
+        "parallelism(>0): " + properties.getParallelism());
+    this.properties = properties;
+  }
+
+  @Override
+  public void setApplicationContext(ApplicationContext applicationContext) {
+    this.applicationContext = applicationContext;
+  }
+
+  @Override
+  public void onApplicationEvent(ContextRefreshedEvent event) {
+    // 子context刷新的事件也会传递到这里
+    if (event.getApplicationContext() != applicationContext) {
+      return;
+    }
+    @SuppressWarnings("unchecked")
+    Map<String, IMessageDao<?>> daos =
+        (Map<String, IMessageDao<?>>) (Map<String, ?>) applicationContext
+            .getBeansOfType(IMessageDao.class);
+    if (daos.isEmpty()) {
+      return;
+    }
+    long start = System.nanoTime();
+    ExecutorService executor = Executors.newFixedThreadPool(
+        Math.min(properties.getParallelism(), daos.size()),
+        new ThreadFactoryBuilder().setNameFormat("protobuf4j-dao-warm-up-%d").setDaemon(true)
+            .build());
+    try {
+      List<Future<?>> futures = Lists.newArrayListWithExpectedSize(daos.size());
+      for (Map.Entry<String, IMessageDao<?>> entry : daos.entrySet()) {
+        futures.add(executor.submit(() -> warmUp(entry.getKey(), entry.getValue())));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new RuntimeException(e.getCause());
+    } finally {
+      executor.shutdownNow();
+    }
+    logger.info("warm up {} daos, cost={}ms", daos.size(),
+        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+  }
+
+  private void warmUp(String beanName, IMessageDao<?> dao) {
+    long start = System.nanoTime();
+    try {
+      if (dao instanceof ProtoMessageDao) {
+        ((ProtoMessageDao<?>) dao).warmUp(properties.isValidate());
+      } else if (Message.class.isAssignableFrom(dao.getMessageType())) {
+        ProtoMessageHelper.getHelper(dao.getMessageType().asSubclass(Message.class));
+      }
+      logger.info("warm up dao {}, table={}, cost={}ms", beanName, dao.getTableName(),
+          TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    } catch (RuntimeException e) {
+      if (properties.isFailOnError()) {
+        throw new IllegalStateException(
+            "fail to warm up dao " + beanName + ", table=" + dao.getTableName(), e);
+      }
+      logger.warn("fail to warm up dao {}, table={}", beanName, dao.getTableName(), e);
+    }
+  }
+}
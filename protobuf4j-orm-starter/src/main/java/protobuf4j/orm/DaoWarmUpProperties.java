@@ -0,0 +1,62 @@
+package protobuf4j.orm;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * 启动时预热dao的配置
+ * <p>
+ * author: yuanwq
+ *
+ * @see DaoWarmUpListener
+ */
+@ConfigurationProperties(prefix = "protobuf4j.datasource.warm-up")
+public class DaoWarmUpProperties {
+  /**
+   * 是否在context刷新后预热所有的dao
+   */
+  private boolean enabled = true;
+  /**
+   * 是否对每个dao执行一次{@code LIMIT 0}的查询，检查数据表和数据库连接
+   */
+  private boolean validate = false;
+  /**
+   * 并行预热的线程数
+   */
+  private int parallelism = Runtime.getRuntime().availableProcessors();
+  /**
+   * 预热失败时是否抛出异常，中止启动；否则只记录日志
+   */
+  private boolean failOnError = false;
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public void setEnabled(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  public boolean isValidate() {
+    return validate;
+  }
+
+  public void setValidate(boolean validate) {
+    this.validate = validate;
+  }
+
+  public int getParallelism() {
+    return parallelism;
+  }
+
+  public void setParallelism(int parallelism) {
+    this.parallelism = parallelism;
+  }
+
+  public boolean isFailOnError() {
+    return failOnError;
+  }
+
+  public void setFailOnError(boolean failOnError) {
+    this.failOnError = failOnError;
+  }
+}
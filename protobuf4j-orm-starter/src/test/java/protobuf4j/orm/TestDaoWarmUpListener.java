@@ -0,0 +1,95 @@
+package protobuf4j.orm;
+
+import com.google.common.collect.Maps;
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import protobuf4j.orm.dao.PrimaryKeyProtoMessageDao;
+import protobuf4j.test.proto.TestModel;
+
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * author: yuanwq
+ */
+public class TestDaoWarmUpListener {
+  private AnnotationConfigApplicationContext context;
+
+  @Configuration
+  static class DaoConfiguration {
+    @Bean
+    public JdbcTemplate jdbcTemplate() {
+      // 空的数据库，dao的数据表不存在
+      return new JdbcTemplate(
+          new EmbeddedDatabaseBuilder().setType(EmbeddedDatabaseType.H2).generateUniqueName(true)
+              .build());
+    }
+
+    @Bean
+    public PrimaryKeyProtoMessageDao<Long, TestModel.DbMsg> dbMsgDao() {
+      return new PrimaryKeyProtoMessageDao<>(TestModel.DbMsg.class, "id");
+    }
+  }
+
+  private AnnotationConfigApplicationContext refresh(String... properties) {
+    Map<String, Object> map = Maps.newHashMap();
+    for (int i = 0; i < properties.length; i += 2) {
+      map.put(properties[i], properties[i + 1]);
+    }
+    context = new AnnotationConfigApplicationContext();
+    context.getEnvironment().getPropertySources().addFirst(new MapPropertySource("test", map));
+    context.register(DaoConfiguration.class, DaoJdbcAutoConfiguration.class);
+    context.refresh();
+    return context;
+  }
+
+  @After
+  public void tearDown() {
+    if (context != null) {
+      context.close();
+    }
+  }
+
+  @Test
+  public void testProperties() {
+    refresh("protobuf4j.datasource.warm-up.parallelism", "2",
+        "protobuf4j.datasource.warm-up.validate", "true");
+    DaoWarmUpProperties properties = context.getBean(DaoWarmUpProperties.class);
+    assertTrue(properties.isEnabled());
+    assertTrue(properties.isValidate());
+    assertEquals(2, properties.getParallelism());
+    assertFalse(properties.isFailOnError());
+    // 预热失败只记录日志
+    assertEquals(1, context.getBeansOfType(DaoWarmUpListener.class).size());
+  }
+
+  @Test
+  public void testDisabled() {
+    refresh("protobuf4j.datasource.warm-up.enabled", "false",
+        "protobuf4j.datasource.warm-up.validate", "true",
+        "protobuf4j.datasource.warm-up.fail-on-error", "true");
+    assertTrue(context.getBeansOfType(DaoWarmUpListener.class).isEmpty());
+  }
+
+  @Test
+  public void testFailOnError() {
+    try {
+      refresh("protobuf4j.datasource.warm-up.validate", "true",
+          "protobuf4j.datasource.warm-up.fail-on-error", "true");
+      fail();
+    } catch (IllegalStateException e) {
+      System.out.println(e.getMessage());
+      assertTrue(e.getMessage().contains("dbMsgDao"));
+      assertTrue(e.getCause() instanceof DataAccessException);
+    }
+  }
+}
@@ -0,0 +1,124 @@
+package protobuf4j.orm.converter;
+
+import com.google.common.collect.Lists;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Descriptors;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.MapEntry;
+import com.google.protobuf.Message;
+import com.google.protobuf.UnsafeByteOperations;
+import protobuf4j.core.ProtoMessageHelper;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 以protobuf二进制编码处理message/map/repeated类型的field，对应{@code VARBINARY}/{@code BLOB}列：
+ * <ul>
+ * <li>message: {@link Message#toByteArray()}</li>
+ * <li>map/repeated: 只包含该field的外层message的编码，即该field自身的wire编码，标量类型为packed编码</li>
+ * </ul>
+ * 支持{@link MapFieldConverter}和{@link RepeatedFieldConverter}不支持的message类型的元素
+ * <p>
+ * author: yuanwq
+ */
+@SuppressWarnings({"unchecked", "rawtypes"})
+public class BinaryFieldConverter implements IFieldConverter {
+  private static final byte[] EMPTY_BYTES = new byte[0];
+
+  private final ProtoMessageHelper<?> messageHelper;
+
+  public BinaryFieldConverter(ProtoMessageHelper<?> messageHelper) {
+    this.messageHelper = messageHelper;
+  }
+
+  @Override
+  public boolean supports(Descriptors.FieldDescriptor fieldDescriptor) {
+    return fieldDescriptor.isRepeated() ||
+        fieldDescriptor.getJavaType() == Descriptors.FieldDescriptor.JavaType.MESSAGE;
+  }
+
+  @Override
+  public Class<?> getSqlValueType() {
+    return byte[].class;
+  }
+
+  @Override
+  public Object toSqlValue(Descriptors.FieldDescriptor fieldDescriptor, Object fieldValue) {
+    if (fieldValue == null) {
+      return EMPTY_BYTES;
+    }
+    if (!fieldDescriptor.isRepeated()) {
+      if (fieldValue instanceof Message) {
+        return ((Message) fieldValue).toByteArray();
+      }
+      throw new FieldConversionException(Descriptors.FieldDescriptor.JavaType.MESSAGE, fieldValue,
+          getSqlValueType());
+    }
+    if (fieldDescriptor.isMapField() && fieldValue instanceof Map) {
+      fieldValue = mapToEntries(fieldDescriptor, (Map<?, ?>) fieldValue);
+    }
+    if (!(fieldValue instanceof Collection)) {
+      throw new FieldConversionException(
+          "fail to convert repeated field, field=" + fieldDescriptor + ", fieldValue=" +
+              FieldConversionException.toString(fieldValue));
+    }
+    if (((Collection<?>) fieldValue).isEmpty()) {
+      return EMPTY_BYTES;
+    }
+    try {
+      return messageHelper.newBuilder().setField(fieldDescriptor, fieldValue).buildPartial()
+          .toByteArray();
+    } catch (RuntimeException e) {
+      throw new FieldConversionException(
+          "fail to convert repeated field, field=" + fieldDescriptor + ", fieldValue=" +
+              FieldConversionException.toString(fieldValue), e);
+    }
+  }
+
+  private List<MapEntry<?, ?>> mapToEntries(Descriptors.FieldDescriptor fieldDescriptor,
+      Map<?, ?> map) {
+    Descriptors.FieldDescriptor keyFd = fieldDescriptor.getMessageType().findFieldByName("key");
+    Descriptors.FieldDescriptor valFd = fieldDescriptor.getMessageType().findFieldByName("value");
+    List<MapEntry<?, ?>> entries = Lists.newArrayListWithExpectedSize(map.size());
+    for (Map.Entry<?, ?> entry : map.entrySet()) {
+      MapEntry.Builder<?, ?> entryBuilder =
+          (MapEntry.Builder<?, ?>) messageHelper.newBuilderForField(fieldDescriptor);
+      entryBuilder.setField(keyFd, entry.getKey()).setField(valFd, entry.getValue());
+      entries.add(entryBuilder.build());
+    }
+    return entries;
+  }
+
+  @Override
+  public Object fromSqlValue(Descriptors.FieldDescriptor fieldDescriptor, Object sqlValue) {
+    ByteString bytes;
+    if (sqlValue == null) {
+      bytes = ByteString.EMPTY;
+    } else if (sqlValue instanceof byte[]) {
+      // 结果集返回的数组不会再被修改，无需复制
+      bytes = UnsafeByteOperations.unsafeWrap((byte[]) sqlValue);
+    } else if (sqlValue instanceof ByteString) {
+      bytes = (ByteString) sqlValue;
+    } else {
+      throw new FieldConversionException(
+          "fail to parse binary field, field=" + fieldDescriptor + ", sqlValue=" +
+              FieldConversionException.toString(sqlValue));
+    }
+    try {
+      if (!fieldDescriptor.isRepeated()) {
+        return messageHelper.newBuilderForField(fieldDescriptor).mergeFrom(bytes).build();
+      }
+      if (bytes.isEmpty()) {
+        return Collections.emptyList();
+      }
+      return messageHelper.newBuilder().mergeFrom(bytes).buildPartial().getField(fieldDescriptor);
+    } catch (InvalidProtocolBufferException e) {
+      throw new FieldConversionException(
+          "fail to parse binary field, field=" + fieldDescriptor + ", sqlValue.length=" +
+              bytes.size(), e);
+    }
+  }
+}
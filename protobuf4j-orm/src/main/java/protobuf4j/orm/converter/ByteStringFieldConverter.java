@@ -2,8 +2,29 @@ package protobuf4j.orm.converter;
 
 import com.google.protobuf.ByteString;
 import com.google.protobuf.Descriptors;
+import com.google.protobuf.UnsafeByteOperations;
 
+/**
+ * 处理bytes类型的field
+ * <p>
+ * 默认以UTF-8字符串存储；binary模式下对应{@code VARBINARY}/{@code BLOB}列，无损存储任意二进制：
+ * 写入时直接使用{@link ByteString}，由DAO以{@link ByteString#newInput()}绑定，读取时包装结果集返回的数组，不再复制
+ */
 public class ByteStringFieldConverter implements IFieldConverter {
+  private final boolean binary;
+
+  public ByteStringFieldConverter() {
+    this(false);
+  }
+
+  public ByteStringFieldConverter(boolean binary) {
+    this.binary = binary;
+  }
+
+  public boolean isBinary() {
+    return binary;
+  }
+
   @Override
   public boolean supports(Descriptors.FieldDescriptor fieldDescriptor) {
     return fieldDescriptor.getJavaType() == Descriptors.FieldDescriptor.JavaType.BYTE_STRING;
@@ -11,11 +32,14 @@ public class ByteStringFieldConverter implements IFieldConverter {
 
   @Override
   public Class<?> getSqlValueType() {
-    return String.class;
+    return binary ? byte[].class : String.class;
   }
 
   @Override
   public Object toSqlValue(Descriptors.FieldDescriptor fieldDescriptor, Object fieldValue) {
+    if (binary) {
+      return toBinarySqlValue(fieldValue);
+    }
     if (fieldValue == null) {
       return "";
     }
@@ -28,6 +52,19 @@ public class ByteStringFieldConverter implements IFieldConverter {
         getSqlValueType());
   }
 
+  private Object toBinarySqlValue(Object fieldValue) {
+    if (fieldValue == null) {
+      return ByteString.EMPTY;
+    }
+    if (fieldValue instanceof ByteString || fieldValue instanceof byte[]) {
+      return fieldValue;
+    } else if (fieldValue instanceof String) {
+      return ByteString.copyFromUtf8((String) fieldValue);
+    }
+    throw new FieldConversionException(Descriptors.FieldDescriptor.JavaType.BYTE_STRING, fieldValue,
+        getSqlValueType());
+  }
+
   @Override
   public Object fromSqlValue(Descriptors.FieldDescriptor fieldDescriptor, Object sqlValue) {
     if (sqlValue == null) {
@@ -36,6 +73,9 @@ public class ByteStringFieldConverter implements IFieldConverter {
       return ByteString.copyFromUtf8((String) sqlValue);
     } else if (sqlValue instanceof ByteString) {
       return sqlValue;
+    } else if (binary && sqlValue instanceof byte[]) {
+      // 结果集返回的数组不会再被修改，无需复制
+      return UnsafeByteOperations.unsafeWrap((byte[]) sqlValue);
     }
     throw new FieldConversionException(Descriptors.FieldDescriptor.JavaType.BYTE_STRING, sqlValue);
   }
@@ -8,6 +8,8 @@ import com.google.protobuf.Message;
 import com.google.protobuf.Timestamp;
 import protobuf4j.core.ProtoMessageHelper;
 
+import java.util.List;
+
 import static com.google.common.base.Preconditions.*;
 
 /**
@@ -16,12 +18,24 @@ import static com.google.common.base.Preconditions.*;
 public class FieldResolver<M extends Message> implements IFieldResolver {
   private static final TimestampFieldConverter timestampFieldConverter =
       new TimestampFieldConverter();
+  private static final ByteStringFieldConverter binaryByteStringFieldConverter =
+      new ByteStringFieldConverter(true);
 
   private final ProtoMessageHelper<M> messageHelper;
   private final BasicTypeFieldResolver basicTypeFieldResolver;
   private final MapFieldConverter mapFieldConverter;
   private final RepeatedFieldConverter repeatedFieldConverter;
   private final MessageFieldConverter messageFieldConverter;
+  private final BinaryFieldConverter binaryFieldConverter;
+  private final Descriptors.Descriptor descriptor;
+  /**
+   * 按{@link Descriptors.FieldDescriptor#getIndex()}索引的各field的converter，包括单独指定的converter
+   */
+  private final IFieldConverter[] fieldConverters;
+  /**
+   * 按{@link Descriptors.FieldDescriptor#getIndex()}索引的各field的sql值类型
+   */
+  private final Class<?>[] sqlValueTypes;
 
   public FieldResolver(Class<M> messageClass) {
     checkNotNull(messageClass);
@@ -30,6 +44,85 @@ public class FieldResolver<M extends Message> implements IFieldResolver {
     this.mapFieldConverter = new MapFieldConverter(messageHelper, basicTypeFieldResolver);
     this.repeatedFieldConverter = new RepeatedFieldConverter(basicTypeFieldResolver);
     this.messageFieldConverter = new MessageFieldConverter(messageHelper);
+    this.binaryFieldConverter = new BinaryFieldConverter(messageHelper);
+    this.descriptor = messageHelper.getDescriptor();
+    List<Descriptors.FieldDescriptor> fds = descriptor.getFields();
+    this.fieldConverters = new IFieldConverter[fds.size()];
+    this.sqlValueTypes = new Class<?>[fds.size()];
+    for (Descriptors.FieldDescriptor fd : fds) {
+      putFieldConverter(fd, resolveFieldConverter(fd));
+    }
+  }
+
+  private void putFieldConverter(Descriptors.FieldDescriptor fd, IFieldConverter fieldConverter) {
+    fieldConverters[fd.getIndex()] = fieldConverter;
+    sqlValueTypes[fd.getIndex()] = fieldConverter.getSqlValueType();
+  }
+
+  /**
+   * 为{@code fieldName}指定converter，需要在使用前设置
+   */
+  public FieldResolver<M> setFieldConverter(String fieldName, IFieldConverter fieldConverter) {
+    Descriptors.FieldDescriptor fd = messageHelper.checkFieldDescriptor(fieldName);
+    checkArgument(fieldConverter.supports(fd),
+        "converter " + fieldConverter.getClass().getName() + " not support field " + fieldName);
+    putFieldConverter(fd, fieldConverter);
+    return this;
+  }
+
+  /**
+   * 将指定的message/map/repeated类型的field以protobuf二进制编码存储，对应的列需要是{@code VARBINARY}/{@code BLOB}类型
+   *
+   * @param fieldNames 为空时表示所有message(Timestamp除外)/map/repeated类型的field
+   * @see BinaryFieldConverter
+   */
+  public FieldResolver<M> useBinaryStorage(String... fieldNames) {
+    if (fieldNames.length > 0) {
+      for (String fieldName : fieldNames) {
+        setFieldConverter(fieldName, binaryFieldConverter);
+      }
+      return this;
+    }
+    for (Descriptors.FieldDescriptor fd : messageHelper.getFieldDescriptorList()) {
+      if (binaryFieldConverter.supports(fd) && (fd.isRepeated() || !isTimestampField(fd))) {
+        putFieldConverter(fd, binaryFieldConverter);
+      }
+    }
+    return this;
+  }
+
+  /**
+   * 将指定的bytes类型的field以二进制无损存储，对应的列需要是{@code VARBINARY}/{@code BLOB}类型：
+   * 单值以{@link ByteStringFieldConverter}的binary模式处理，repeated/map以{@link BinaryFieldConverter}处理
+   *
+   * @param fieldNames 为空时表示所有bytes类型的field，以及值为bytes类型的map
+   */
+  public FieldResolver<M> useBinaryBytes(String... fieldNames) {
+    if (fieldNames.length > 0) {
+      for (String fieldName : fieldNames) {
+        Descriptors.FieldDescriptor fd = messageHelper.checkFieldDescriptor(fieldName);
+        checkArgument(isBytesField(fd), "not a bytes field: " + fieldName);
+        putFieldConverter(fd, binaryBytesConverter(fd));
+      }
+      return this;
+    }
+    for (Descriptors.FieldDescriptor fd : messageHelper.getFieldDescriptorList()) {
+      if (isBytesField(fd)) {
+        putFieldConverter(fd, binaryBytesConverter(fd));
+      }
+    }
+    return this;
+  }
+
+  private boolean isBytesField(Descriptors.FieldDescriptor fd) {
+    if (fd.isMapField()) {
+      fd = fd.getMessageType().findFieldByName("value");
+    }
+    return fd.getJavaType() == Descriptors.FieldDescriptor.JavaType.BYTE_STRING;
+  }
+
+  private IFieldConverter binaryBytesConverter(Descriptors.FieldDescriptor fd) {
+    return fd.isRepeated() ? binaryFieldConverter : binaryByteStringFieldConverter;
   }
 
   @Override
@@ -44,11 +137,43 @@ public class FieldResolver<M extends Message> implements IFieldResolver {
 
   @Override
   public Object toSqlValue(Descriptors.FieldDescriptor fieldDescriptor, Object value) {
-    IFieldConverter fieldConverter = findFieldConverter(fieldDescriptor);
-    return fieldConverter.toSqlValue(fieldDescriptor, value);
+    return findFieldConverter(fieldDescriptor).toSqlValue(fieldDescriptor, value);
+  }
+
+  /**
+   * @param fieldIndex {@link Descriptors.FieldDescriptor#getIndex()}
+   */
+  public Object toSqlValue(int fieldIndex, Object value) {
+    return fieldConverters[fieldIndex].toSqlValue(descriptor.getFields().get(fieldIndex), value);
+  }
+
+  /**
+   * @return {@code fieldDescriptor}使用的converter，属于其他Message的field时按类型解析
+   */
+  public IFieldConverter findFieldConverter(Descriptors.FieldDescriptor fieldDescriptor) {
+    if (fieldDescriptor.getContainingType() == descriptor) {
+      return fieldConverters[fieldDescriptor.getIndex()];
+    }
+    return resolveFieldConverter(fieldDescriptor);
+  }
+
+  /**
+   * @param fieldIndex {@link Descriptors.FieldDescriptor#getIndex()}
+   */
+  public IFieldConverter getFieldConverter(int fieldIndex) {
+    return fieldConverters[fieldIndex];
   }
 
-  private IFieldConverter findFieldConverter(Descriptors.FieldDescriptor fieldDescriptor) {
+  /**
+   * @return {@code fieldDescriptor}是否为使用默认converter的基本类型单值field
+   */
+  public boolean isBasicTypeField(Descriptors.FieldDescriptor fieldDescriptor) {
+    return !fieldDescriptor.isRepeated() && basicTypeFieldResolver.supports(fieldDescriptor) &&
+        findFieldConverter(fieldDescriptor) ==
+            basicTypeFieldResolver.findFieldConverter(fieldDescriptor);
+  }
+
+  private IFieldConverter resolveFieldConverter(Descriptors.FieldDescriptor fieldDescriptor) {
     if (fieldDescriptor.isMapField()) {
       // check map first, because map field is also repeated
       return mapFieldConverter;
@@ -64,35 +189,35 @@ public class FieldResolver<M extends Message> implements IFieldResolver {
 
   private boolean isTimestampField(Descriptors.FieldDescriptor fieldDescriptor) {
     return Descriptors.FieldDescriptor.JavaType.MESSAGE == fieldDescriptor.getJavaType() &&
-        messageHelper.getFieldType(fieldDescriptor.getName()).equals(Timestamp.class);
+        fieldDescriptor.getMessageType() == Timestamp.getDescriptor();
   }
 
   @Override
   public Object fromSqlValue(Descriptors.FieldDescriptor fieldDescriptor, Object sqlValue) {
-    IFieldConverter converter = findFieldConverter(fieldDescriptor);
-    if (converter == null) {
-      throw new FieldConversionException(
-          "no converter found, javaType=" + fieldDescriptor.getJavaType() + ", sqlValue=`" +
-              sqlValue + "`, sqlValue.type=" + sqlValue.getClass().getName());
-    }
-    Object value = converter.fromSqlValue(fieldDescriptor, sqlValue);
-//    if (fieldDescriptor.getJavaType() == Descriptors.FieldDescriptor.JavaType.ENUM) {
-//      // EnumValueDescriptor
-//      return fieldDescriptor.getEnumType().findValueByNumber((Integer) value);
-//    }
-    return value;
+    return findFieldConverter(fieldDescriptor).fromSqlValue(fieldDescriptor, sqlValue);
+  }
+
+  /**
+   * @param fieldIndex {@link Descriptors.FieldDescriptor#getIndex()}
+   */
+  public Object fromSqlValue(int fieldIndex, Object sqlValue) {
+    return fieldConverters[fieldIndex]
+        .fromSqlValue(descriptor.getFields().get(fieldIndex), sqlValue);
   }
 
   @Override
   public Class<?> resolveSqlValueType(Descriptors.FieldDescriptor fieldDescriptor) {
-    // map/list 使用string拼接
-    if (fieldDescriptor.isMapField() || fieldDescriptor.isRepeated()) {
-      return String.class;
-    } else if (isTimestampField(fieldDescriptor)) {
-      return java.sql.Timestamp.class;
+    if (fieldDescriptor.getContainingType() == descriptor) {
+      return sqlValueTypes[fieldDescriptor.getIndex()];
     }
-    IFieldConverter fieldConverter = findFieldConverter(fieldDescriptor);
-    return fieldConverter.getSqlValueType();
+    return resolveFieldConverter(fieldDescriptor).getSqlValueType();
+  }
+
+  /**
+   * @param fieldIndex {@link Descriptors.FieldDescriptor#getIndex()}
+   */
+  public Class<?> resolveSqlValueType(int fieldIndex) {
+    return sqlValueTypes[fieldIndex];
   }
 
 }
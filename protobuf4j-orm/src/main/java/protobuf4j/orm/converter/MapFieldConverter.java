@@ -1,5 +1,10 @@
 package protobuf4j.orm.converter;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerationException;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
@@ -10,14 +15,62 @@ import protobuf4j.core.ProtoMessageHelper;
 import protobuf4j.core.ProtobufObjectMapper;
 
 import java.io.IOException;
+import java.io.StringWriter;
 import java.util.*;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
 
+/**
+ * 以json object存储map类型的field，key和value都按基本类型转换
+ * <p>
+ * 直接使用jackson的{@link JsonGenerator}/{@link JsonParser}读写，不经过中间的{@link Map}；
+ * 每个field的转换函数和{@link MapEntry}原型只解析一次
+ */
 @SuppressWarnings({"unchecked", "rawtypes"})
 public class MapFieldConverter implements IFieldConverter {
   private static final ObjectMapper OBJECT_MAPPER = ProtobufObjectMapper.DEFAULT;
 
+  /**
+   * 一个map field的key/value转换
+   */
+  private static class MapCodec {
+    private final Descriptors.FieldDescriptor keyFd;
+    private final Descriptors.FieldDescriptor valFd;
+    private final Function<String, Object> keyTransform;
+    private final Function<String, Object> valTransform;
+    private final IFieldConverter keyConverter;
+    private final IFieldConverter valConverter;
+    private final MapEntry<?, ?> prototype;
+
+    MapCodec(Descriptors.FieldDescriptor fieldDescriptor, ProtoMessageHelper<?> messageHelper,
+        BasicTypeFieldResolver basicTypeFieldResolver) {
+      keyFd = fieldDescriptor.getMessageType().findFieldByName("key");
+      valFd = fieldDescriptor.getMessageType().findFieldByName("value");
+      // fail fast
+      keyTransform = BasicTypeFieldResolver.lookupTransform(keyFd);
+      valTransform = BasicTypeFieldResolver.lookupTransform(valFd);
+      if (valFd.getJavaType() == Descriptors.FieldDescriptor.JavaType.MESSAGE) {
+        throw new FieldConversionException(
+            "not support map field with message value type, field=" + fieldDescriptor +
+                ", javaType=" + fieldDescriptor.getJavaType());
+      }
+      keyConverter = basicTypeFieldResolver.findFieldConverter(keyFd);
+      valConverter = basicTypeFieldResolver.findFieldConverter(valFd);
+      prototype =
+          (MapEntry<?, ?>) messageHelper.newBuilderForField(fieldDescriptor)
+              .getDefaultInstanceForType();
+    }
+
+    MapEntry<?, ?> newEntry(Object key, Object value) {
+      return (MapEntry<?, ?>) prototype.newBuilderForType().setField(keyFd, key)
+          .setField(valFd, value).build();
+    }
+  }
+
   private final ProtoMessageHelper<?> messageHelper;
   private final BasicTypeFieldResolver basicTypeFieldResolver;
+  private final ConcurrentMap<Descriptors.FieldDescriptor, MapCodec> codecMap =
+      Maps.newConcurrentMap();
 
   public MapFieldConverter(ProtoMessageHelper<?> protoMessageHelper,
       BasicTypeFieldResolver basicTypeFieldResolver) {
@@ -40,73 +93,75 @@ public class MapFieldConverter implements IFieldConverter {
     return String.class;
   }
 
+  private MapCodec getCodec(Descriptors.FieldDescriptor fieldDescriptor) {
+    MapCodec codec = codecMap.get(fieldDescriptor);
+    if (codec == null) {
+      codec = new MapCodec(fieldDescriptor, messageHelper, basicTypeFieldResolver);
+      codecMap.putIfAbsent(fieldDescriptor, codec);
+    }
+    return codec;
+  }
+
   @Override
   public Object toSqlValue(Descriptors.FieldDescriptor fieldDescriptor, Object fieldValue) {
-    Descriptors.FieldDescriptor keyFd = fieldDescriptor.getMessageType().findFieldByName("key");
-    Descriptors.FieldDescriptor valFd = fieldDescriptor.getMessageType().findFieldByName("value");
-    // fail fast
-    BasicTypeFieldResolver.lookupTransform(keyFd);
-    BasicTypeFieldResolver.lookupTransform(valFd);
-    if (valFd.getJavaType() == Descriptors.FieldDescriptor.JavaType.MESSAGE) {
-      throw new FieldConversionException(
-          "not support map field with message value type, field=" + fieldDescriptor +
-              ", javaType=" + fieldDescriptor.getJavaType());
-    }
-    Map<Object, Object> map;
-    if (fieldValue instanceof Collection) {
-      map = collectionToMap((Collection<? extends MapEntry>) fieldValue, keyFd, valFd);
-    } else if (fieldValue instanceof Map) {
-      map = mapToMap((Map) fieldValue, keyFd, valFd);
-    } else {
+    MapCodec codec = getCodec(fieldDescriptor);
+    if (!(fieldValue instanceof Collection) && !(fieldValue instanceof Map)) {
       throw new FieldConversionException(
           "fail to convert map field, field=" + fieldDescriptor + ", keyType=" +
-              keyFd.getJavaType() + ", valueType=" + valFd.getJavaType() + ", fieldValue=" +
-              FieldConversionException.toString(fieldValue));
+              codec.keyFd.getJavaType() + ", valueType=" + codec.valFd.getJavaType() +
+              ", fieldValue=" + FieldConversionException.toString(fieldValue));
     }
-    try {
-      return OBJECT_MAPPER.writeValueAsString(map);
+    JsonFactory jsonFactory = OBJECT_MAPPER.getFactory();
+    StringWriter writer = new StringWriter();
+    try (JsonGenerator generator = jsonFactory.createGenerator(writer)) {
+      generator.writeStartObject();
+      if (fieldValue instanceof Collection) {
+        for (MapEntry entry : (Collection<? extends MapEntry>) fieldValue) {
+          writeEntry(generator, codec, entry.getKey(), entry.getValue());
+        }
+      } else {
+        for (Map.Entry entry : ((Map<?, ?>) fieldValue).entrySet()) {
+          writeEntry(generator, codec, entry.getKey(), entry.getValue());
+        }
+      }
+      generator.writeEndObject();
     } catch (IOException e) {
       throw new FieldConversionException(
           "fail to convert map field, field=" + fieldDescriptor + ", keyType=" +
-              keyFd.getJavaType() + ", valueType=" + valFd.getJavaType() + ", fieldValue=" +
-              FieldConversionException.toString(fieldValue), e);
+              codec.keyFd.getJavaType() + ", valueType=" + codec.valFd.getJavaType() +
+              ", fieldValue=" + FieldConversionException.toString(fieldValue), e);
     }
+    return writer.toString();
   }
 
-  private Map<Object, Object> mapToMap(Map<?, ?> map, Descriptors.FieldDescriptor keyFd,
-      Descriptors.FieldDescriptor valFd) {
-    Map<Object, Object> newMap = Maps.newLinkedHashMapWithExpectedSize(map.size());
-    for (Map.Entry entry : map.entrySet()) {
-      Object key = basicTypeFieldResolver.toSqlValue(keyFd, entry.getKey());
-      Object value = basicTypeFieldResolver.toSqlValue(valFd, entry.getValue());
-      newMap.put(key, value);
+  private void writeEntry(JsonGenerator generator, MapCodec codec, Object key, Object value)
+      throws IOException {
+    Object k = codec.keyConverter.toSqlValue(codec.keyFd, key);
+    Object v = codec.valConverter.toSqlValue(codec.valFd, value);
+    if (k == null) {
+      throw new JsonGenerationException("null key for a map not allowed in json", generator);
     }
-    return newMap;
-  }
-
-  private Map<Object, Object> collectionToMap(Collection<? extends MapEntry> valueCollection,
-      Descriptors.FieldDescriptor keyFd, Descriptors.FieldDescriptor valFd) {
-    Map<Object, Object> map = Maps.newLinkedHashMapWithExpectedSize(valueCollection.size());
-    for (MapEntry entry : valueCollection) {
-      Object key = basicTypeFieldResolver.toSqlValue(keyFd, entry.getKey());
-      Object value = basicTypeFieldResolver.toSqlValue(valFd, entry.getValue());
-      map.put(key, value);
+    generator.writeFieldName(k.toString());
+    if (v == null) {
+      generator.writeNull();
+    } else if (v instanceof String) {
+      generator.writeString((String) v);
+    } else if (v instanceof Integer) {
+      generator.writeNumber((Integer) v);
+    } else if (v instanceof Long) {
+      generator.writeNumber((Long) v);
+    } else if (v instanceof Double) {
+      generator.writeNumber((Double) v);
+    } else if (v instanceof Float) {
+      generator.writeNumber((Float) v);
+    } else {
+      OBJECT_MAPPER.writeValue(generator, v);
     }
-    return map;
   }
 
   @Override
   public Object fromSqlValue(Descriptors.FieldDescriptor fieldDescriptor, Object sqlValue) {
-    Descriptors.FieldDescriptor keyFd = fieldDescriptor.getMessageType().findFieldByName("key");
-    Descriptors.FieldDescriptor valFd = fieldDescriptor.getMessageType().findFieldByName("value");
-    // fail fast
-    BasicTypeFieldResolver.lookupTransform(keyFd);
-    BasicTypeFieldResolver.lookupTransform(valFd);
-    if (valFd.getJavaType() == Descriptors.FieldDescriptor.JavaType.MESSAGE) {
-      throw new FieldConversionException(
-          "not support map field with message value type, field=" + fieldDescriptor +
-              ", javaType=" + fieldDescriptor.getJavaType());
-    }
+    MapCodec codec = getCodec(fieldDescriptor);
     if (sqlValue == null) {
       return Collections.emptyList();
     }
@@ -114,33 +169,91 @@ public class MapFieldConverter implements IFieldConverter {
       if (StringUtils.isBlank((String) sqlValue)) {
         return Collections.emptyList();
       }
-      try {
-        LinkedHashMap<String, Object> map =
-            OBJECT_MAPPER.readValue((String) sqlValue, LinkedHashMap.class);
+      try (JsonParser parser = OBJECT_MAPPER.getFactory().createParser((String) sqlValue)) {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+          throw new FieldConversionException(
+              "fail to parse map field, not a json object, field=" + fieldDescriptor +
+                  ", sqlValue=" + FieldConversionException.toString(sqlValue));
+        }
         List<MapEntry<?, ?>> mapEntries = Lists.newArrayList();
-        for (Map.Entry<String, Object> entry : map.entrySet()) {
-          Object k = BasicTypeFieldResolver.lookupTransform(keyFd).apply(entry.getKey());
-          Object v =
-              BasicTypeFieldResolver.lookupTransform(valFd).apply(String.valueOf(entry.getValue()));
-          k = basicTypeFieldResolver.fromSqlValue(keyFd, k);
-          v = basicTypeFieldResolver.fromSqlValue(valFd, v);
-          MapEntry.Builder<?, ?> entryBuilder =
-              (MapEntry.Builder<?, ?>) messageHelper.newBuilderForField(fieldDescriptor);
-          entryBuilder.setField(keyFd, k).setField(valFd, v);
-          mapEntries.add(entryBuilder.build());
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+          Object k = codec.keyTransform.apply(parser.getCurrentName());
+          parser.nextToken();
+          Object v = readValue(parser, codec);
+          k = codec.keyConverter.fromSqlValue(codec.keyFd, k);
+          v = codec.valConverter.fromSqlValue(codec.valFd, v);
+          mapEntries.add(codec.newEntry(k, v));
         }
         return mapEntries;
       } catch (IOException e) {
         throw new FieldConversionException(
             "fail to parse map field, field=" + fieldDescriptor + ", keyType=" +
-                keyFd.getJavaType() + ", valueType=" + valFd.getJavaType() + ", sqlValue=" +
-                FieldConversionException.toString(sqlValue), e);
+                codec.keyFd.getJavaType() + ", valueType=" + codec.valFd.getJavaType() +
+                ", sqlValue=" + FieldConversionException.toString(sqlValue), e);
       }
     }
     throw new FieldConversionException(
-        "fail to parse map field, field=" + fieldDescriptor + ", keyType=" + keyFd.getJavaType() +
-            ", valueType=" + valFd.getJavaType() + ", sqlValue=" +
-            FieldConversionException.toString(sqlValue));
+        "fail to parse map field, field=" + fieldDescriptor + ", keyType=" +
+            codec.keyFd.getJavaType() + ", valueType=" + codec.valFd.getJavaType() +
+            ", sqlValue=" + FieldConversionException.toString(sqlValue));
+  }
+
+  /**
+   * 读取当前value，数值直接从parser取出，其他情况按value的文本转换
+   */
+  private Object readValue(JsonParser parser, MapCodec codec) throws IOException {
+    JsonToken token = parser.getCurrentToken();
+    if (token == JsonToken.VALUE_NUMBER_INT) {
+      JsonParser.NumberType numberType = parser.getNumberType();
+      switch (codec.valFd.getJavaType()) {
+        case INT:
+        case BOOLEAN:
+          if (numberType == JsonParser.NumberType.INT) {
+            return parser.getIntValue();
+          }
+          break;
+        case ENUM:
+          if (numberType == JsonParser.NumberType.INT) {
+            return codec.valFd.getEnumType().findValueByNumber(parser.getIntValue());
+          }
+          break;
+        case LONG:
+          if (numberType != JsonParser.NumberType.BIG_INTEGER) {
+            return parser.getLongValue();
+          }
+          break;
+        case DOUBLE:
+          if (numberType != JsonParser.NumberType.BIG_INTEGER) {
+            return parser.getDoubleValue();
+          }
+          break;
+        default:
+          break;
+      }
+    } else if (token == JsonToken.VALUE_NUMBER_FLOAT &&
+        codec.valFd.getJavaType() == Descriptors.FieldDescriptor.JavaType.DOUBLE) {
+      return parser.getDoubleValue();
+    }
+    return codec.valTransform.apply(valueText(parser, token));
   }
 
+  /**
+   * 与value反序列化为java对象后{@link String#valueOf(Object)}的结果一致
+   */
+  private static String valueText(JsonParser parser, JsonToken token) throws IOException {
+    switch (token) {
+      case VALUE_STRING:
+      case VALUE_TRUE:
+      case VALUE_FALSE:
+        return parser.getText();
+      case VALUE_NUMBER_INT:
+        return String.valueOf(parser.getNumberValue());
+      case VALUE_NUMBER_FLOAT:
+        return String.valueOf(parser.getDoubleValue());
+      case VALUE_NULL:
+        return String.valueOf((Object) null);
+      default:
+        return String.valueOf(parser.readValueAs(Object.class));
+    }
+  }
 }
@@ -1,34 +1,33 @@
 package protobuf4j.orm.converter;
 
-import com.google.common.base.Splitter;
-import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.primitives.Booleans;
+import com.google.common.primitives.Doubles;
+import com.google.common.primitives.Floats;
+import com.google.common.primitives.Ints;
+import com.google.common.primitives.Longs;
 import com.google.protobuf.Descriptors;
+import com.google.protobuf.Internal;
 import org.apache.commons.lang3.StringUtils;
-import org.apache.commons.text.translate.EntityArrays;
-import org.apache.commons.text.translate.LookupTranslator;
 
 import java.util.Collections;
 import java.util.List;
-import java.util.Map;
-import java.util.stream.Collectors;
 
+/**
+ * 处理repeated类型的field，存储格式为每个元素之后跟一个分隔符{@code ,}，元素中的{@code ,}和{@code %}分别转义为{@code %2c}和{@code %25}
+ * <p>
+ * 编码和解码都是单次扫描，数值类型直接解析到基本类型数组，不经过中间的字符串切分和装箱
+ */
 public class RepeatedFieldConverter implements IFieldConverter {
-  private final Map<CharSequence, CharSequence> listLookupMap;
-  private final LookupTranslator listValueEscaper;
-  private final LookupTranslator listValueUnescaper;
-  private final String listSep = ",";
-  private final Splitter listSplitter = Splitter.on(listSep);
+  private static final char LIST_SEP = ',';
+  private static final char ESCAPE = '%';
+  private static final String ESCAPED_SEP = "%2c";
+  private static final String ESCAPED_ESCAPE = "%25";
 
   private final BasicTypeFieldResolver basicTypeFieldResolver;
 
   public RepeatedFieldConverter(BasicTypeFieldResolver basicTypeFieldResolver) {
     this.basicTypeFieldResolver = basicTypeFieldResolver;
-    ImmutableMap.Builder<CharSequence, CharSequence> builder = ImmutableMap.builder();
-    builder.put(",", "%2c");
-    builder.put("%", "%25");
-    listLookupMap = builder.build();
-    this.listValueEscaper = new LookupTranslator(listLookupMap);
-    this.listValueUnescaper = new LookupTranslator(EntityArrays.invert(listLookupMap));
   }
 
   @Override
@@ -46,12 +45,10 @@ public class RepeatedFieldConverter implements IFieldConverter {
     BasicTypeFieldResolver.lookupTransform(fieldDescriptor);
     if (fieldValue instanceof Iterable) {
       StringBuilder sb = new StringBuilder();
-      Iterable<?> list = (Iterable<?>) fieldValue;
-      for (Object item : list) {
+      for (Object item : (Iterable<?>) fieldValue) {
         // 只要有一个元素就有一个分隔符，从而保证元素为string类型时，可以添加空字符串值
-        Object v = basicTypeFieldResolver.toSqlValue(fieldDescriptor, item);
-        v = listValueEscaper.translate(String.valueOf(v));
-        sb.append(v).append(listSep);
+        appendItem(sb, fieldDescriptor, item);
+        sb.append(LIST_SEP);
       }
       return sb.toString();
     }
@@ -60,6 +57,74 @@ public class RepeatedFieldConverter implements IFieldConverter {
             FieldConversionException.toString(fieldValue));
   }
 
+  /**
+   * 常见的元素类型直接写入，其他情况交给{@link BasicTypeFieldResolver}转换后再转义写入
+   */
+  private void appendItem(StringBuilder sb, Descriptors.FieldDescriptor fieldDescriptor,
+      Object item) {
+    switch (fieldDescriptor.getJavaType()) {
+      case INT:
+        if (item instanceof Integer) {
+          sb.append((int) (Integer) item);
+          return;
+        }
+        break;
+      case LONG:
+        if (item instanceof Long || item instanceof Integer) {
+          sb.append(((Number) item).longValue());
+          return;
+        }
+        break;
+      case FLOAT:
+        if (item instanceof Number) {
+          sb.append(((Number) item).floatValue());
+          return;
+        }
+        break;
+      case DOUBLE:
+        if (item instanceof Number) {
+          sb.append(((Number) item).doubleValue());
+          return;
+        }
+        break;
+      case BOOLEAN:
+        if (item instanceof Boolean) {
+          sb.append((Boolean) item ? 1 : 0);
+          return;
+        }
+        break;
+      case ENUM:
+        if (item instanceof Internal.EnumLite) {
+          sb.append(((Internal.EnumLite) item).getNumber());
+          return;
+        }
+        break;
+      case STRING:
+        if (item instanceof String) {
+          appendEscaped(sb, (String) item);
+          return;
+        }
+        break;
+      default:
+        break;
+    }
+    Object v = basicTypeFieldResolver.toSqlValue(fieldDescriptor, item);
+    appendEscaped(sb, String.valueOf(v));
+  }
+
+  private static void appendEscaped(StringBuilder sb, String text) {
+    for (int i = 0; i < text.length(); i++) {
+      char c = text.charAt(i);
+      if (c == LIST_SEP) {
+        sb.append(ESCAPED_SEP);
+      } else if (c == ESCAPE) {
+        sb.append(ESCAPED_ESCAPE);
+      } else {
+        sb.append(c);
+      }
+    }
+  }
+
   @Override
   public Object fromSqlValue(Descriptors.FieldDescriptor fieldDescriptor, Object sqlValue) {
     if (sqlValue == null) {
@@ -74,12 +139,148 @@ public class RepeatedFieldConverter implements IFieldConverter {
     if (StringUtils.isBlank(text)) {
       return Collections.emptyList();
     }
+    // fail fast
+    BasicTypeFieldResolver.lookupTransform(fieldDescriptor);
     // 忽略最后一个分隔符
-    if (text.endsWith(listSep)) text = text.substring(0, text.length() - listSep.length());
-    List<String> list = listSplitter.splitToList(text);
-    return list.stream().map(listValueUnescaper::translate)
-        .map(BasicTypeFieldResolver.lookupTransform(fieldDescriptor))
-        .map(v -> basicTypeFieldResolver.fromSqlValue(fieldDescriptor, v))
-        .collect(Collectors.toList());
+    int end = text.charAt(text.length() - 1) == LIST_SEP ? text.length() - 1 : text.length();
+    int size = 1;
+    for (int i = 0; i < end; i++) {
+      if (text.charAt(i) == LIST_SEP) {
+        size++;
+      }
+    }
+    switch (fieldDescriptor.getJavaType()) {
+      case INT: {
+        int[] values = new int[size];
+        for (int i = 0, start = 0; i < size; i++) {
+          int sep = nextSep(text, start, end);
+          values[i] = parseInt(text, start, sep);
+          start = sep + 1;
+        }
+        return Ints.asList(values);
+      }
+      case LONG: {
+        long[] values = new long[size];
+        for (int i = 0, start = 0; i < size; i++) {
+          int sep = nextSep(text, start, end);
+          values[i] = parseLong(text, start, sep);
+          start = sep + 1;
+        }
+        return Longs.asList(values);
+      }
+      case FLOAT: {
+        float[] values = new float[size];
+        for (int i = 0, start = 0; i < size; i++) {
+          int sep = nextSep(text, start, end);
+          values[i] = Float.parseFloat(text.substring(start, sep));
+          start = sep + 1;
+        }
+        return Floats.asList(values);
+      }
+      case DOUBLE: {
+        double[] values = new double[size];
+        for (int i = 0, start = 0; i < size; i++) {
+          int sep = nextSep(text, start, end);
+          values[i] = Double.parseDouble(text.substring(start, sep));
+          start = sep + 1;
+        }
+        return Doubles.asList(values);
+      }
+      case BOOLEAN: {
+        boolean[] values = new boolean[size];
+        for (int i = 0, start = 0; i < size; i++) {
+          int sep = nextSep(text, start, end);
+          values[i] = parseInt(text, start, sep) != 0;
+          start = sep + 1;
+        }
+        return Booleans.asList(values);
+      }
+      case ENUM: {
+        List<Object> values = Lists.newArrayListWithCapacity(size);
+        Descriptors.EnumDescriptor enumType = fieldDescriptor.getEnumType();
+        for (int i = 0, start = 0; i < size; i++) {
+          int sep = nextSep(text, start, end);
+          Descriptors.EnumValueDescriptor value =
+              enumType.findValueByNumber(parseInt(text, start, sep));
+          values.add(value == null ? enumType.findValueByNumber(0) : value);
+          start = sep + 1;
+        }
+        return values;
+      }
+      default: {
+        List<Object> values = Lists.newArrayListWithCapacity(size);
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0, start = 0; i < size; i++) {
+          int sep = nextSep(text, start, end);
+          sb.setLength(0);
+          appendUnescaped(sb, text, start, sep);
+          values.add(basicTypeFieldResolver.fromSqlValue(fieldDescriptor, sb.toString()));
+          start = sep + 1;
+        }
+        return values;
+      }
+    }
+  }
+
+  private static int nextSep(String text, int start, int end) {
+    int sep = text.indexOf(LIST_SEP, start);
+    return sep < 0 || sep > end ? end : sep;
+  }
+
+  private static void appendUnescaped(StringBuilder sb, String text, int start, int end) {
+    for (int i = start; i < end; i++) {
+      char c = text.charAt(i);
+      if (c == ESCAPE && i + 3 <= end) {
+        if (text.startsWith(ESCAPED_SEP, i)) {
+          sb.append(LIST_SEP);
+          i += 2;
+          continue;
+        } else if (text.startsWith(ESCAPED_ESCAPE, i)) {
+          sb.append(ESCAPE);
+          i += 2;
+          continue;
+        }
+      }
+      sb.append(c);
+    }
+  }
+
+  /**
+   * 解析十进制整数，非常规的格式交给{@link Integer#parseInt(String)}处理，保持相同的结果和异常
+   */
+  private static int parseInt(String text, int start, int end) {
+    long value = parseDigits(text, start, end);
+    if (value == Long.MIN_VALUE || value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+      return Integer.parseInt(text.substring(start, end));
+    }
+    return (int) value;
+  }
+
+  private static long parseLong(String text, int start, int end) {
+    long value = parseDigits(text, start, end);
+    if (value == Long.MIN_VALUE) {
+      return Long.parseLong(text.substring(start, end));
+    }
+    return value;
+  }
+
+  /**
+   * @return 可选的{@code -}加上至多18位数字的值，其他情况返回{@link Long#MIN_VALUE}
+   */
+  private static long parseDigits(String text, int start, int end) {
+    boolean negative = start < end && text.charAt(start) == '-';
+    int i = negative ? start + 1 : start;
+    if (i == end || end - i > 18) {
+      return Long.MIN_VALUE;
+    }
+    long value = 0;
+    for (; i < end; i++) {
+      char c = text.charAt(i);
+      if (c < '0' || c > '9') {
+        return Long.MIN_VALUE;
+      }
+      value = value * 10 + (c - '0');
+    }
+    return negative ? -value : value;
   }
 }
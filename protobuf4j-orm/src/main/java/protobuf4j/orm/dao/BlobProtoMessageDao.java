@@ -0,0 +1,146 @@
+package protobuf4j.orm.dao;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.google.protobuf.Descriptors.FieldDescriptor;
+import com.google.protobuf.Message;
+import protobuf4j.core.MessageDiffer;
+import protobuf4j.orm.converter.FieldResolver;
+import protobuf4j.orm.sql.InsertSql;
+import protobuf4j.orm.sql.QueryCreator;
+import protobuf4j.orm.sql.clause.SetClause;
+import protobuf4j.orm.sql.expr.Value;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+import static com.google.common.base.Preconditions.*;
+
+/**
+ * 将整个Message的protobuf编码存储在一个blob列中的DAO，只有主键和声明的索引字段另外写入同名的列，用于查询条件
+ * <p>
+ * 读取时先解析blob列，再用索引列的值覆盖对应字段（例如自增主键）；增加非索引字段不需要修改表结构
+ * <p>
+ * 查询条件、{@link #update(SetClause, protobuf4j.orm.sql.IExpression)}和计数器只能使用索引列，
+ * 其他字段的修改需要通过{@link #updateMessage(Message, Message, protobuf4j.orm.sql.IExpression)}
+ * <p>
+ * author: yuanwq
+ */
+public class BlobProtoMessageDao<K, T extends Message> extends PrimaryKeyProtoMessageDao<K, T> {
+  protected final String blobColumn;
+  /**
+   * 包括主键在内的索引字段
+   */
+  protected final List<String> indexFields;
+  private final List<FieldDescriptor> indexFieldDescriptors;
+
+  /**
+   * @param blobColumn  存储整个Message的列，{@code VARBINARY}/{@code BLOB}类型，不能与字段同名
+   * @param indexFields 除主键外需要写入单独列的字段
+   */
+  public BlobProtoMessageDao(Class<T> messageType, String primaryKey, String blobColumn,
+      String... indexFields) {
+    this(messageType, new FieldResolver<>(messageType), null, primaryKey, blobColumn,
+        indexFields);
+  }
+
+  /**
+   * @param tableName 为空，表示使用默认规则生成表名
+   */
+  public BlobProtoMessageDao(Class<T> messageType, FieldResolver<T> fieldResolver,
+      @Nullable String tableName, String primaryKey, String blobColumn, String... indexFields) {
+    super(messageType, fieldResolver, tableName, primaryKey);
+    checkArgument(messageHelper.getFieldDescriptor(blobColumn) == null,
+        "blob column conflicts with field: " + blobColumn);
+    this.blobColumn = blobColumn;
+    LinkedHashSet<String> fields = Sets.newLinkedHashSet();
+    fields.add(messageHelper.checkFieldDescriptor(primaryKey).getName());
+    for (String field : indexFields) {
+      fields.add(messageHelper.checkFieldDescriptor(field).getName());
+    }
+    this.indexFields = ImmutableList.copyOf(fields);
+    this.indexFieldDescriptors = ImmutableList
+        .copyOf(Lists.transform(this.indexFields, messageHelper::getFieldDescriptor));
+    this.messageMapper.setBlobColumn(blobColumn);
+  }
+
+  public String getBlobColumn() {
+    return blobColumn;
+  }
+
+  public List<String> getIndexFields() {
+    return indexFields;
+  }
+
+  /**
+   * 非索引字段都在blob列中，不支持延迟加载
+   */
+  @Override
+  public BlobProtoMessageDao<K, T> setHeavyFields(String... fieldNames) {
+    throw new UnsupportedOperationException("heavy fields not supported by " + getClass().getName());
+  }
+
+  @Override
+  protected InsertSql buildInsertSql(@Nonnull T message) {
+    InsertSql insertSql = QueryCreator.insertInto(tableName);
+    for (FieldDescriptor fd : indexFieldDescriptors) {
+      if (messageHelper.isFieldSet(message, fd)) {
+        insertSql.addValue(fd.getName(), messageHelper.getFieldValue(message, fd));
+      }
+    }
+    insertSql.addExpression(blobColumn, Value.of(message.toByteArray()));
+    return insertSql;
+  }
+
+  @Override
+  protected LinkedHashSet<String> getInsertFields(Collection<T> messages) {
+    LinkedHashSet<String> columns = Sets.newLinkedHashSet();
+    for (T message : messages) {
+      for (FieldDescriptor fd : indexFieldDescriptors) {
+        if (messageHelper.isFieldSet(message, fd)) {
+          columns.add(fd.getName());
+        }
+      }
+    }
+    columns.add(blobColumn);
+    return columns;
+  }
+
+  @Override
+  protected Object getInsertValue(T message, String column) {
+    if (blobColumn.equals(column)) {
+      return message.toByteArray();
+    }
+    return super.getInsertValue(message, column);
+  }
+
+  @Override
+  protected List<String> getArchiveColumns() {
+    List<String> columns = Lists.newArrayList(indexFields);
+    columns.add(blobColumn);
+    return columns;
+  }
+
+  /**
+   * 只更新变化的索引列，Message有变化时整体更新blob列
+   */
+  @Override
+  protected SetClause makeSetClause(T newItem, T oldItem) {
+    SetClause setClause = new SetClause();
+    List<FieldDescriptor> changed = MessageDiffer.diff(oldItem, newItem);
+    if (changed.isEmpty()) {
+      return setClause;
+    }
+    for (FieldDescriptor fd : changed) {
+      if (indexFieldDescriptors.contains(fd)) {
+        setClause.setValue(fd.getName(), messageHelper.getFieldValue(newItem, fd));
+      }
+    }
+    setClause.setExpression(blobColumn, Value.of(newItem.toByteArray()));
+    return setClause;
+  }
+}
@@ -0,0 +1,88 @@
+package protobuf4j.orm.dao;
+
+import com.google.common.base.Stopwatch;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 分批操作的进度：累计影响的数据条数、批数和耗时
+ * <p>
+ * 线程被中断时，分批操作在当前批完成后停止，{@link #isInterrupted()}为true，线程的中断状态保留
+ *
+ * author: yuanwq
+ */
+public class ChunkProgress {
+  private final Stopwatch stopwatch = Stopwatch.createStarted();
+  private long rows;
+  private int chunks;
+  private int lastChunkRows;
+  private Object lastKey;
+  private boolean interrupted;
+
+  ChunkProgress addChunk(int chunkRows) {
+    this.rows += chunkRows;
+    this.chunks++;
+    this.lastChunkRows = chunkRows;
+    return this;
+  }
+
+  ChunkProgress setInterrupted() {
+    this.interrupted = true;
+    return this;
+  }
+
+  ChunkProgress setLastKey(Object lastKey) {
+    this.lastKey = lastKey;
+    return this;
+  }
+
+  /**
+   * @return 累计影响的数据条数
+   */
+  public long getRows() {
+    return rows;
+  }
+
+  /**
+   * @return 已执行的批数
+   */
+  public int getChunks() {
+    return chunks;
+  }
+
+  /**
+   * @return 最后一批影响的数据条数
+   */
+  int getLastChunkRows() {
+    return lastChunkRows;
+  }
+
+  /**
+   * @return 是否因线程中断而提前停止，此时数据未处理完
+   */
+  public boolean isInterrupted() {
+    return interrupted;
+  }
+
+  /**
+   * @return 按主键分批时，已完成的最后一批的最大主键，可用于中断后继续；其他情况为null
+   */
+  @SuppressWarnings("unchecked")
+  public <K> K getLastKey() {
+    return (K) lastKey;
+  }
+
+  /**
+   * @return 开始至今的耗时
+   */
+  public long getElapsedMs() {
+    return stopwatch.elapsed(TimeUnit.MILLISECONDS);
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "ChunkProgress{rows=%d, chunks=%d, lastKey=%s, interrupted=%s, elapsedMs=%d}", rows,
+        chunks, lastKey, interrupted, getElapsedMs());
+  }
+}
@@ -0,0 +1,233 @@
+package protobuf4j.orm.dao;
+
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.commons.lang3.tuple.Pair;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import java.io.Closeable;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import static com.google.common.base.Preconditions.*;
+
+/**
+ * 在内存中聚合 (key, column) 维度的计数增量，定期或手动将其合并后交给{@link Flusher}写入
+ * <p>
+ * 增量按key分散到多个段(stripe)，每段一个{@link LongAdder}的map和一把读写锁：
+ * 累加时持有读锁，多个线程可以并发累加；flush时持有写锁将整段map换出，保证增量不会丢失。
+ * 写入失败时，换出的增量会重新合并回来，等待下一次flush，
+ * 因此{@link Flusher}需要保证失败时没有写入任何增量
+ * <p>
+ * author: yuanwq
+ */
+public class CounterAggregator<K> implements Closeable {
+  private static final Logger logger = LoggerFactory.getLogger(CounterAggregator.class);
+
+  /**
+   * 将聚合好的增量写入存储
+   */
+  @FunctionalInterface
+  public interface Flusher<K> {
+    /**
+     * @param deltas key到(列名, 增量)的映射，增量都不为0
+     * @return 影响的数据条数
+     */
+    int flush(Map<K, Map<String, Long>> deltas);
+  }
+
+  private final Stripe<K>[] stripes;
+  private final Flusher<K> flusher;
+  private final ScheduledExecutorService scheduler;
+  private final Object flushLock = new Object();
+  private volatile boolean closed = false;
+
+  /**
+   * @param name            名字，用于定时flush的线程名
+   * @param flusher         写入聚合后的增量
+   * @param stripeCount     分段数
+   * @param flushIntervalMs 定时flush的间隔，{@code <=0} 表示不定时flush，只通过{@link #flush()}或{@link #close()}写入
+   */
+  public CounterAggregator(String name, @Nonnull Flusher<K> flusher, int stripeCount,
+      long flushIntervalMs) {
+    checkArgument(stripeCount > 0, "stripeCount(>0): " + stripeCount);
+    this.flusher = checkNotNull(flusher);
+    this.stripes = newStripes(stripeCount);
+    if (flushIntervalMs > 0) {
+      this.scheduler = Executors.newSingleThreadScheduledExecutor(
+          new ThreadFactoryBuilder().setDaemon(true).setNameFormat("counter-aggregator-" + name)
+              .build());
+      this.scheduler
+          .scheduleWithFixedDelay(this::flushQuietly, flushIntervalMs, flushIntervalMs,
+              TimeUnit.MILLISECONDS);
+    } else {
+      this.scheduler = null;
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <K> Stripe<K>[] newStripes(int stripeCount) {
+    Stripe<K>[] stripes = (Stripe<K>[]) new Stripe<?>[stripeCount];
+    for (int i = 0; i < stripeCount; i++) {
+      stripes[i] = new Stripe<>();
+    }
+    return stripes;
+  }
+
+  private Stripe<K> stripeOf(Object key) {
+    int h = key.hashCode();
+    h ^= (h >>> 16);
+    return stripes[(h & Integer.MAX_VALUE) % stripes.length];
+  }
+
+  /**
+   * 累加{@code key}对应数据的{@code column}列
+   */
+  public void add(@Nonnull K key, @Nonnull String column, long delta) {
+    checkNotNull(key);
+    checkNotNull(column);
+    checkState(!closed, "counter aggregator is closed");
+    if (delta == 0) {
+      return;
+    }
+    // 段内在读锁下再检查一次，close之后的增量要么被拒绝，要么在close的flush中写入
+    stripeOf(key).add(Pair.of(key, column), delta);
+  }
+
+  /**
+   * @return {@code key}对应数据的{@code column}列尚未写入的增量
+   */
+  public long pending(@Nonnull K key, @Nonnull String column) {
+    return stripeOf(key).pending(Pair.of(key, column));
+  }
+
+  /**
+   * 立即写入所有已聚合的增量
+   *
+   * @return 影响的数据条数
+   */
+  public int flush() {
+    synchronized (flushLock) {
+      Map<K, Map<String, Long>> deltas = Maps.newLinkedHashMap();
+      for (Stripe<K> stripe : stripes) {
+        for (Map.Entry<Pair<K, String>, LongAdder> entry : stripe.drain().entrySet()) {
+          long delta = entry.getValue().sum();
+          if (delta != 0) {
+            Pair<K, String> pair = entry.getKey();
+            deltas.computeIfAbsent(pair.getKey(), k -> Maps.newTreeMap())
+                .put(pair.getValue(), delta);
+          }
+        }
+      }
+      if (deltas.isEmpty()) {
+        return 0;
+      }
+      try {
+        return flusher.flush(deltas);
+      } catch (RuntimeException e) {
+        // 合并回去，等待下一次flush
+        for (Map.Entry<K, Map<String, Long>> entry : deltas.entrySet()) {
+          K key = entry.getKey();
+          for (Map.Entry<String, Long> columnDelta : entry.getValue().entrySet()) {
+            stripeOf(key).merge(Pair.of(key, columnDelta.getKey()), columnDelta.getValue());
+          }
+        }
+        throw e;
+      }
+    }
+  }
+
+  private void flushQuietly() {
+    try {
+      flush();
+    } catch (Exception e) {
+      logger.error("fail to flush counters, will retry in next round", e);
+    }
+  }
+
+  /**
+   * 停止定时flush，并写入剩余的增量
+   */
+  @Override
+  public void close() {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    if (scheduler != null) {
+      scheduler.shutdown();
+    }
+    for (Stripe<K> stripe : stripes) {
+      stripe.close();
+    }
+    flush();
+  }
+
+  private static class Stripe<K> {
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile ConcurrentHashMap<Pair<K, String>, LongAdder> counters =
+        new ConcurrentHashMap<>();
+    /**
+     * 在写锁下设置，持有读锁时检查
+     */
+    private boolean closed = false;
+
+    void add(Pair<K, String> counterKey, long delta) {
+      lock.readLock().lock();
+      try {
+        checkState(!closed, "counter aggregator is closed");
+        counters.computeIfAbsent(counterKey, k -> new LongAdder()).add(delta);
+      } finally {
+        lock.readLock().unlock();
+      }
+    }
+
+    /**
+     * 合并写入失败的增量，关闭后也可以合并
+     */
+    void merge(Pair<K, String> counterKey, long delta) {
+      lock.readLock().lock();
+      try {
+        counters.computeIfAbsent(counterKey, k -> new LongAdder()).add(delta);
+      } finally {
+        lock.readLock().unlock();
+      }
+    }
+
+    /**
+     * 之后的{@link #add}都会被拒绝，之前的增量都已在段内，由随后的flush写入
+     */
+    void close() {
+      lock.writeLock().lock();
+      try {
+        closed = true;
+      } finally {
+        lock.writeLock().unlock();
+      }
+    }
+
+    long pending(Pair<K, String> counterKey) {
+      LongAdder adder = counters.get(counterKey);
+      return adder == null ? 0 : adder.sum();
+    }
+
+    Map<Pair<K, String>, LongAdder> drain() {
+      lock.writeLock().lock();
+      try {
+        Map<Pair<K, String>, LongAdder> drained = counters;
+        counters = new ConcurrentHashMap<>();
+        return drained;
+      } finally {
+        lock.writeLock().unlock();
+      }
+    }
+  }
+}
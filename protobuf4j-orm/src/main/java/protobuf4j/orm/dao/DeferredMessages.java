@@ -0,0 +1,53 @@
+package protobuf4j.orm.dao;
+
+import com.google.common.collect.Lists;
+import com.google.protobuf.Message;
+
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * 不包含延迟加载字段的查询结果，需要时再按主键以{@code IN}查询批量加载这些字段
+ *
+ * @see PrimaryKeyProtoMessageDao#setHeavyFields(String...)
+ * <p>
+ * author: yuanwq
+ */
+public class DeferredMessages<K, T extends Message> {
+  private final PrimaryKeyProtoMessageDao<K, T> dao;
+  private final List<T> messages;
+
+  DeferredMessages(PrimaryKeyProtoMessageDao<K, T> dao, List<T> messages) {
+    this.dao = dao;
+    this.messages = messages;
+  }
+
+  /**
+   * @return 不包含延迟加载字段的Message
+   */
+  public List<T> getMessages() {
+    return messages;
+  }
+
+  /**
+   * 加载所有Message的延迟加载字段
+   */
+  public List<T> loadAll() {
+    return dao.loadHeavyFields(messages);
+  }
+
+  /**
+   * 只加载满足{@code filter}的Message的延迟加载字段
+   *
+   * @return 满足{@code filter}的完整Message，顺序与查询结果一致
+   */
+  public List<T> load(Predicate<? super T> filter) {
+    List<T> needed = Lists.newArrayList();
+    for (T message : messages) {
+      if (filter.test(message)) {
+        needed.add(message);
+      }
+    }
+    return dao.loadHeavyFields(needed);
+  }
+}
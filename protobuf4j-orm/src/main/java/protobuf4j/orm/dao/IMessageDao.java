@@ -6,12 +6,15 @@ import org.springframework.jdbc.support.KeyHolder;
 import protobuf4j.orm.sql.*;
 import protobuf4j.orm.sql.clause.SetClause;
 import protobuf4j.orm.sql.clause.WhereClause;
+import protobuf4j.orm.util.RateLimit;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
 
 /**
  * 基本的接口
@@ -100,6 +103,18 @@ public interface IMessageDao<T> {
    */
   List<T> selectByWhere(@Nonnull WhereClause where);
 
+  /**
+   * 流水线方式查询：当前线程顺序读取结果集中各列的原始值，由{@code executor}并行转换为Message，
+   * 再在当前线程中交给{@code consumer}，用于需要转换大量json列的导出
+   *
+   * @param where       遍历条件、排序和分页配置
+   * @param parallelism 同时转换中的最大行数
+   * @param ordered     为true时按结果集的顺序回调，否则按转换完成的顺序
+   * @return 查询到的数据条数
+   */
+  long selectParallel(@Nonnull WhereClause where, @Nonnull Executor executor, int parallelism,
+      boolean ordered, @Nonnull Consumer<? super T> consumer);
+
   /**
    * select方法
    */
@@ -134,6 +149,24 @@ public interface IMessageDao<T> {
    */
   int delete(@Nullable IExpression cond);
 
+  /**
+   * 根据条件分批删除数据，每批最多删除{@code chunk}条，避免一次删除大量数据导致长时间锁表和主从延迟
+   *
+   * @param cond      null表示全表
+   * @param rateLimit 每批之间的限流策略
+   * @return 累计删除的数据条数和耗时
+   */
+  ChunkProgress deleteInChunks(@Nullable IExpression cond, int chunk,
+      @Nonnull RateLimit rateLimit);
+
+  /**
+   * 根据条件分批删除数据，每批完成后回调{@code listener}
+   *
+   * @see #deleteInChunks(IExpression, int, RateLimit)
+   */
+  ChunkProgress deleteInChunks(@Nullable IExpression cond, int chunk,
+      @Nonnull RateLimit rateLimit, @Nullable Consumer<ChunkProgress> listener);
+
   /**
    * @return 删除的数据条数
    */
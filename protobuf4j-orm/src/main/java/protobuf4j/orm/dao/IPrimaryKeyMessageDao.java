@@ -1,7 +1,13 @@
 package protobuf4j.orm.dao;
 
+import protobuf4j.orm.sql.IExpression;
+import protobuf4j.orm.util.RateLimit;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import java.util.Collection;
 import java.util.Map;
+import java.util.function.Consumer;
 
 /**
  * author: yuanwq
@@ -54,4 +60,65 @@ public interface IPrimaryKeyMessageDao<K, T> extends IMessageDao<T> {
    * @return 变动的数据条数
    */
   int deleteMultiByPrimaryKey(Collection<K> keys);
+
+  /**
+   * 根据主键值分批删除多条数据，每批最多{@code chunk}个主键
+   *
+   * @param keys      主键值集合
+   * @param rateLimit 每批之间的限流策略
+   * @return 累计删除的数据条数和耗时
+   */
+  ChunkProgress deleteMultiByPrimaryKeyInChunks(Collection<K> keys, int chunk,
+      @Nonnull RateLimit rateLimit);
+
+  /**
+   * 根据主键值分批删除多条数据，每批完成后回调{@code listener}
+   *
+   * @see #deleteMultiByPrimaryKeyInChunks(Collection, int, RateLimit)
+   */
+  ChunkProgress deleteMultiByPrimaryKeyInChunks(Collection<K> keys, int chunk,
+      @Nonnull RateLimit rateLimit, @Nullable Consumer<ChunkProgress> listener);
+
+  /**
+   * 将满足条件的数据按主键升序分批移动到结构相同的{@code archiveTable}，数据不经过应用
+   *
+   * @param chunk     每批的数据条数
+   * @param rateLimit 每批之间的限流策略
+   * @return 累计移动的数据条数、批数和最后一批的最大主键
+   */
+  ChunkProgress archiveInChunks(String archiveTable, @Nullable IExpression cond, int chunk,
+      @Nonnull RateLimit rateLimit);
+
+  /**
+   * 从{@code afterKey}之后继续分批归档，每批完成后回调{@code listener}；
+   * 中断后可以用{@link ChunkProgress#getLastKey()}作为{@code afterKey}继续
+   *
+   * @param afterKey 只归档主键大于它的数据，为null时从头开始
+   * @see #archiveInChunks(String, IExpression, int, RateLimit)
+   */
+  ChunkProgress archiveInChunks(String archiveTable, @Nullable IExpression cond,
+      @Nullable K afterKey, int chunk, @Nonnull RateLimit rateLimit,
+      @Nullable Consumer<ChunkProgress> listener);
+
+  /**
+   * 累加主键为{@code key}的数据的计数列{@code column}
+   * <p>
+   * 增量先在内存中聚合，之后定期或通过{@link #flushCounters()}合并为批量的 {@code SET col = col + ?} 更新，
+   * 以减少热点数据的行锁竞争和sql条数
+   *
+   * @param column int32/int64类型的字段
+   */
+  void incrCounter(K key, String column, long delta);
+
+  /**
+   * @return 主键为{@code key}的数据的计数列{@code column}尚未写入的增量
+   */
+  long getPendingCounter(K key, String column);
+
+  /**
+   * 立即写入所有已聚合的计数增量
+   *
+   * @return 变动的数据条数
+   */
+  int flushCounters();
 }
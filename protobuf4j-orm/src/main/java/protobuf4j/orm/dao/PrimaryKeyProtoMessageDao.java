@@ -1,28 +1,81 @@
 package protobuf4j.orm.dao;
 
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.protobuf.Descriptors.FieldDescriptor;
 import com.google.protobuf.Message;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.DisposableBean;
+import protobuf4j.orm.converter.FieldResolver;
 import protobuf4j.orm.sql.FieldAndValue;
 import protobuf4j.orm.sql.IExpression;
+import protobuf4j.orm.sql.QueryCreator;
+import protobuf4j.orm.sql.SelectSql;
+import protobuf4j.orm.sql.UpdateSql;
+import protobuf4j.orm.sql.clause.SelectClause;
+import protobuf4j.orm.sql.clause.SetClause;
+import protobuf4j.orm.sql.clause.WhereClause;
+import protobuf4j.orm.sql.expr.Column;
+import protobuf4j.orm.sql.expr.Expressions;
+import protobuf4j.orm.sql.expr.Value;
+import protobuf4j.orm.util.RateLimit;
 
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static com.google.common.base.Preconditions.*;
 
 /**
  * author: yuanwq
  * date: 2018/7/23
  */
 public class PrimaryKeyProtoMessageDao<K, T extends Message> extends ProtoMessageDao<T>
-    implements IPrimaryKeyMessageDao<K, T> {
+    implements IPrimaryKeyMessageDao<K, T>, DisposableBean {
+  public static final long DEFAULT_COUNTER_FLUSH_INTERVAL_MS = 1000;
+  /**
+   * 加载延迟加载字段时，一次{@code IN}查询的主键数
+   */
+  public static final int HEAVY_FIELDS_BATCH = 1000;
+
   protected final String primaryKey;
+  /**
+   * 计数器增量定时flush的间隔，{@code <=0} 表示只在{@link #flushCounters()}或销毁时flush
+   */
+  private long counterFlushIntervalMs = DEFAULT_COUNTER_FLUSH_INTERVAL_MS;
+  private int counterStripes = Runtime.getRuntime().availableProcessors() * 2;
+  private volatile CounterAggregator<K> counterAggregator;
+  /**
+   * 延迟加载的字段，查询Message时不读取
+   */
+  private volatile List<String> heavyFields = Collections.emptyList();
+  /**
+   * 查询Message时读取的列：数据表中存在、且不是延迟加载字段的列，有延迟加载字段时第一次查询前解析
+   */
+  private volatile List<String> lightColumns;
 
   public PrimaryKeyProtoMessageDao(Class<T> messageType, String primaryKey) {
     super(messageType);
     this.primaryKey = primaryKey;
   }
 
+  /**
+   * @param tableName 为空，表示使用默认规则生成表名
+   */
+  public PrimaryKeyProtoMessageDao(Class<T> messageType, FieldResolver<T> fieldResolver,
+      @Nullable String tableName, String primaryKey) {
+    super(messageType, fieldResolver, tableName);
+    this.primaryKey = primaryKey;
+  }
+
   @Override
   public String getPrimaryKey() {
     return primaryKey;
@@ -33,6 +86,112 @@ public class PrimaryKeyProtoMessageDao<K, T extends Message> extends ProtoMessag
     return selectOneByCond(FieldAndValue.eq(primaryKey, key));
   }
 
+  ////////////////////////////// heavy fields //////////////////////////////
+
+  /**
+   * 声明延迟加载的字段，例如较大的map/message字段：{@link #selectByWhere(WhereClause)}等查询Message时不再读取这些列，
+   * 需要时通过{@link #loadHeavyFields(List)}或{@link #selectDeferred(WhereClause)}批量加载
+   * <p>
+   * 需要在dao发布给其他线程使用前设置；设置后第一次查询Message时，会先以{@code LIMIT 0}的查询获取数据表的列，
+   * 只读取数据表中存在的列
+   */
+  public PrimaryKeyProtoMessageDao<K, T> setHeavyFields(String... fieldNames) {
+    List<String> fields = Lists.newArrayListWithCapacity(fieldNames.length);
+    for (String fieldName : fieldNames) {
+      String field = messageHelper.checkFieldDescriptor(fieldName).getName();
+      checkArgument(!field.equals(primaryKey), "primary key can not be heavy: " + field);
+      fields.add(field);
+    }
+    this.heavyFields = Collections.unmodifiableList(fields);
+    this.lightColumns = null;
+    return this;
+  }
+
+  public List<String> getHeavyFields() {
+    return heavyFields;
+  }
+
+  @Override
+  protected SelectClause newMessageSelectClause() {
+    if (heavyFields.isEmpty()) {
+      return super.newMessageSelectClause();
+    }
+    SelectClause select = new SelectClause();
+    getLightColumns().forEach(select::select);
+    return select;
+  }
+
+  private List<String> getLightColumns() {
+    List<String> columns = lightColumns;
+    if (columns == null) {
+      List<String> heavy = heavyFields;
+      Set<String> tableColumns = selectTableColumns();
+      columns = Lists.newArrayList();
+      for (FieldDescriptor fd : messageHelper.getFieldDescriptorList()) {
+        String field = fd.getName();
+        if (!heavy.contains(field) && tableColumns.contains(field.toLowerCase())) {
+          columns.add(field);
+        }
+      }
+      checkState(!columns.isEmpty(), "no light columns found in table " + tableName);
+      columns = Collections.unmodifiableList(columns);
+      lightColumns = columns;
+    }
+    return columns;
+  }
+
+  /**
+   * 查询不包含延迟加载字段的Message，返回的结果可以再批量加载这些字段
+   */
+  public DeferredMessages<K, T> selectDeferred(@Nonnull WhereClause where) {
+    return new DeferredMessages<>(this, selectByWhere(where));
+  }
+
+  /**
+   * 按主键以{@code IN}查询加载{@code messages}的延迟加载字段，每{@link #HEAVY_FIELDS_BATCH}条一次查询
+   *
+   * @return 合并了延迟加载字段的Message，与{@code messages}下标一致；已不存在的数据原样返回
+   */
+  public List<T> loadHeavyFields(List<T> messages) {
+    if (heavyFields.isEmpty() || messages.isEmpty()) {
+      return messages;
+    }
+    SelectClause select = new SelectClause().select(primaryKey);
+    heavyFields.forEach(select::select);
+    Map<Object, T> loaded = Maps.newHashMapWithExpectedSize(messages.size());
+    List<Object> keys = Lists.newArrayListWithCapacity(messages.size());
+    for (T message : messages) {
+      keys.add(messageHelper.getFieldValue(message, primaryKey));
+    }
+    for (List<Object> batch : Lists.partition(keys, HEAVY_FIELDS_BATCH)) {
+      SelectSql selectSql = new SelectSql(select, fromClause);
+      selectSql.where().setCond(FieldAndValue.in(primaryKey, batch));
+      for (T item : doSelect(selectSql, messageMapper)) {
+        loaded.put(messageHelper.getFieldValue(item, primaryKey), item);
+      }
+    }
+    List<T> result = Lists.newArrayListWithCapacity(messages.size());
+    for (int i = 0; i < messages.size(); i++) {
+      T heavy = loaded.get(keys.get(i));
+      result.add(heavy == null ? messages.get(i) : mergeHeavyFields(messages.get(i), heavy));
+    }
+    return result;
+  }
+
+  @SuppressWarnings("unchecked")
+  private T mergeHeavyFields(T message, T heavy) {
+    Message.Builder builder = message.toBuilder();
+    for (String field : heavyFields) {
+      FieldDescriptor fd = messageHelper.checkFieldDescriptor(field);
+      if (fd.isRepeated() || heavy.hasField(fd)) {
+        builder.setField(fd, heavy.getField(fd));
+      } else {
+        builder.clearField(fd);
+      }
+    }
+    return (T) builder.build();
+  }
+
   @SuppressWarnings("unchecked")
   @Override
   public Map<K, T> selectMultiByPrimaryKey(Collection<K> keys) {
@@ -73,4 +232,267 @@ public class PrimaryKeyProtoMessageDao<K, T extends Message> extends ProtoMessag
     }
     return delete(FieldAndValue.in(primaryKey, keys));
   }
+
+  /**
+   * 循环执行 {@code SELECT pk ... WHERE cond AND pk > lastPk ORDER BY pk LIMIT chunk}，
+   * 再以 {@code WHERE cond AND pk IN (...)} 删除这一批，直到某一批不足{@code chunk}条
+   * <p>
+   * 按主键删除避免了 {@code DELETE ... LIMIT} 在基于语句的复制中的不确定性
+   */
+  @Override
+  public ChunkProgress deleteInChunks(@Nullable IExpression cond, int chunk,
+      @Nonnull RateLimit rateLimit, @Nullable Consumer<ChunkProgress> listener) {
+    checkArgument(chunk > 0, "chunk(>0): " + chunk);
+    checkNotNull(rateLimit);
+    ChunkProgress progress = new ChunkProgress();
+    K lastKey = null;
+    while (beforeNextChunk(progress, rateLimit)) {
+      List<K> keys = selectNextKeys(cond, lastKey, chunk);
+      if (keys.isEmpty()) {
+        break;
+      }
+      lastKey = keys.get(keys.size() - 1);
+      progress.setLastKey(lastKey);
+      // 再次带上cond，查询之后被修改为不满足条件的数据不会被删除
+      IExpression keysCond = FieldAndValue.in(primaryKey, keys);
+      onChunkDone(progress, delete(cond == null ? keysCond : cond.and(keysCond)), listener);
+      if (keys.size() < chunk) {
+        break;
+      }
+    }
+    logChunkProgress("delete in chunks", progress);
+    return progress;
+  }
+
+  /**
+   * @return 满足{@code cond}且大于{@code afterKey}的前{@code chunk}个主键，升序
+   */
+  private List<K> selectNextKeys(@Nullable IExpression cond, @Nullable K afterKey, int chunk) {
+    IExpression chunkCond = afterCond(cond, afterKey);
+    SelectSql selectSql = new SelectSql(new SelectClause().select(primaryKey), fromClause);
+    selectSql.where().limit(chunk).setCond(chunkCond);
+    selectSql.where().orderBy().asc(primaryKey);
+    FieldDescriptor pkFd = messageHelper.checkFieldDescriptor(primaryKey);
+    return doSelect(selectSql, new ProtoFieldRowMapper<>(fieldResolver, pkFd));
+  }
+
+  private IExpression afterCond(@Nullable IExpression cond, @Nullable K afterKey) {
+    if (afterKey == null) {
+      return cond;
+    }
+    IExpression afterKeyCond = FieldAndValue.gt(primaryKey, afterKey);
+    return cond == null ? afterKeyCond : cond.and(afterKeyCond);
+  }
+
+  @Override
+  public ChunkProgress deleteMultiByPrimaryKeyInChunks(Collection<K> keys, int chunk,
+      @Nonnull RateLimit rateLimit) {
+    return deleteMultiByPrimaryKeyInChunks(keys, chunk, rateLimit, null);
+  }
+
+  @Override
+  public ChunkProgress deleteMultiByPrimaryKeyInChunks(Collection<K> keys, int chunk,
+      @Nonnull RateLimit rateLimit, @Nullable Consumer<ChunkProgress> listener) {
+    checkArgument(chunk > 0, "chunk(>0): " + chunk);
+    checkNotNull(rateLimit);
+    ChunkProgress progress = new ChunkProgress();
+    for (List<K> part : Iterables.partition(keys, chunk)) {
+      if (!beforeNextChunk(progress, rateLimit)) {
+        break;
+      }
+      onChunkDone(progress, deleteMultiByPrimaryKey(part), listener);
+    }
+    logChunkProgress("delete multi by primary key in chunks", progress);
+    return progress;
+  }
+
+  @Override
+  public ChunkProgress archiveInChunks(String archiveTable, @Nullable IExpression cond, int chunk,
+      @Nonnull RateLimit rateLimit) {
+    return archiveInChunks(archiveTable, cond, null, chunk, rateLimit, null);
+  }
+
+  /**
+   * 每一批在一个事务中执行：
+   * <ol>
+   * <li>{@code SELECT pk ... WHERE cond AND pk > lastPk ORDER BY pk LIMIT chunk}，确定这一批的主键范围 (lastPk, maxPk]</li>
+   * <li>{@code INSERT INTO archive (...) SELECT ... WHERE cond AND pk > lastPk AND pk <= maxPk}</li>
+   * <li>{@code DELETE ... WHERE cond AND pk > lastPk AND pk <= maxPk}</li>
+   * </ol>
+   * 数据只在数据库内部复制，只有主键会返回给应用；插入与删除的条数不一致时回滚这一批并抛出{@link IllegalStateException}
+   */
+  @Override
+  public ChunkProgress archiveInChunks(String archiveTable, @Nullable IExpression cond,
+      @Nullable K afterKey, int chunk, @Nonnull RateLimit rateLimit,
+      @Nullable Consumer<ChunkProgress> listener) {
+    checkArgument(StringUtils.isNotBlank(archiveTable), "blank archive table");
+    checkArgument(!archiveTable.equals(tableName), "archive to self: " + archiveTable);
+    checkArgument(chunk > 0, "chunk(>0): " + chunk);
+    checkNotNull(rateLimit);
+    List<String> columns = getArchiveColumns();
+    SelectClause select = new SelectClause();
+    columns.forEach(select::select);
+    ChunkProgress progress = new ChunkProgress().setLastKey(afterKey);
+    K lastKey = afterKey;
+    while (beforeNextChunk(progress, rateLimit)) {
+      List<K> keys = selectNextKeys(cond, lastKey, chunk);
+      if (keys.isEmpty()) {
+        break;
+      }
+      K maxKey = keys.get(keys.size() - 1);
+      IExpression afterCond = afterCond(cond, lastKey);
+      IExpression upToMax = FieldAndValue.lte(primaryKey, maxKey);
+      IExpression archiveCond = afterCond == null ? upToMax : afterCond.and(upToMax);
+      Integer rows = getTransactionTemplate().execute(status -> {
+        SelectSql selectSql = new SelectSql(select, fromClause);
+        selectSql.where().setCond(archiveCond);
+        int inserted = doInsert(QueryCreator.insertInto(archiveTable).select(columns, selectSql),
+            null);
+        int deleted = delete(archiveCond);
+        if (inserted != deleted) {
+          throw new IllegalStateException(String
+              .format("archive %s to %s, inserted %d rows but deleted %d rows in key range (%s, %s]",
+                  tableName, archiveTable, inserted, deleted, progress.getLastKey(), maxKey));
+        }
+        return deleted;
+      });
+      lastKey = maxKey;
+      progress.setLastKey(lastKey);
+      onChunkDone(progress, rows == null ? 0 : rows, listener);
+      if (keys.size() < chunk) {
+        break;
+      }
+    }
+    logChunkProgress("archive to " + archiveTable + " in chunks", progress);
+    return progress;
+  }
+
+  /**
+   * @return 归档时复制的列
+   */
+  protected List<String> getArchiveColumns() {
+    List<String> columns = Lists.newArrayList();
+    for (FieldDescriptor fd : messageHelper.getFieldDescriptorList()) {
+      columns.add(fd.getName());
+    }
+    return columns;
+  }
+
+  ////////////////////////////// counter //////////////////////////////
+
+  public long getCounterFlushIntervalMs() {
+    return counterFlushIntervalMs;
+  }
+
+  /**
+   * 需要在第一次{@link #incrCounter(Object, String, long)}之前设置
+   */
+  public void setCounterFlushIntervalMs(long counterFlushIntervalMs) {
+    checkState(counterAggregator == null, "counter aggregator already started");
+    this.counterFlushIntervalMs = counterFlushIntervalMs;
+  }
+
+  public int getCounterStripes() {
+    return counterStripes;
+  }
+
+  /**
+   * 需要在第一次{@link #incrCounter(Object, String, long)}之前设置
+   */
+  public void setCounterStripes(int counterStripes) {
+    checkState(counterAggregator == null, "counter aggregator already started");
+    checkArgument(counterStripes > 0, "counterStripes(>0): " + counterStripes);
+    this.counterStripes = counterStripes;
+  }
+
+  private CounterAggregator<K> getCounterAggregator() {
+    CounterAggregator<K> aggregator = counterAggregator;
+    if (aggregator == null) {
+      synchronized (this) {
+        aggregator = counterAggregator;
+        if (aggregator == null) {
+          aggregator = new CounterAggregator<>(tableName, this::doFlushCounters, counterStripes,
+              counterFlushIntervalMs);
+          counterAggregator = aggregator;
+        }
+      }
+    }
+    return aggregator;
+  }
+
+  @Override
+  public void incrCounter(K key, String column, long delta) {
+    checkNotNull(key);
+    FieldDescriptor fd = messageHelper.checkFieldDescriptor(column);
+    checkArgument(!fd.isRepeated() && (fd.getJavaType() == FieldDescriptor.JavaType.INT ||
+        fd.getJavaType() == FieldDescriptor.JavaType.LONG), "not a counter field: " + column);
+    getCounterAggregator().add(key, column, delta);
+  }
+
+  @Override
+  public long getPendingCounter(K key, String column) {
+    CounterAggregator<K> aggregator = counterAggregator;
+    return aggregator == null ? 0 : aggregator.pending(key, column);
+  }
+
+  @Override
+  public int flushCounters() {
+    CounterAggregator<K> aggregator = counterAggregator;
+    return aggregator == null ? 0 : aggregator.flush();
+  }
+
+  /**
+   * 将聚合后的增量按列组合分组，每组批量执行 {@code UPDATE t SET c1=c1+?,c2=c2+? WHERE pk=?}，
+   * 所有分组在同一个事务中执行，失败时整体回滚，由{@link CounterAggregator}合并回去后不会重复累加
+   */
+  protected int doFlushCounters(Map<K, Map<String, Long>> deltas) {
+    Integer rows = getTransactionTemplate().execute(status -> doFlushCounterGroups(deltas));
+    return rows == null ? 0 : rows;
+  }
+
+  private int doFlushCounterGroups(Map<K, Map<String, Long>> deltas) {
+    Map<List<String>, List<UpdateSql>> groups = Maps.newLinkedHashMap();
+    for (Map.Entry<K, Map<String, Long>> entry : deltas.entrySet()) {
+      SetClause setClause = new SetClause();
+      for (Map.Entry<String, Long> columnDelta : entry.getValue().entrySet()) {
+        String column = columnDelta.getKey();
+        setClause.setExpression(column,
+            Expressions.add(Column.of(column), Value.of(columnDelta.getValue())));
+      }
+      UpdateSql updateSql = new UpdateSql(fromClause.getTableRef(), setClause);
+      updateSql.where().setCond(FieldAndValue.eq(primaryKey, entry.getKey()));
+      groups.computeIfAbsent(Lists.newArrayList(entry.getValue().keySet()),
+          k -> Lists.newArrayList()).add(updateSql);
+    }
+    int rows = 0;
+    for (List<UpdateSql> group : groups.values()) {
+      String sql = group.get(0).toSqlTemplate(new StringBuilder()).toString();
+      List<Object[]> batchArgs = Lists.newArrayListWithExpectedSize(group.size());
+      for (UpdateSql updateSql : group) {
+        batchArgs.add(convertSqlValues(updateSql.collectSqlValue(Lists.newArrayList())).toArray());
+      }
+      timer.restart();
+      try {
+        for (int row : jdbcTemplate.batchUpdate(sql, batchArgs)) {
+          rows += Math.max(row, 0);
+        }
+      } finally {
+        sqlLogger.update()
+            .info("cost={}, {}, counter batch: {}", timer.stop(TimeUnit.MILLISECONDS), sql,
+                Lists.transform(batchArgs, Arrays::toString));
+      }
+    }
+    return rows;
+  }
+
+  /**
+   * 销毁时写入尚未flush的计数器增量
+   */
+  @Override
+  public void destroy() {
+    CounterAggregator<K> aggregator = counterAggregator;
+    if (aggregator != null) {
+      aggregator.close();
+    }
+  }
 }
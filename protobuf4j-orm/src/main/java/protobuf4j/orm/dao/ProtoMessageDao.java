@@ -3,6 +3,7 @@ package protobuf4j.orm.dao;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
+import com.google.protobuf.ByteString;
 import com.google.protobuf.Descriptors.FieldDescriptor;
 import com.google.protobuf.Message;
 import org.apache.commons.lang3.StringUtils;
@@ -11,21 +12,29 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.jdbc.core.*;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.JdbcUtils;
 import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.transaction.support.TransactionTemplate;
+import protobuf4j.core.MessageDiffer;
 import protobuf4j.core.ProtoMessageHelper;
 import protobuf4j.orm.converter.FieldResolver;
 import protobuf4j.orm.converter.IFieldResolver;
 import protobuf4j.orm.sql.*;
 import protobuf4j.orm.sql.clause.*;
 import protobuf4j.orm.sql.expr.RawExpr;
+import protobuf4j.orm.util.RateLimit;
 import protobuf4j.orm.util.ThreadLocalTimer;
+import protobuf4j.orm.util.ValueInterner;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.sql.*;
 import java.util.*;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 import static com.google.common.base.Preconditions.*;
 
@@ -62,6 +71,7 @@ public class ProtoMessageDao<T extends Message> implements IMessageDao<T>, Initi
    */
   protected final DaoSqlLogger sqlLogger;
   protected JdbcTemplate jdbcTemplate;
+  private volatile TransactionTemplate transactionTemplate;
 
   public ProtoMessageDao(@Nonnull Class<T> messageType) {
     this(messageType, new FieldResolver<>(messageType), null);
@@ -108,6 +118,16 @@ public class ProtoMessageDao<T extends Message> implements IMessageDao<T>, Initi
     return messageMapper;
   }
 
+  /**
+   * 查询结果中的string/bytes值以{@code valueInterner}去重，适合大量重复的低基数值，为null时不去重
+   *
+   * @see ValueInterner
+   */
+  public ProtoMessageDao<T> setValueInterner(@Nullable ValueInterner valueInterner) {
+    messageMapper.setValueInterner(valueInterner);
+    return this;
+  }
+
   @Override
   public JdbcTemplate getJdbcTemplate() {
     return jdbcTemplate;
@@ -116,9 +136,21 @@ public class ProtoMessageDao<T extends Message> implements IMessageDao<T>, Initi
   @Override
   public void setJdbcTemplate(JdbcTemplate jdbcTemplate) {
     this.jdbcTemplate = jdbcTemplate;
+    this.transactionTemplate = null;
   }
 
-  private List<Object> convertSqlValues(List<ISqlValue> sqlValues) {
+  /**
+   * 在{@link #jdbcTemplate}的数据源上执行事务
+   */
+  protected TransactionTemplate getTransactionTemplate() {
+    if (transactionTemplate == null) {
+      transactionTemplate =
+          new TransactionTemplate(new DataSourceTransactionManager(jdbcTemplate.getDataSource()));
+    }
+    return transactionTemplate;
+  }
+
+  protected List<Object> convertSqlValues(List<ISqlValue> sqlValues) {
     List<Object> values = Lists.newArrayListWithExpectedSize(sqlValues.size());
     for (ISqlValue sqlValue : sqlValues) {
       Object value;
@@ -133,6 +165,19 @@ public class ProtoMessageDao<T extends Message> implements IMessageDao<T>, Initi
     return values;
   }
 
+  /**
+   * 绑定sql参数，{@link ByteString}以{@link ByteString#newInput()}绑定，避免复制
+   */
+  protected static void setParameter(PreparedStatement ps, int index, Object value)
+      throws SQLException {
+    if (value instanceof ByteString) {
+      ByteString bytes = (ByteString) value;
+      ps.setBinaryStream(index, bytes.newInput(), bytes.size());
+    } else {
+      ps.setObject(index, value);
+    }
+  }
+
   ////////////////////////////// raw sql //////////////////////////////
 
   @Override
@@ -160,8 +205,8 @@ public class ProtoMessageDao<T extends Message> implements IMessageDao<T>, Initi
   protected InsertSql buildInsertSql(@Nonnull T message) {
     InsertSql insertSql = QueryCreator.insertInto(tableName);
     for (FieldDescriptor fd : messageHelper.getFieldDescriptorList()) {
-      if (messageHelper.isFieldSet(message, fd.getName())) {
-        Object value = messageHelper.getFieldValue(message, fd.getName());
+      if (messageHelper.isFieldSet(message, fd)) {
+        Object value = messageHelper.getFieldValue(message, fd);
         insertSql.addValue(fd.getName(), value);
       }
     }
@@ -229,10 +274,7 @@ public class ProtoMessageDao<T extends Message> implements IMessageDao<T>, Initi
           T message = messages.get(i);
           int j = 1;
           for (String name : used) {
-            FieldDescriptor fd = messageHelper.getFieldDescriptor(name);
-            Object value = messageHelper.getFieldValue(message, name);
-            value = fieldResolver.toSqlValue(fd, value);
-            ps.setObject(j++, value);
+            setParameter(ps, j++, getInsertValue(message, name));
           }
         }
 
@@ -248,18 +290,32 @@ public class ProtoMessageDao<T extends Message> implements IMessageDao<T>, Initi
     }
   }
 
-  private LinkedHashSet<String> getInsertFields(Collection<T> messages) {
-    LinkedHashSet<String> fields = Sets.newLinkedHashSet();
+  /**
+   * @return 批量插入{@code messages}时使用的列
+   */
+  protected LinkedHashSet<String> getInsertFields(Collection<T> messages) {
+    long[] mask = null;
     for (T message : messages) {
-      for (FieldDescriptor fd : messageHelper.getFieldDescriptorList()) {
-        if (messageHelper.isFieldSet(message, fd.getName())) {
-          fields.add(fd.getName());
-        }
+      mask = mask == null ? messageHelper.setFieldMask(message) :
+          messageHelper.mergeSetFieldMask(mask, message);
+    }
+    LinkedHashSet<String> fields = Sets.newLinkedHashSet();
+    for (FieldDescriptor fd : messageHelper.getFieldDescriptorList()) {
+      if (mask != null && ProtoMessageHelper.isSet(mask, fd.getIndex())) {
+        fields.add(fd.getName());
       }
     }
     return fields;
   }
 
+  /**
+   * @return 批量插入时{@code message}在{@code column}列的sql值
+   */
+  protected Object getInsertValue(T message, String column) {
+    FieldDescriptor fd = messageHelper.getFieldDescriptor(column);
+    return fieldResolver.toSqlValue(fd, messageHelper.getFieldValue(message, fd));
+  }
+
   ////////////////////////////// iterator //////////////////////////////
 
   @Override
@@ -345,15 +401,45 @@ public class ProtoMessageDao<T extends Message> implements IMessageDao<T>, Initi
     return selectByWhere(whereClause);
   }
 
+  /**
+   * @return 查询Message时的select子句，默认为{@code SELECT *}
+   */
+  protected SelectClause newMessageSelectClause() {
+    return new SelectClause().select(SqlUtil.SELECT_STAR);
+  }
+
   @Override
   public List<T> selectByWhere(@Nonnull WhereClause where) {
     checkNotNull(where);
-    SelectClause select = new SelectClause().select(SqlUtil.SELECT_STAR);
-    SelectSql sql = new SelectSql(select, fromClause);
+    SelectSql sql = new SelectSql(newMessageSelectClause(), fromClause);
     sql.setWhere(where);
     return doSelect(sql, messageMapper);
   }
 
+  @Override
+  public long selectParallel(@Nonnull WhereClause where, @Nonnull Executor executor,
+      int parallelism, boolean ordered, @Nonnull Consumer<? super T> consumer) {
+    checkNotNull(where);
+    checkNotNull(executor);
+    checkArgument(parallelism > 0, "parallelism(>0): " + parallelism);
+    checkNotNull(consumer);
+    SelectSql sql = new SelectSql(newMessageSelectClause(), fromClause);
+    sql.setWhere(where);
+    RowDecodingPipeline<T> pipeline =
+        new RowDecodingPipeline<>(messageMapper, executor, parallelism, ordered, consumer);
+    SqlStatementExecution execution = new SqlStatementExecution(sql);
+    timer.restart();
+    try {
+      this.jdbcTemplate.query(execution.getStatementCreator(), pipeline);
+      return pipeline.finish();
+    } catch (RuntimeException | Error e) {
+      pipeline.cancel();
+      throw e;
+    } finally {
+      execution.log(sqlLogger.select(), timer.stop(TimeUnit.MILLISECONDS));
+    }
+  }
+
   @Override
   public <V> List<V> doSelect(@Nonnull SelectSql selectSql, @Nonnull RowMapper<V> mapper) {
     checkNotNull(selectSql);
@@ -366,6 +452,32 @@ public class ProtoMessageDao<T extends Message> implements IMessageDao<T>, Initi
     }
   }
 
+  /**
+   * 执行一次{@code SELECT * ... LIMIT 0}，从结果的元数据中获取数据表的列名
+   *
+   * @return 小写的列名
+   */
+  protected Set<String> selectTableColumns() {
+    SelectSql selectSql =
+        new SelectSql(new SelectClause().select(SqlUtil.SELECT_STAR), fromClause);
+    selectSql.setWhere(QueryCreator.where().limit(0));
+    SqlStatementExecution execution = new SqlStatementExecution(selectSql);
+    timer.restart();
+    try {
+      return this.jdbcTemplate.query(execution.getStatementCreator(),
+          (ResultSetExtractor<Set<String>>) rs -> {
+            ResultSetMetaData rsmd = rs.getMetaData();
+            Set<String> columns = Sets.newHashSet();
+            for (int index = 1; index <= rsmd.getColumnCount(); index++) {
+              columns.add(JdbcUtils.lookupColumnName(rsmd, index).toLowerCase());
+            }
+            return columns;
+          });
+    } finally {
+      execution.log(sqlLogger.select(), timer.stop(TimeUnit.MILLISECONDS));
+    }
+  }
+
   ////////////////////////////// delete //////////////////////////////
 
   @Override
@@ -375,6 +487,69 @@ public class ProtoMessageDao<T extends Message> implements IMessageDao<T>, Initi
     return doDelete(deleteSql);
   }
 
+  @Override
+  public ChunkProgress deleteInChunks(@Nullable IExpression cond, int chunk,
+      @Nonnull RateLimit rateLimit) {
+    return deleteInChunks(cond, chunk, rateLimit, null);
+  }
+
+  /**
+   * 循环执行 {@code DELETE ... WHERE cond LIMIT chunk}，直到某一批删除的条数不足{@code chunk}
+   */
+  @Override
+  public ChunkProgress deleteInChunks(@Nullable IExpression cond, int chunk,
+      @Nonnull RateLimit rateLimit, @Nullable Consumer<ChunkProgress> listener) {
+    checkArgument(chunk > 0, "chunk(>0): " + chunk);
+    checkNotNull(rateLimit);
+    ChunkProgress progress = new ChunkProgress();
+    while (beforeNextChunk(progress, rateLimit)) {
+      DeleteSql deleteSql = new DeleteSql(fromClause);
+      deleteSql.where().limit(chunk).setCond(cond);
+      int rows = doDelete(deleteSql);
+      onChunkDone(progress, rows, listener);
+      if (rows < chunk) {
+        break;
+      }
+    }
+    logChunkProgress("delete in chunks", progress);
+    return progress;
+  }
+
+  /**
+   * 开始下一批之前调用：按上一批的条数限流，最后一批之后不再限流
+   *
+   * @return 线程被中断时返回false，并在进度中标记中断
+   */
+  protected boolean beforeNextChunk(ChunkProgress progress, RateLimit rateLimit) {
+    if (progress.getChunks() > 0) {
+      rateLimit.acquire(progress.getLastChunkRows());
+    }
+    if (Thread.currentThread().isInterrupted()) {
+      progress.setInterrupted();
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * 记录一批操作的进度
+   */
+  protected void onChunkDone(ChunkProgress progress, int rows,
+      @Nullable Consumer<ChunkProgress> listener) {
+    progress.addChunk(rows);
+    if (listener != null) {
+      listener.accept(progress);
+    }
+  }
+
+  protected void logChunkProgress(String operation, ChunkProgress progress) {
+    if (progress.isInterrupted()) {
+      daoLogger.warn("{} interrupted, {}", operation, progress);
+    } else {
+      daoLogger.info("{} done, {}", operation, progress);
+    }
+  }
+
   @Override
   public int doDelete(@Nonnull DeleteSql deleteSql) {
     checkNotNull(deleteSql);
@@ -395,14 +570,13 @@ public class ProtoMessageDao<T extends Message> implements IMessageDao<T>, Initi
     return update(setClause, cond);
   }
 
-  private SetClause makeSetClause(T newItem, T oldItem) {
+  /**
+   * @see MessageDiffer#diff(Message, Message)
+   */
+  protected SetClause makeSetClause(T newItem, T oldItem) {
     SetClause setClause = new SetClause();
-    for (FieldDescriptor fd : messageHelper.getFieldDescriptorList()) {
-      Object oldValue = messageHelper.getFieldValue(oldItem, fd.getName());
-      Object newValue = messageHelper.getFieldValue(newItem, fd.getName());
-      if (!Objects.equals(oldValue, newValue)) {
-        setClause.setValue(fd.getName(), newValue);
-      }
+    for (FieldDescriptor fd : MessageDiffer.diff(oldItem, newItem)) {
+      setClause.setValue(fd.getName(), messageHelper.getFieldValue(newItem, fd));
     }
     return setClause;
   }
@@ -563,6 +737,41 @@ public class ProtoMessageDao<T extends Message> implements IMessageDao<T>, Initi
     }
   }
 
+  ////////////////////////////// warm up //////////////////////////////
+
+  /**
+   * 预热，在接收请求前调用，避免首次访问时的初始化开销：创建字段中message类型的helper，以各字段的默认值调用一次
+   * converter（构建jackson的序列化器等），生成一次查询语句的sql
+   *
+   * @param validate 是否执行一次{@code LIMIT 0}的查询，检查数据表和数据库连接；为false时不访问数据库
+   */
+  public void warmUp(boolean validate) {
+    T defaultMessage = messageHelper.defaultValue();
+    List<Class<? extends Message>> fieldMessageTypes = Lists.newArrayList();
+    for (FieldDescriptor fd : messageHelper.getFieldDescriptorList()) {
+      if (fd.getJavaType() == FieldDescriptor.JavaType.MESSAGE && !fd.isMapField()) {
+        fieldMessageTypes
+            .add(messageHelper.newBuilderForField(fd).getDefaultInstanceForType().getClass());
+      }
+      Object sqlValue =
+          fieldResolver.toSqlValue(fd, messageHelper.getFieldValue(defaultMessage, fd));
+      fieldResolver.fromSqlValue(fd, sqlValue);
+    }
+    ProtoMessageHelper.preload(fieldMessageTypes);
+
+    if (validate) {
+      SelectSql selectSql = new SelectSql(newMessageSelectClause(), fromClause);
+      selectSql.setWhere(QueryCreator.where().limit(0));
+      doSelect(selectSql, messageMapper);
+    } else {
+      // 不访问数据库：子类的newMessageSelectClause可能需要查询数据表的列
+      SelectSql selectSql =
+          new SelectSql(new SelectClause().select(SqlUtil.SELECT_STAR), fromClause);
+      selectSql.setWhere(QueryCreator.where().limit(0));
+      selectSql.toSqlTemplate(new StringBuilder());
+    }
+  }
+
   private class SqlStatementExecution {
     private final ISqlStatement sqlStatement;
     private final String sqlTemplate;
@@ -583,7 +792,7 @@ public class ProtoMessageDao<T extends Message> implements IMessageDao<T>, Initi
           if (values.isEmpty()) return ps;
           int i = 1;
           for (Object value : values) {
-            ps.setObject(i++, value);
+            setParameter(ps, i++, value);
           }
           return ps;
         }
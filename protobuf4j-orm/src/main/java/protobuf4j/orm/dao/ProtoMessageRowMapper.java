@@ -9,8 +9,11 @@
 
 package protobuf4j.orm.dao;
 
+import com.google.common.collect.Lists;
 import com.google.protobuf.Descriptors.FieldDescriptor;
+import com.google.protobuf.InvalidProtocolBufferException;
 import com.google.protobuf.Message;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
 import org.springframework.dao.DataRetrievalFailureException;
@@ -18,10 +21,13 @@ import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.support.JdbcUtils;
 import protobuf4j.core.ProtoMessageHelper;
 import protobuf4j.orm.converter.FieldResolver;
+import protobuf4j.orm.util.ValueInterner;
 
+import javax.annotation.Nullable;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
+import java.util.List;
 
 /**
  * 将数据库一行数据映射为Protobuf Message
@@ -33,11 +39,57 @@ import java.sql.SQLException;
 public class ProtoMessageRowMapper<T extends Message> implements RowMapper<T> {
   private final ProtoMessageHelper<T> messageHelper;
   private final FieldResolver<T> fieldResolver;
+  /**
+   * 存储整个Message的protobuf编码的列，为null表示逐列映射
+   */
+  private String blobColumn;
+  /**
+   * 基本类型的列是否以类型化的getter读取并直接调用builder的setter，见{@link ScalarColumnMapper}；
+   * 子类覆盖了{@link #getColumnValue(ResultSet, int, FieldDescriptor)}时不使用
+   */
+  private boolean typedMapping;
+  /**
+   * 不为null时，string/bytes类型的字段值（包括repeated的元素和map的key/value）经过去重后再写入Message
+   */
+  @Nullable
+  private ValueInterner valueInterner;
+  /**
+   * 按{@link FieldDescriptor#getIndex()}索引，首次映射时创建
+   */
+  @Getter(AccessLevel.NONE)
+  @Setter(AccessLevel.NONE)
+  private volatile ScalarColumnMapper[] scalarColumnMappers;
 
   public ProtoMessageRowMapper(ProtoMessageHelper<T> messageHelper,
       FieldResolver<T> fieldResolver) {
     this.messageHelper = messageHelper;
     this.fieldResolver = fieldResolver;
+    this.typedMapping = !overridesGetColumnValue();
+  }
+
+  private boolean overridesGetColumnValue() {
+    try {
+      return getClass().getMethod("getColumnValue", ResultSet.class, int.class,
+          FieldDescriptor.class).getDeclaringClass() != ProtoMessageRowMapper.class;
+    } catch (NoSuchMethodException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private ScalarColumnMapper[] getScalarColumnMappers() {
+    ScalarColumnMapper[] mappers = scalarColumnMappers;
+    if (mappers == null) {
+      Class<?> builderClass = messageHelper.newBuilder().getClass();
+      List<FieldDescriptor> fds = messageHelper.getFieldDescriptorList();
+      mappers = new ScalarColumnMapper[fds.size()];
+      for (FieldDescriptor fd : fds) {
+        if (fieldResolver.isBasicTypeField(fd)) {
+          mappers[fd.getIndex()] = ScalarColumnMapper.create(builderClass, fd);
+        }
+      }
+      scalarColumnMappers = mappers;
+    }
+    return mappers;
   }
 
   /**
@@ -51,18 +103,29 @@ public class ProtoMessageRowMapper<T extends Message> implements RowMapper<T> {
     Message.Builder builder = this.messageHelper.newBuilder();
     ResultSetMetaData rsmd = rs.getMetaData();
     int columnCount = rsmd.getColumnCount();
+    int blobIndex = mergeBlobColumn(rs, rsmd, builder);
+    ScalarColumnMapper[] columnMappers = typedMapping ? getScalarColumnMappers() : null;
 
     for (int index = 1; index <= columnCount; index++) {
+      if (index == blobIndex) {
+        continue;
+      }
       String column = JdbcUtils.lookupColumnName(rsmd, index);
       column = column.toLowerCase(); // TODO: always got upper case, but why?
       FieldDescriptor fd = this.messageHelper.getFieldDescriptor(column);
       if (fd != null) {
         Object value = null;
         try {
+          ScalarColumnMapper columnMapper =
+              columnMappers == null ? null : columnMappers[fd.getIndex()];
+          if (columnMapper != null) {
+            columnMapper.mapColumn(rs, index, builder, valueInterner);
+            continue;
+          }
           value = getColumnValue(rs, index, fd);
           if (value == null) continue;
           value = fieldResolver.fromSqlValue(fd, value);
-          builder.setField(fd, value);
+          messageHelper.setField(builder, fd, internFieldValue(fd, value));
         } catch (Exception ex) {
           throw new DataRetrievalFailureException(
               "Unable to map column " + column + " to " + fd.getFullName() + " of type " +
@@ -74,6 +137,167 @@ public class ProtoMessageRowMapper<T extends Message> implements RowMapper<T> {
     return (T) builder.build();
   }
 
+  private static boolean isInternType(FieldDescriptor fd) {
+    return fd.getJavaType() == FieldDescriptor.JavaType.STRING ||
+        fd.getJavaType() == FieldDescriptor.JavaType.BYTE_STRING;
+  }
+
+  /**
+   * 以{@link #valueInterner}对string/bytes类型的字段值去重
+   */
+  private Object internFieldValue(FieldDescriptor fd, Object value) {
+    ValueInterner interner = this.valueInterner;
+    if (interner == null) {
+      return value;
+    }
+    if (fd.isMapField()) {
+      FieldDescriptor keyFd = fd.getMessageType().findFieldByName("key");
+      FieldDescriptor valFd = fd.getMessageType().findFieldByName("value");
+      if (!(value instanceof List) || !isInternType(keyFd) && !isInternType(valFd)) {
+        return value;
+      }
+      List<Object> entries = Lists.newArrayListWithCapacity(((List<?>) value).size());
+      for (Object entry : (List<?>) value) {
+        Message mapEntry = (Message) entry;
+        entries.add(mapEntry.toBuilder()
+            .setField(keyFd, interner.internValue(mapEntry.getField(keyFd)))
+            .setField(valFd, interner.internValue(mapEntry.getField(valFd))).build());
+      }
+      return entries;
+    }
+    if (!isInternType(fd)) {
+      return value;
+    }
+    if (fd.isRepeated()) {
+      if (!(value instanceof List)) {
+        return value;
+      }
+      List<Object> values = Lists.newArrayListWithCapacity(((List<?>) value).size());
+      for (Object v : (List<?>) value) {
+        values.add(interner.internValue(v));
+      }
+      return values;
+    }
+    return interner.internValue(value);
+  }
+
+  /**
+   * 如果结果中有{@link #blobColumn}，将其解析到{@code builder}中，其余的列再逐列覆盖
+   *
+   * @return {@link #blobColumn}的位置，没有时返回0
+   */
+  private int mergeBlobColumn(ResultSet rs, ResultSetMetaData rsmd, Message.Builder builder)
+      throws SQLException {
+    int blobIndex = findBlobColumn(rsmd);
+    if (blobIndex > 0) {
+      mergeBlob(builder, rs.getBytes(blobIndex));
+    }
+    return blobIndex;
+  }
+
+  private int findBlobColumn(ResultSetMetaData rsmd) throws SQLException {
+    if (blobColumn == null) {
+      return 0;
+    }
+    for (int index = 1; index <= rsmd.getColumnCount(); index++) {
+      if (blobColumn.equalsIgnoreCase(JdbcUtils.lookupColumnName(rsmd, index))) {
+        return index;
+      }
+    }
+    return 0;
+  }
+
+  private void mergeBlob(Message.Builder builder, @Nullable byte[] bytes) {
+    if (bytes == null) {
+      return;
+    }
+    try {
+      builder.mergeFrom(bytes);
+    } catch (InvalidProtocolBufferException e) {
+      throw new DataRetrievalFailureException(
+          "Unable to parse column " + blobColumn + " to " + messageHelper.getDescriptor()
+              .getFullName() + ", length=" + bytes.length, e);
+    }
+  }
+
+  ////////////////////////////// 分两步映射 //////////////////////////////
+
+  /**
+   * 结果集的列与field的对应关系，同一个结果集只需解析一次
+   */
+  public static class Columns {
+    /**
+     * 按列的位置（从1开始）索引，blob列和没有对应field的列为null
+     */
+    private final FieldDescriptor[] fds;
+    /**
+     * blob列的位置，没有时为0
+     */
+    private final int blobIndex;
+
+    private Columns(FieldDescriptor[] fds, int blobIndex) {
+      this.fds = fds;
+      this.blobIndex = blobIndex;
+    }
+  }
+
+  public Columns resolveColumns(ResultSetMetaData rsmd) throws SQLException {
+    int columnCount = rsmd.getColumnCount();
+    int blobIndex = findBlobColumn(rsmd);
+    FieldDescriptor[] fds = new FieldDescriptor[columnCount + 1];
+    for (int index = 1; index <= columnCount; index++) {
+      if (index != blobIndex) {
+        String column = JdbcUtils.lookupColumnName(rsmd, index).toLowerCase();
+        fds[index] = messageHelper.getFieldDescriptor(column);
+      }
+    }
+    return new Columns(fds, blobIndex);
+  }
+
+  /**
+   * 只读取当前行各列的原始值，不做转换，结果交给{@link #decodeRow(Columns, Object[])}
+   */
+  public Object[] readRawValues(ResultSet rs, Columns columns) throws SQLException {
+    Object[] values = new Object[columns.fds.length];
+    if (columns.blobIndex > 0) {
+      values[columns.blobIndex] = rs.getBytes(columns.blobIndex);
+    }
+    for (int index = 1; index < columns.fds.length; index++) {
+      FieldDescriptor fd = columns.fds[index];
+      if (fd != null) {
+        values[index] = getColumnValue(rs, index, fd);
+      }
+    }
+    return values;
+  }
+
+  /**
+   * 将{@link #readRawValues(ResultSet, Columns)}读取的原始值转换为Message，不访问结果集，可以在其他线程中执行
+   */
+  @SuppressWarnings("unchecked")
+  public T decodeRow(Columns columns, Object[] values) {
+    Message.Builder builder = this.messageHelper.newBuilder();
+    if (columns.blobIndex > 0) {
+      mergeBlob(builder, (byte[]) values[columns.blobIndex]);
+    }
+    for (int index = 1; index < columns.fds.length; index++) {
+      FieldDescriptor fd = columns.fds[index];
+      Object value = values[index];
+      if (fd == null || value == null) {
+        continue;
+      }
+      try {
+        messageHelper
+            .setField(builder, fd, internFieldValue(fd, fieldResolver.fromSqlValue(fd, value)));
+      } catch (Exception ex) {
+        throw new DataRetrievalFailureException(
+            "Unable to map column " + fd.getName() + " to " + fd.getFullName() + " of type " +
+                fd.getJavaType() + ", value=" + value, ex);
+      }
+    }
+    return (T) builder.build();
+  }
+
   /**
    * Retrieve a JDBC object value for the specified column.
    * <p>
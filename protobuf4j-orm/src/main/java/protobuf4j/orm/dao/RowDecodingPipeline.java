@@ -0,0 +1,117 @@
+package protobuf4j.orm.dao;
+
+import com.google.protobuf.Message;
+import org.springframework.dao.DataRetrievalFailureException;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Consumer;
+
+/**
+ * 流水线方式映射结果集：读取结果集的线程只读取各列的原始值，转换和构建Message交给{@code executor}并行执行，
+ * 转换完成的Message仍在读取线程中交给{@code consumer}
+ * <p>
+ * 同时转换中的行数不超过{@code parallelism}，达到上限时读取线程等待最早提交（有序）或最先完成（无序）的一行
+ * <p>
+ * author: yuanwq
+ */
+class RowDecodingPipeline<T extends Message> implements RowCallbackHandler {
+  private final ProtoMessageRowMapper<T> mapper;
+  private final Executor executor;
+  private final int parallelism;
+  private final boolean ordered;
+  private final Consumer<? super T> consumer;
+  /**
+   * 按提交顺序排列的转换中的行
+   */
+  private final ArrayDeque<CompletableFuture<T>> pending = new ArrayDeque<>();
+  /**
+   * 无序时，按完成顺序排列的已完成的行
+   */
+  private final BlockingQueue<CompletableFuture<T>> completed = new LinkedBlockingQueue<>();
+  private ProtoMessageRowMapper.Columns columns;
+  private long rows = 0;
+
+  RowDecodingPipeline(ProtoMessageRowMapper<T> mapper, Executor executor, int parallelism,
+      boolean ordered, Consumer<? super T> consumer) {
+    this.mapper = mapper;
+    this.executor = executor;
+    this.parallelism = parallelism;
+    this.ordered = ordered;
+    this.consumer = consumer;
+  }
+
+  @Override
+  public void processRow(ResultSet rs) throws SQLException {
+    if (columns == null) {
+      columns = mapper.resolveColumns(rs.getMetaData());
+    }
+    ProtoMessageRowMapper.Columns columns = this.columns;
+    Object[] values = mapper.readRawValues(rs, columns);
+    if (pending.size() >= parallelism) {
+      consumer.accept(take());
+    }
+    CompletableFuture<T> future =
+        CompletableFuture.supplyAsync(() -> mapper.decodeRow(columns, values), executor);
+    pending.add(future);
+    if (!ordered) {
+      future.whenComplete((message, e) -> completed.add(future));
+    }
+    rows++;
+  }
+
+  /**
+   * 等待所有转换中的行完成，并交给{@code consumer}
+   *
+   * @return 处理的行数
+   */
+  long finish() {
+    while (!pending.isEmpty()) {
+      consumer.accept(take());
+    }
+    return rows;
+  }
+
+  /**
+   * 放弃转换中的行
+   */
+  void cancel() {
+    for (CompletableFuture<T> future : pending) {
+      future.cancel(false);
+    }
+    pending.clear();
+  }
+
+  private T take() {
+    CompletableFuture<T> future;
+    if (ordered) {
+      future = pending.poll();
+    } else {
+      try {
+        future = completed.take();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new DataRetrievalFailureException("interrupted while decoding rows", e);
+      }
+      pending.remove(future);
+    }
+    try {
+      return future.join();
+    } catch (CompletionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      } else if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw e;
+    }
+  }
+}
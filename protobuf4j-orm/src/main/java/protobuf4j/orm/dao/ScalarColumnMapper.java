@@ -0,0 +1,230 @@
+package protobuf4j.orm.dao;
+
+import com.google.common.base.Throwables;
+import com.google.protobuf.Descriptors.FieldDescriptor;
+import com.google.protobuf.Message;
+import protobuf4j.core.FieldAccessor;
+import protobuf4j.orm.util.ValueInterner;
+
+import javax.annotation.Nullable;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * 以JDBC的类型化getter读取一个标量列，通过生成代码中的setter直接写入builder，
+ * 基本类型不装箱，也不经过{@link Message.Builder#setField}的反射分发
+ * <p>
+ * 支持int32/int64/float/double/bool/string类型的单值field，与
+ * {@link org.springframework.jdbc.support.JdbcUtils#getResultSetValue}加上默认converter的结果一致
+ * <p>
+ * author: yuanwq
+ */
+abstract class ScalarColumnMapper {
+  protected final MethodHandle setter;
+
+  private ScalarColumnMapper(MethodHandle setter) {
+    this.setter = setter;
+  }
+
+  /**
+   * 列值为{@code null}时不设置field
+   *
+   * @param interner 不为null时，string值去重后再写入
+   */
+  abstract void mapColumn(ResultSet rs, int index, Message.Builder builder,
+      @Nullable ValueInterner interner) throws SQLException;
+
+  /**
+   * @return 不支持的field返回null
+   */
+  @Nullable
+  static ScalarColumnMapper create(Class<?> builderClass, FieldDescriptor fd) {
+    if (fd.isRepeated()) {
+      return null;
+    }
+    Class<?> valueType;
+    switch (fd.getJavaType()) {
+      case INT:
+        valueType = int.class;
+        break;
+      case BOOLEAN:
+        valueType = boolean.class;
+        break;
+      case LONG:
+        valueType = long.class;
+        break;
+      case FLOAT:
+        valueType = float.class;
+        break;
+      case DOUBLE:
+        valueType = double.class;
+        break;
+      case STRING:
+        valueType = String.class;
+        break;
+      default:
+        return null;
+    }
+    MethodHandle setter;
+    try {
+      Method method = builderClass.getMethod("set" + javaName(fd), valueType);
+      setter = MethodHandles.publicLookup().unreflect(method)
+          .asType(MethodType.methodType(void.class, Message.Builder.class, valueType));
+    } catch (NoSuchMethodException | IllegalAccessException e) {
+      return null;
+    }
+    switch (fd.getJavaType()) {
+      case INT:
+        return new IntColumn(setter);
+      case BOOLEAN:
+        return new BooleanColumn(setter);
+      case LONG:
+        return new LongColumn(setter);
+      case FLOAT:
+        return new FloatColumn(setter);
+      case DOUBLE:
+        return new DoubleColumn(setter);
+      default:
+        return new StringColumn(setter);
+    }
+  }
+
+  /**
+   * @see FieldAccessor#javaName(FieldDescriptor)
+   */
+  static String javaName(FieldDescriptor fd) {
+    return FieldAccessor.javaName(fd);
+  }
+
+  protected static RuntimeException propagate(Throwable e) {
+    Throwables.throwIfUnchecked(e);
+    throw new IllegalStateException(e);
+  }
+
+  private static class IntColumn extends ScalarColumnMapper {
+    IntColumn(MethodHandle setter) {
+      super(setter);
+    }
+
+    @Override
+    void mapColumn(ResultSet rs, int index, Message.Builder builder,
+        @Nullable ValueInterner interner) throws SQLException {
+      int value = rs.getInt(index);
+      if (value == 0 && rs.wasNull()) {
+        return;
+      }
+      try {
+        setter.invokeExact(builder, value);
+      } catch (Throwable e) {
+        throw propagate(e);
+      }
+    }
+  }
+
+  private static class BooleanColumn extends ScalarColumnMapper {
+    BooleanColumn(MethodHandle setter) {
+      super(setter);
+    }
+
+    @Override
+    void mapColumn(ResultSet rs, int index, Message.Builder builder,
+        @Nullable ValueInterner interner) throws SQLException {
+      int value = rs.getInt(index);
+      if (value == 0 && rs.wasNull()) {
+        return;
+      }
+      try {
+        setter.invokeExact(builder, value != 0);
+      } catch (Throwable e) {
+        throw propagate(e);
+      }
+    }
+  }
+
+  private static class LongColumn extends ScalarColumnMapper {
+    LongColumn(MethodHandle setter) {
+      super(setter);
+    }
+
+    @Override
+    void mapColumn(ResultSet rs, int index, Message.Builder builder,
+        @Nullable ValueInterner interner) throws SQLException {
+      long value = rs.getLong(index);
+      if (value == 0 && rs.wasNull()) {
+        return;
+      }
+      try {
+        setter.invokeExact(builder, value);
+      } catch (Throwable e) {
+        throw propagate(e);
+      }
+    }
+  }
+
+  private static class FloatColumn extends ScalarColumnMapper {
+    FloatColumn(MethodHandle setter) {
+      super(setter);
+    }
+
+    @Override
+    void mapColumn(ResultSet rs, int index, Message.Builder builder,
+        @Nullable ValueInterner interner) throws SQLException {
+      float value = rs.getFloat(index);
+      if (value == 0 && rs.wasNull()) {
+        return;
+      }
+      try {
+        setter.invokeExact(builder, value);
+      } catch (Throwable e) {
+        throw propagate(e);
+      }
+    }
+  }
+
+  private static class DoubleColumn extends ScalarColumnMapper {
+    DoubleColumn(MethodHandle setter) {
+      super(setter);
+    }
+
+    @Override
+    void mapColumn(ResultSet rs, int index, Message.Builder builder,
+        @Nullable ValueInterner interner) throws SQLException {
+      double value = rs.getDouble(index);
+      if (value == 0 && rs.wasNull()) {
+        return;
+      }
+      try {
+        setter.invokeExact(builder, value);
+      } catch (Throwable e) {
+        throw propagate(e);
+      }
+    }
+  }
+
+  private static class StringColumn extends ScalarColumnMapper {
+    StringColumn(MethodHandle setter) {
+      super(setter);
+    }
+
+    @Override
+    void mapColumn(ResultSet rs, int index, Message.Builder builder,
+        @Nullable ValueInterner interner) throws SQLException {
+      String value = rs.getString(index);
+      if (value == null) {
+        return;
+      }
+      if (interner != null) {
+        value = interner.intern(value);
+      }
+      try {
+        setter.invokeExact(builder, value);
+      } catch (Throwable e) {
+        throw propagate(e);
+      }
+    }
+  }
+}
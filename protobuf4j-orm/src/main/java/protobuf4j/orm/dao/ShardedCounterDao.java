@@ -0,0 +1,273 @@
+package protobuf4j.orm.dao;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.protobuf.Descriptors.FieldDescriptor;
+import com.google.protobuf.Message;
+import org.springframework.jdbc.core.RowMapper;
+import protobuf4j.orm.sql.FieldAndValue;
+import protobuf4j.orm.sql.IExpression;
+import protobuf4j.orm.sql.InsertSql;
+import protobuf4j.orm.sql.QueryCreator;
+import protobuf4j.orm.sql.SelectSql;
+import protobuf4j.orm.sql.SqlUtil;
+import protobuf4j.orm.sql.clause.GroupByClause;
+import protobuf4j.orm.sql.clause.SelectClause;
+import protobuf4j.orm.sql.clause.SetClause;
+import protobuf4j.orm.sql.expr.Column;
+import protobuf4j.orm.sql.expr.Expressions;
+import protobuf4j.orm.sql.expr.Value;
+
+import javax.annotation.Nonnull;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static com.google.common.base.Preconditions.*;
+
+/**
+ * 分片计数器：一个计数key对应表中的N行 (key, slot)，累加时只更新其中一行，以分散单行的锁竞争；
+ * 读取时对所有slot行求和
+ * <p>
+ * 要求表中存在 {@code (keyColumn, slotColumn)} 的唯一索引
+ * <p>
+ * author: yuanwq
+ */
+public class ShardedCounterDao<K, T extends Message> extends ProtoMessageDao<T> {
+  /**
+   * 选择slot的策略
+   */
+  public enum SlotStrategy {
+    /**
+     * 每次随机选择
+     */
+    RANDOM,
+    /**
+     * 同一线程总是选择同一slot
+     */
+    THREAD
+  }
+
+  /**
+   * 压缩时汇总到的slot
+   */
+  public static final int BASE_SLOT = 0;
+
+  protected final String keyColumn;
+  protected final String slotColumn;
+  protected final int slots;
+  protected final List<String> counterColumns;
+  private SlotStrategy slotStrategy = SlotStrategy.RANDOM;
+
+  /**
+   * @param keyColumn      计数key的列
+   * @param slotColumn     slot编号的列，取值范围为 {@code [0, slots)}
+   * @param slots          每个key的slot行数
+   * @param counterColumns 计数列，int32/int64类型
+   */
+  public ShardedCounterDao(Class<T> messageType, String keyColumn, String slotColumn, int slots,
+      String... counterColumns) {
+    super(messageType);
+    checkArgument(slots > 0, "slots(>0): " + slots);
+    checkArgument(counterColumns.length > 0, "no counter column");
+    this.keyColumn = messageHelper.checkFieldDescriptor(keyColumn).getName();
+    this.slotColumn = messageHelper.checkFieldDescriptor(slotColumn).getName();
+    this.slots = slots;
+    for (String column : counterColumns) {
+      FieldDescriptor fd = messageHelper.checkFieldDescriptor(column);
+      checkArgument(!fd.isRepeated() && (fd.getJavaType() == FieldDescriptor.JavaType.INT ||
+          fd.getJavaType() == FieldDescriptor.JavaType.LONG), "not a counter field: " + column);
+    }
+    this.counterColumns = ImmutableList.copyOf(counterColumns);
+  }
+
+  public String getKeyColumn() {
+    return keyColumn;
+  }
+
+  public String getSlotColumn() {
+    return slotColumn;
+  }
+
+  public int getSlots() {
+    return slots;
+  }
+
+  public List<String> getCounterColumns() {
+    return counterColumns;
+  }
+
+  public SlotStrategy getSlotStrategy() {
+    return slotStrategy;
+  }
+
+  public void setSlotStrategy(@Nonnull SlotStrategy slotStrategy) {
+    this.slotStrategy = checkNotNull(slotStrategy);
+  }
+
+  protected int chooseSlot() {
+    if (slots == 1) {
+      return BASE_SLOT;
+    }
+    switch (slotStrategy) {
+      case THREAD:
+        return (int) (Thread.currentThread().getId() % slots);
+      case RANDOM:
+      default:
+        return ThreadLocalRandom.current().nextInt(slots);
+    }
+  }
+
+  private void checkCounterColumn(String column) {
+    checkArgument(counterColumns.contains(column), "not a counter column: " + column);
+  }
+
+  private IExpression slotCond(K key, int slot) {
+    return FieldAndValue.eq(keyColumn, key).and(FieldAndValue.eq(slotColumn, slot));
+  }
+
+  /**
+   * 累加计数key为{@code key}的{@code column}列
+   *
+   * @return 变动的数据条数
+   */
+  public int incr(@Nonnull K key, String column, long delta) {
+    checkNotNull(key);
+    checkCounterColumn(column);
+    if (delta == 0) {
+      return 0;
+    }
+    return addToSlot(key, chooseSlot(), Collections.singletonMap(column, delta));
+  }
+
+  /**
+   * 在slot行上累加，行不存在时插入
+   */
+  private int addToSlot(K key, int slot, Map<String, Long> deltas) {
+    SetClause setClause = new SetClause();
+    for (Map.Entry<String, Long> entry : deltas.entrySet()) {
+      setClause.setExpression(entry.getKey(),
+          Expressions.add(Column.of(entry.getKey()), Value.of(entry.getValue())));
+    }
+    IExpression cond = slotCond(key, slot);
+    int rows = update(setClause, cond);
+    if (rows > 0) {
+      return rows;
+    }
+    InsertSql insertSql = QueryCreator.insertInto(tableName);
+    insertSql.addValue(keyColumn, key).addValue(slotColumn, slot);
+    for (Map.Entry<String, Long> entry : deltas.entrySet()) {
+      insertSql.addExpression(entry.getKey(), Value.of(entry.getValue()));
+    }
+    insertSql.setIgnore(true);
+    rows = doInsert(insertSql, null);
+    if (rows > 0) {
+      return rows;
+    }
+    // 并发插入了同一slot行
+    return update(setClause, cond);
+  }
+
+  /**
+   * @return 计数key为{@code key}的{@code column}列在所有slot上的和
+   */
+  public long total(@Nonnull K key, String column) {
+    checkNotNull(key);
+    checkCounterColumn(column);
+    return sum(column, FieldAndValue.eq(keyColumn, key));
+  }
+
+  /**
+   * @return 计数key到{@code column}列在所有slot上的和，没有数据的key不出现在结果中
+   */
+  @SuppressWarnings("unchecked")
+  public Map<K, Long> totals(Collection<K> keys, String column) {
+    checkCounterColumn(column);
+    if (keys.isEmpty()) {
+      return Collections.emptyMap();
+    }
+    SelectClause select = new SelectClause();
+    select.select(keyColumn);
+    select.select(SqlUtil.aggregateWrap("SUM", Column.of(column)));
+    SelectSql selectSql = new SelectSql(select, fromClause);
+    selectSql.where().setCond(FieldAndValue.in(keyColumn, keys));
+    selectSql.where().setGroupBy(new GroupByClause().by(keyColumn));
+    FieldDescriptor keyFd = messageHelper.getFieldDescriptor(keyColumn);
+    RowMapper<Map.Entry<K, Long>> mapper = (rs, rowNum) -> {
+      Object key = messageMapper.getColumnValue(rs, 1, keyFd);
+      return Maps.immutableEntry((K) fieldResolver.fromSqlValue(keyFd, key), rs.getLong(2));
+    };
+    Map<K, Long> map = Maps.newLinkedHashMap();
+    for (Map.Entry<K, Long> entry : doSelect(selectSql, mapper)) {
+      map.put(entry.getKey(), entry.getValue());
+    }
+    return map;
+  }
+
+  /**
+   * 将计数key为{@code key}的所有slot行的计数汇总到{@link #BASE_SLOT}，并删除计数都为0的其他slot行
+   * <p>
+   * 在一个事务中执行，使用相对更新({@code col = col - ?})，不影响压缩期间的并发累加
+   *
+   * @return 删除的slot行数
+   */
+  public int compact(@Nonnull K key) {
+    checkNotNull(key);
+    IExpression otherSlotsCond =
+        FieldAndValue.eq(keyColumn, key).and(FieldAndValue.ne(slotColumn, BASE_SLOT));
+    List<T> slotRows = selectByCond(otherSlotsCond);
+    if (slotRows.isEmpty()) {
+      return 0;
+    }
+    Integer deleted = getTransactionTemplate().execute(status -> {
+      Map<String, Long> totals = Maps.newLinkedHashMap();
+      for (T slotRow : slotRows) {
+        int slot = ((Number) messageHelper.getFieldValue(slotRow, slotColumn)).intValue();
+        SetClause setClause = new SetClause();
+        for (String column : counterColumns) {
+          long value = ((Number) messageHelper.getFieldValue(slotRow, column)).longValue();
+          if (value != 0) {
+            setClause.setExpression(column,
+                Expressions.subtract(Column.of(column), Value.of(value)));
+            totals.merge(column, value, Long::sum);
+          }
+        }
+        if (!setClause.isEmpty()) {
+          update(setClause, slotCond(key, slot));
+        }
+      }
+      if (!totals.isEmpty()) {
+        addToSlot(key, BASE_SLOT, totals);
+      }
+      List<IExpression> conds = Lists.newArrayList(otherSlotsCond);
+      for (String column : counterColumns) {
+        conds.add(FieldAndValue.eq(column, 0));
+      }
+      return delete(Expressions.and(conds));
+    });
+    return deleted == null ? 0 : deleted;
+  }
+
+  /**
+   * 压缩所有存在非{@link #BASE_SLOT}行的计数key，适合定期执行
+   *
+   * @return 删除的slot行数
+   * @see #compact(Object)
+   */
+  public int compactAll() {
+    SelectClause select = new SelectClause().select(keyColumn);
+    SelectSql selectSql = new SelectSql(select, fromClause);
+    selectSql.where().setCond(FieldAndValue.ne(slotColumn, BASE_SLOT));
+    selectSql.where().setGroupBy(new GroupByClause().by(keyColumn));
+    FieldDescriptor keyFd = messageHelper.getFieldDescriptor(keyColumn);
+    List<K> keys = doSelect(selectSql, new ProtoFieldRowMapper<>(fieldResolver, keyFd));
+    int deleted = 0;
+    for (K key : keys) {
+      deleted += compact(key);
+    }
+    return deleted;
+  }
+}
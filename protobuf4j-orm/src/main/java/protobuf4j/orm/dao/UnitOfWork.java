@@ -0,0 +1,242 @@
+package protobuf4j.orm.dao;
+
+import com.google.common.collect.Lists;
+import com.google.protobuf.Message;
+import org.slf4j.Logger;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import protobuf4j.orm.sql.DeleteSql;
+import protobuf4j.orm.sql.IExpression;
+import protobuf4j.orm.sql.ISqlStatement;
+import protobuf4j.orm.sql.InsertSql;
+import protobuf4j.orm.sql.UpdateSql;
+import protobuf4j.orm.sql.clause.SetClause;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.sql.DataSource;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.*;
+
+/**
+ * 记录多个DAO上的写操作，在{@link #commit()}时于一个事务、一个连接中执行
+ * <p>
+ * 相邻的、sql模板相同的操作合并为一个JDBC批量执行，操作的执行顺序与记录顺序一致；
+ * 每个操作的影响条数在提交后通过记录时返回的{@link Result}获取
+ * <p>
+ * 非线程安全，只能提交一次
+ * <p>
+ * author: yuanwq
+ */
+public class UnitOfWork {
+  /**
+   * 一个操作的结果，提交后可用
+   */
+  public static class Result {
+    private boolean done = false;
+    private int rows;
+
+    private void done(int rows) {
+      this.rows = rows;
+      this.done = true;
+    }
+
+    public boolean isDone() {
+      return done;
+    }
+
+    /**
+     * @return 影响的数据条数；批量执行时驱动可能返回{@link java.sql.Statement#SUCCESS_NO_INFO}
+     */
+    public int getRows() {
+      checkState(isDone(), "unit of work not committed");
+      return rows;
+    }
+  }
+
+  private static class Operation {
+    private final ProtoMessageDao<?> dao;
+    private final ISqlStatement statement;
+    private final String sql;
+    private final Object[] args;
+    private final Result result = new Result();
+
+    Operation(ProtoMessageDao<?> dao, ISqlStatement statement) {
+      this.dao = dao;
+      this.statement = statement;
+      this.sql = statement.toSqlTemplate(new StringBuilder()).toString();
+      this.args = dao.convertSqlValues(statement.collectSqlValue(Lists.newArrayList())).toArray();
+    }
+
+    Logger logger() {
+      if (statement instanceof InsertSql) {
+        return dao.sqlLogger.insert();
+      } else if (statement instanceof UpdateSql) {
+        return dao.sqlLogger.update();
+      } else if (statement instanceof DeleteSql) {
+        return dao.sqlLogger.delete();
+      }
+      return dao.sqlLogger.raw();
+    }
+  }
+
+  private final JdbcTemplate jdbcTemplate;
+  private final TransactionTemplate transactionTemplate;
+  private final List<Operation> operations = Lists.newArrayList();
+  private final List<Result> results = Lists.newArrayList();
+  private boolean committed = false;
+
+  public UnitOfWork(@Nonnull JdbcTemplate jdbcTemplate) {
+    this.jdbcTemplate = checkNotNull(jdbcTemplate);
+    this.transactionTemplate =
+        new TransactionTemplate(new DataSourceTransactionManager(jdbcTemplate.getDataSource()));
+  }
+
+  public <T extends Message> Result insert(@Nonnull ProtoMessageDao<T> dao, @Nonnull T message) {
+    checkNotNull(message);
+    return add(dao, dao.buildInsertSql(message));
+  }
+
+  public <T extends Message> Result insertIgnore(@Nonnull ProtoMessageDao<T> dao,
+      @Nonnull T message) {
+    checkNotNull(message);
+    InsertSql insertSql = dao.buildInsertSql(message);
+    insertSql.setIgnore(true);
+    return add(dao, insertSql);
+  }
+
+  public <T extends Message> Result updateMessage(@Nonnull ProtoMessageDao<T> dao, T newItem,
+      T oldItem, IExpression cond) {
+    return update(dao, dao.makeSetClause(newItem, oldItem), cond);
+  }
+
+  public Result update(@Nonnull ProtoMessageDao<?> dao, @Nonnull SetClause setClause,
+      @Nullable IExpression cond) {
+    UpdateSql updateSql = new UpdateSql(dao.fromClause.getTableRef(), setClause);
+    updateSql.where().setCond(cond);
+    return add(dao, updateSql);
+  }
+
+  public Result delete(@Nonnull ProtoMessageDao<?> dao, @Nullable IExpression cond) {
+    DeleteSql deleteSql = new DeleteSql(dao.fromClause);
+    deleteSql.where().setCond(cond);
+    return add(dao, deleteSql);
+  }
+
+  /**
+   * 记录一个写操作，sql中的值在记录时即按{@code dao}的字段定义转换
+   */
+  public Result add(@Nonnull ProtoMessageDao<?> dao, @Nonnull ISqlStatement statement) {
+    checkNotNull(dao);
+    checkNotNull(statement);
+    checkState(!committed, "unit of work already committed");
+    checkArgument(sameDataSource(dao.getJdbcTemplate()),
+        "dao of " + dao.getTableName() + " uses another data source");
+    if (statement instanceof UpdateSql && ((UpdateSql) statement).getSet().isEmpty()) {
+      // 与ProtoMessageDao#doUpdate一致，没有需要更新的字段时不执行
+      Result result = new Result();
+      result.done(0);
+      results.add(result);
+      return result;
+    }
+    Operation operation = new Operation(dao, statement);
+    operations.add(operation);
+    results.add(operation.result);
+    return operation.result;
+  }
+
+  private boolean sameDataSource(JdbcTemplate daoJdbcTemplate) {
+    checkNotNull(daoJdbcTemplate, "dao has no jdbcTemplate");
+    DataSource dataSource = daoJdbcTemplate.getDataSource();
+    return dataSource != null && dataSource.equals(jdbcTemplate.getDataSource());
+  }
+
+  /**
+   * @return 已记录的操作数
+   */
+  public int size() {
+    return results.size();
+  }
+
+  /**
+   * 在一个事务中执行所有记录的操作，任一操作失败则全部回滚
+   *
+   * @return 按记录顺序，每个操作影响的数据条数
+   */
+  public int[] commit() {
+    checkState(!committed, "unit of work already committed");
+    committed = true;
+    if (!operations.isEmpty()) {
+      transactionTemplate.execute(status -> {
+        int from = 0;
+        while (from < operations.size()) {
+          int to = from + 1;
+          String sql = operations.get(from).sql;
+          while (to < operations.size() && operations.get(to).sql.equals(sql)) {
+            to++;
+          }
+          execute(operations.subList(from, to));
+          from = to;
+        }
+        return null;
+      });
+    }
+    int[] rows = new int[results.size()];
+    for (int i = 0; i < rows.length; i++) {
+      rows[i] = results.get(i).getRows();
+    }
+    return rows;
+  }
+
+  /**
+   * 执行sql模板相同的一组操作
+   */
+  private void execute(List<Operation> group) {
+    Operation first = group.get(0);
+    ProtoMessageDao.timer.restart();
+    if (group.size() == 1) {
+      try {
+        first.result.done(jdbcTemplate.update(first.sql, ps -> setParameters(ps, first.args)));
+      } finally {
+        first.logger().info("cost={}, {}, values: {}",
+            ProtoMessageDao.timer.stop(TimeUnit.MILLISECONDS), first.sql,
+            Arrays.toString(first.args));
+      }
+      return;
+    }
+    List<Object[]> batchArgs = Lists.transform(group, operation -> operation.args);
+    try {
+      int[] rows = jdbcTemplate.batchUpdate(first.sql, new BatchPreparedStatementSetter() {
+        @Override
+        public void setValues(PreparedStatement ps, int i) throws SQLException {
+          setParameters(ps, batchArgs.get(i));
+        }
+
+        @Override
+        public int getBatchSize() {
+          return batchArgs.size();
+        }
+      });
+      for (int i = 0; i < rows.length; i++) {
+        group.get(i).result.done(rows[i]);
+      }
+    } finally {
+      first.logger().info("cost={}, {}, unit of work batch: {}",
+          ProtoMessageDao.timer.stop(TimeUnit.MILLISECONDS), first.sql,
+          Lists.transform(batchArgs, Arrays::toString));
+    }
+  }
+
+  private static void setParameters(PreparedStatement ps, Object[] args) throws SQLException {
+    for (int i = 0; i < args.length; i++) {
+      ProtoMessageDao.setParameter(ps, i + 1, args[i]);
+    }
+  }
+}
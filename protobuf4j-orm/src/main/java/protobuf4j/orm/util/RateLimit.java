@@ -0,0 +1,50 @@
+package protobuf4j.orm.util;
+
+import com.google.common.util.concurrent.RateLimiter;
+import com.google.common.util.concurrent.Uninterruptibles;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.*;
+
+/**
+ * 分批操作时，每批之间的限流策略
+ *
+ * author: yuanwq
+ */
+@FunctionalInterface
+public interface RateLimit {
+  /**
+   * 不限流
+   */
+  RateLimit NONE = rows -> {
+  };
+
+  /**
+   * 完成一批操作后调用，必要时阻塞
+   *
+   * @param rows 这一批影响的数据条数
+   */
+  void acquire(int rows);
+
+  /**
+   * 每批之后固定暂停{@code pause}
+   */
+  static RateLimit pause(long pause, TimeUnit unit) {
+    checkArgument(pause >= 0, "pause(>=0): " + pause);
+    return rows -> Uninterruptibles.sleepUninterruptibly(pause, unit);
+  }
+
+  /**
+   * 令牌桶限流，平均每秒处理不超过{@code rowsPerSecond}条数据
+   */
+  static RateLimit rowsPerSecond(double rowsPerSecond) {
+    checkArgument(rowsPerSecond > 0, "rowsPerSecond(>0): " + rowsPerSecond);
+    RateLimiter rateLimiter = RateLimiter.create(rowsPerSecond);
+    return rows -> {
+      if (rows > 0) {
+        rateLimiter.acquire(rows);
+      }
+    };
+  }
+}
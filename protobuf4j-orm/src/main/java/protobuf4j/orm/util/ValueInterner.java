@@ -0,0 +1,85 @@
+package protobuf4j.orm.util;
+
+import com.google.protobuf.ByteString;
+
+import javax.annotation.Nullable;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import static com.google.common.base.Preconditions.*;
+
+/**
+ * 按内容去重的{@link String}/{@link ByteString}缓存，相同内容的值尽量复用同一个实例，用于减少大量数据中低基数的值占用的内存
+ * <p>
+ * 固定容量、无锁：每个值只可能存放在按hash确定的两个槽位中，未命中时覆盖其中一个，并发时只会少去重，不会出错。
+ * 超过{@code maxLength}的值不缓存
+ * <p>
+ * author: yuanwq
+ */
+public class ValueInterner {
+  public static final int DEFAULT_CAPACITY = 4096;
+  public static final int DEFAULT_MAX_LENGTH = 64;
+
+  private final AtomicReferenceArray<Object> table;
+  private final int mask;
+  private final int maxLength;
+
+  public ValueInterner() {
+    this(DEFAULT_CAPACITY, DEFAULT_MAX_LENGTH);
+  }
+
+  /**
+   * @param capacity  槽位数，向上取整为2的幂
+   * @param maxLength 缓存的值的最大长度（字符数或字节数）
+   */
+  public ValueInterner(int capacity, int maxLength) {
+    checkArgument(capacity > 1 && capacity <= 1 << 30, "capacity(1, 2^30]: " + capacity);
+    checkArgument(maxLength >= 0, "maxLength(>=0): " + maxLength);
+    int size = Integer.highestOneBit(capacity - 1) << 1;
+    this.table = new AtomicReferenceArray<>(size);
+    this.mask = size - 1;
+    this.maxLength = maxLength;
+  }
+
+  public String intern(@Nullable String value) {
+    if (value == null || value.length() > maxLength) {
+      return value;
+    }
+    return (String) lookup(value);
+  }
+
+  public ByteString intern(@Nullable ByteString value) {
+    if (value == null || value.size() > maxLength) {
+      return value;
+    }
+    return (ByteString) lookup(value);
+  }
+
+  /**
+   * @return {@link String}和{@link ByteString}去重，其他值原样返回
+   */
+  public Object internValue(@Nullable Object value) {
+    if (value instanceof String) {
+      return intern((String) value);
+    } else if (value instanceof ByteString) {
+      return intern((ByteString) value);
+    }
+    return value;
+  }
+
+  private Object lookup(Object value) {
+    int h = value.hashCode();
+    h ^= h >>> 16;
+    int i = h & mask;
+    Object cached = table.get(i);
+    if (value.equals(cached)) {
+      return cached;
+    }
+    int j = (i + 1) & mask;
+    Object cached2 = table.get(j);
+    if (value.equals(cached2)) {
+      return cached2;
+    }
+    table.lazySet(cached == null || cached2 != null ? i : j, value);
+    return value;
+  }
+}
@@ -40,4 +40,34 @@ public class TestByteStringFieldConverter {
       System.out.println(e.getMessage());
     }
   }
+
+  @Test
+  public void testBinary() {
+    ByteStringFieldConverter binaryConverter = new ByteStringFieldConverter(true);
+    assertTrue(binaryConverter.isBinary());
+    assertEquals(byte[].class, binaryConverter.getSqlValueType());
+    byte[] raw = new byte[]{(byte) 0xff, 0, (byte) 0xc3, 0x28};
+    ByteString byteString = ByteString.copyFrom(raw);
+    assertSame(byteString, binaryConverter.toSqlValue(null, byteString));
+    assertEquals(ByteString.EMPTY, binaryConverter.toSqlValue(null, null));
+    assertEquals(ByteString.copyFromUtf8("a"), binaryConverter.toSqlValue(null, "a"));
+    assertEquals(byteString, binaryConverter.fromSqlValue(null, raw));
+    assertEquals(ByteString.EMPTY, binaryConverter.fromSqlValue(null, null));
+    // 文本模式有损
+    assertNotEquals(byteString,
+        converter.fromSqlValue(null, converter.toSqlValue(null, byteString)));
+
+    try {
+      binaryConverter.toSqlValue(null, 1);
+      fail();
+    } catch (FieldConversionException e) {
+      System.out.println(e.getMessage());
+    }
+    try {
+      converter.fromSqlValue(null, raw);
+      fail();
+    } catch (FieldConversionException e) {
+      System.out.println(e.getMessage());
+    }
+  }
 }
@@ -0,0 +1,76 @@
+package protobuf4j.orm.dao;
+
+import com.google.protobuf.ByteString;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import protobuf4j.orm.converter.FieldResolver;
+import protobuf4j.orm.sql.FieldAndValue;
+import protobuf4j.test.proto.TestModel;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = JdbcConfiguration.class)
+public class TestBinaryStorage {
+  @Autowired
+  private JdbcTemplate jdbcTemplate;
+
+  private PrimaryKeyProtoMessageDao<Long, TestModel.BinMsg> dao;
+
+  @Before
+  public void setup() {
+    dao = new PrimaryKeyProtoMessageDao<>(TestModel.BinMsg.class,
+        new FieldResolver<>(TestModel.BinMsg.class).useBinaryStorage().useBinaryBytes(), null,
+        "id");
+    dao.setJdbcTemplate(jdbcTemplate);
+    dao.afterPropertiesSet();
+  }
+
+  @Test
+  public void testInsertAndSelect() {
+    TestModel.MsgB msgB = TestModel.MsgB.newBuilder().setId("b").setCreateTime(100).build();
+    TestModel.BinMsg msg =
+        TestModel.BinMsg.newBuilder().setId(1).setMsgb(msgB).addInt32Arr(1).addInt32Arr(-2)
+            .addStringArr("").addStringArr(",%;").addMsgbArr(msgB)
+            .addMsgbArr(TestModel.MsgB.getDefaultInstance()).putInt64Map("a", 1L)
+            .putMsgbMap("b", msgB).build();
+    assertEquals(1, dao.insert(msg));
+    assertEquals(msg, dao.selectOneByPrimaryKey(1L));
+
+    TestModel.BinMsg newMsg = msg.toBuilder().clearMsgbArr().putMsgbMap("c", msgB).build();
+    assertEquals(1, dao.updateMessageByPrimaryKey(newMsg, msg));
+    assertEquals(newMsg, dao.selectOneByPrimaryKey(1L));
+
+    TestModel.BinMsg empty = TestModel.BinMsg.newBuilder().setId(2).build();
+    assertEquals(1, dao.insert(empty));
+    assertEquals(empty, dao.selectOneByPrimaryKey(2L));
+    assertEquals(2, dao.count(FieldAndValue.in("id", Arrays.asList(1L, 2L))));
+  }
+
+  @Test
+  public void testBytes() {
+    // 非法的UTF-8序列
+    ByteString bytes = ByteString.copyFrom(new byte[]{(byte) 0xff, 0, (byte) 0xc3, 0x28, 1});
+    TestModel.BinMsg msg =
+        TestModel.BinMsg.newBuilder().setId(100).setBytesV(bytes).addBytesArr(bytes)
+            .addBytesArr(ByteString.EMPTY).putBytesMap("k", bytes).build();
+    assertEquals(1, dao.insert(msg));
+    TestModel.BinMsg saved = dao.selectOneByPrimaryKey(100L);
+    assertEquals(msg, saved);
+    assertEquals(bytes, saved.getBytesV());
+    assertEquals(saved, dao.selectOneByCond(FieldAndValue.eq("bytes_v", bytes)));
+
+    TestModel.BinMsg newMsg = msg.toBuilder().setBytesV(ByteString.EMPTY).build();
+    UnitOfWork unitOfWork = new UnitOfWork(jdbcTemplate);
+    unitOfWork.updateMessage(dao, newMsg, msg, FieldAndValue.eq("id", 100L));
+    assertArrayEquals(new int[]{1}, unitOfWork.commit());
+    assertEquals(newMsg, dao.selectOneByPrimaryKey(100L));
+  }
+}
@@ -0,0 +1,85 @@
+package protobuf4j.orm.dao;
+
+import com.google.common.collect.Lists;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import protobuf4j.orm.sql.FieldAndValue;
+import protobuf4j.orm.sql.IExpression;
+import protobuf4j.orm.sql.clause.SetClause;
+import protobuf4j.test.proto.TestModel;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = JdbcConfiguration.class)
+public class TestBlobMessageDao {
+  @Autowired
+  private JdbcTemplate jdbcTemplate;
+
+  private BlobProtoMessageDao<Long, TestModel.BlobMsg> dao;
+
+  @Before
+  public void setup() {
+    dao = new BlobProtoMessageDao<>(TestModel.BlobMsg.class, "id", "data", "status");
+    dao.setJdbcTemplate(jdbcTemplate);
+    dao.afterPropertiesSet();
+  }
+
+  @Test
+  public void testDao() {
+    assertEquals("data", dao.getBlobColumn());
+    assertEquals(Lists.newArrayList("id", "status"), dao.getIndexFields());
+    try {
+      new BlobProtoMessageDao<>(TestModel.BlobMsg.class, "id", "name");
+      fail();
+    } catch (IllegalArgumentException e) {
+      System.out.println(e.getMessage());
+    }
+  }
+
+  @Test
+  public void testInsertAndUpdate() {
+    TestModel.BlobMsg msg = TestModel.BlobMsg.newBuilder().setStatus(7).setName("blob")
+        .addTags("a").addTags("b")
+        .setMsgb(TestModel.MsgB.newBuilder().setId("b").setCreateTime(1))
+        .putInt64Map("k", 100L).build();
+    assertEquals(1, dao.insert(msg));
+    IExpression cond = FieldAndValue.eq("status", 7);
+    TestModel.BlobMsg saved = dao.selectOneByCond(cond);
+    assertTrue(saved.getId() > 0);
+    assertEquals(msg.toBuilder().setId(saved.getId()).build(), saved);
+
+    // 非索引字段整体写入blob
+    TestModel.BlobMsg changed = saved.toBuilder().setName("changed").setStatus(8).build();
+    assertEquals(1, dao.updateMessageByPrimaryKey(changed, saved));
+    assertEquals(changed, dao.selectOneByPrimaryKey(saved.getId()));
+    assertEquals(0, dao.updateMessageByPrimaryKey(changed, changed));
+
+    // 索引列覆盖blob中的值
+    assertEquals(1, dao.update(new SetClause().setValue("status", 9),
+        FieldAndValue.eq("id", saved.getId())));
+    assertEquals(9, dao.selectOneByPrimaryKey(saved.getId()).getStatus());
+    assertEquals("changed", dao.selectOneByPrimaryKey(saved.getId()).getName());
+  }
+
+  @Test
+  public void testInsertMulti() {
+    List<TestModel.BlobMsg> msgs = Lists.newArrayList();
+    for (int i = 0; i < 3; i++) {
+      msgs.add(TestModel.BlobMsg.newBuilder().setStatus(100).setName("multi" + i).build());
+    }
+    assertEquals(3, dao.insertMulti(msgs).length);
+    List<TestModel.BlobMsg> saved = dao.selectByCond(FieldAndValue.eq("status", 100));
+    assertEquals(3, saved.size());
+    for (int i = 0; i < 3; i++) {
+      assertEquals("multi" + i, saved.get(i).getName());
+    }
+  }
+}
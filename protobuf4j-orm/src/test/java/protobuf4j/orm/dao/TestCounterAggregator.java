@@ -0,0 +1,132 @@
+package protobuf4j.orm.dao;
+
+import com.google.common.collect.Maps;
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+public class TestCounterAggregator {
+  private final Map<String, Map<String, Long>> flushed = Maps.newConcurrentMap();
+
+  private int merge(Map<String, Map<String, Long>> deltas) {
+    for (Map.Entry<String, Map<String, Long>> entry : deltas.entrySet()) {
+      Map<String, Long> columns = flushed.computeIfAbsent(entry.getKey(), k -> Maps.newConcurrentMap());
+      entry.getValue().forEach((column, delta) -> columns.merge(column, delta, Long::sum));
+    }
+    return deltas.size();
+  }
+
+  @Test
+  public void testFlush() {
+    CounterAggregator<String> aggregator = new CounterAggregator<>("test", this::merge, 4, 0);
+    aggregator.add("a", "view", 1);
+    aggregator.add("a", "view", 2);
+    aggregator.add("a", "like", 1);
+    aggregator.add("b", "view", 1);
+    aggregator.add("b", "view", -1);
+    aggregator.add("c", "view", 0);
+    assertEquals(3, aggregator.pending("a", "view"));
+    assertEquals(1, aggregator.flush());
+    assertEquals(3L, flushed.get("a").get("view").longValue());
+    assertEquals(1L, flushed.get("a").get("like").longValue());
+    assertNull(flushed.get("b"));
+    assertEquals(0, aggregator.pending("a", "view"));
+    assertEquals(0, aggregator.flush());
+
+    aggregator.add("a", "view", 1);
+    aggregator.close();
+    assertEquals(4L, flushed.get("a").get("view").longValue());
+    try {
+      aggregator.add("a", "view", 1);
+      fail();
+    } catch (IllegalStateException e) {
+      System.out.println(e.getMessage());
+    }
+  }
+
+  @Test
+  public void testFlushFail() {
+    AtomicBoolean fail = new AtomicBoolean(true);
+    CounterAggregator<String> aggregator = new CounterAggregator<>("test", deltas -> {
+      if (fail.get()) {
+        throw new RuntimeException("fail");
+      }
+      return merge(deltas);
+    }, 2, 0);
+    aggregator.add("a", "view", 2);
+    try {
+      aggregator.flush();
+      fail();
+    } catch (RuntimeException e) {
+      System.out.println(e.getMessage());
+    }
+    assertEquals(2, aggregator.pending("a", "view"));
+    fail.set(false);
+    assertEquals(1, aggregator.flush());
+    assertEquals(2L, flushed.get("a").get("view").longValue());
+  }
+
+  @Test
+  public void testConcurrent() throws InterruptedException {
+    CounterAggregator<String> aggregator = new CounterAggregator<>("test", this::merge, 4, 1);
+    int threads = 8;
+    int times = 10000;
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    for (int i = 0; i < threads; i++) {
+      executor.submit(() -> {
+        for (int j = 0; j < times; j++) {
+          aggregator.add("k" + (j % 3), "view", 1);
+        }
+      });
+    }
+    executor.shutdown();
+    assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+    aggregator.close();
+    long total = 0;
+    for (Map<String, Long> columns : flushed.values()) {
+      total += columns.get("view");
+    }
+    assertEquals((long) threads * times, total);
+  }
+
+  @Test
+  public void testAddWhileClosing() throws InterruptedException {
+    CounterAggregator<String> aggregator = new CounterAggregator<>("test", this::merge, 4, 0);
+    int threads = 8;
+    AtomicLong accepted = new AtomicLong();
+    CountDownLatch started = new CountDownLatch(threads);
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    for (int i = 0; i < threads; i++) {
+      executor.submit(() -> {
+        started.countDown();
+        for (int j = 0; ; j++) {
+          try {
+            aggregator.add("k" + (j % 3), "view", 1);
+          } catch (IllegalStateException e) {
+            return;
+          }
+          accepted.incrementAndGet();
+        }
+      });
+    }
+    started.await();
+    Thread.sleep(10);
+    aggregator.close();
+    executor.shutdown();
+    assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+    // 被接受的增量都已写入，没有丢失
+    long total = 0;
+    for (Map<String, Long> columns : flushed.values()) {
+      total += columns.get("view");
+    }
+    assertEquals(accepted.get(), total);
+  }
+}
@@ -11,6 +11,7 @@ import protobuf4j.orm.converter.FieldConversionException;
 import protobuf4j.orm.converter.FieldResolver;
 import protobuf4j.test.proto.TestModel;
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -380,6 +381,106 @@ public class TestFieldResolver {
     } catch (FieldConversionException e) {
       System.out.println(e.getMessage());
     }
+    try {
+      fieldResolver.fromSqlValue(helperA.getFieldDescriptor("int32_arr"), "1,,2");
+      fail();
+    } catch (NumberFormatException e) {
+      System.out.println(e.getMessage());
+    }
+  }
+
+  @Test
+  public void testFieldIndex() {
+    FieldResolver<TestModel.MsgA> resolver =
+        new FieldResolver<>(TestModel.MsgA.class).useBinaryStorage("msgb_arr");
+    for (Descriptors.FieldDescriptor fd : helperA.getFieldDescriptorList()) {
+      assertSame(resolver.findFieldConverter(fd), resolver.getFieldConverter(fd.getIndex()));
+      assertEquals(resolver.resolveSqlValueType(fd), resolver.resolveSqlValueType(fd.getIndex()));
+      assertEquals(fieldResolver.resolveSqlValueType(fd), fieldResolver.findFieldConverter(fd)
+          .getSqlValueType());
+    }
+    Descriptors.FieldDescriptor msgbArr = helperA.getFieldDescriptor("msgb_arr");
+    assertEquals(byte[].class, resolver.resolveSqlValueType(msgbArr.getIndex()));
+    Descriptors.FieldDescriptor int64Arr = helperA.getFieldDescriptor("int64_arr");
+    assertEquals("1,2,", resolver.toSqlValue(int64Arr.getIndex(), Lists.newArrayList(1L, 2L)));
+    assertEquals(Lists.newArrayList(1L, 2L), resolver.fromSqlValue(int64Arr.getIndex(), "1,2,"));
+
+    // 其他Message的field按类型解析
+    Descriptors.FieldDescriptor createTime = TestModel.DbMsg.getDescriptor()
+        .findFieldByName("create_time");
+    assertEquals(java.sql.Timestamp.class, resolver.resolveSqlValueType(createTime));
+    assertEquals(String.class, resolver.resolveSqlValueType(helperB.getFieldDescriptor("id")));
+  }
+
+  @SuppressWarnings("unchecked")
+  @Test
+  public void testMapFieldRoundTrip() {
+    TestModel.MsgA msga = TestModel.MsgA.newBuilder().putInt32Map("a\"", Integer.MIN_VALUE)
+        .putInt64Map("b\\", Long.MAX_VALUE).putFloatMap("c", 1.1f).putDoubleMap("d", 0.1)
+        .putBoolMap(-1, true).putBoolMap(2, false).putStringMap("中文", "\n,%")
+        .putBytesMap("e", ByteString.copyFromUtf8("f")).putEnumaMap("g", TestModel.EnumA.EA2)
+        .build();
+    TestModel.MsgA.Builder builder = TestModel.MsgA.newBuilder();
+    for (String field : Arrays.asList("int32_map", "int64_map", "float_map", "double_map",
+        "bool_map", "string_map", "bytes_map", "enuma_map")) {
+      Descriptors.FieldDescriptor fd = helperA.getFieldDescriptor(field);
+      Object sqlValue = fieldResolver.toSqlValue(fd, msga.getField(fd));
+      builder.setField(fd, fieldResolver.fromSqlValue(fd, sqlValue));
+    }
+    assertEquals(msga, builder.build());
+    assertEquals("{\"-1\":1,\"2\":0}",
+        fieldResolver.toSqlValue(helperA.getFieldDescriptor("bool_map"),
+            helperA.getFieldValue(msga, "bool_map")));
+    assertEquals("{\"c\":1.1}", fieldResolver.toSqlValue(helperA.getFieldDescriptor("float_map"),
+        helperA.getFieldValue(msga, "float_map")));
+
+    // 兼容非数值的json value
+    List<MapEntry> mapEntries = (List<MapEntry>) fieldResolver
+        .fromSqlValue(helperA.getFieldDescriptor("double_map"), "{\"a\":\"1\",\"b\":2}");
+    assertEquals(1.0, mapEntries.get(0).getValue());
+    assertEquals(2.0, mapEntries.get(1).getValue());
+    mapEntries = (List<MapEntry>) fieldResolver
+        .fromSqlValue(helperA.getFieldDescriptor("string_map"), "{\"a\":1.50,\"b\":null}");
+    assertEquals("1.5", mapEntries.get(0).getValue());
+    assertEquals("null", mapEntries.get(1).getValue());
+    try {
+      fieldResolver.fromSqlValue(helperA.getFieldDescriptor("int32_map"), "[1]");
+      fail();
+    } catch (FieldConversionException e) {
+      System.out.println(e.getMessage());
+    }
+    try {
+      fieldResolver.fromSqlValue(helperA.getFieldDescriptor("int32_map"), "{\"a\":1");
+      fail();
+    } catch (FieldConversionException e) {
+      System.out.println(e.getMessage());
+    }
+  }
+
+  @Test
+  public void testRepeatedFieldRoundTrip() {
+    List<Long> longs = Lists.newArrayList(Long.MIN_VALUE, Long.MAX_VALUE, -1L, 0L);
+    for (long i = 0; i < 1000; i++) {
+      longs.add(i * 1000003L);
+    }
+    Descriptors.FieldDescriptor int64Arr = helperA.getFieldDescriptor("int64_arr");
+    Object sqlValue = fieldResolver.toSqlValue(int64Arr, longs);
+    assertEquals(longs, fieldResolver.fromSqlValue(int64Arr, sqlValue));
+
+    List<Integer> ints = Lists.newArrayList(Integer.MIN_VALUE, Integer.MAX_VALUE, -12, 0);
+    Descriptors.FieldDescriptor int32Arr = helperA.getFieldDescriptor("int32_arr");
+    assertEquals("-2147483648,2147483647,-12,0,", fieldResolver.toSqlValue(int32Arr, ints));
+    assertEquals(ints, fieldResolver.fromSqlValue(int32Arr, fieldResolver.toSqlValue(int32Arr, ints)));
+    assertEquals(Lists.newArrayList(1), fieldResolver.fromSqlValue(int32Arr, "+1"));
+
+    List<String> strings = Lists.newArrayList("", "%2c", "a,b", "%", "%%25,", "%2", "中文");
+    Descriptors.FieldDescriptor stringArr = helperA.getFieldDescriptor("string_arr");
+    sqlValue = fieldResolver.toSqlValue(stringArr, strings);
+    assertEquals(",%252c,a%2cb,%25,%25%2525%2c,%252,中文,", sqlValue);
+    assertEquals(strings, fieldResolver.fromSqlValue(stringArr, sqlValue));
+    // 未知的转义序列保持原样
+    assertEquals(Lists.newArrayList("%2C%", "%"),
+        fieldResolver.fromSqlValue(stringArr, "%2C%,%"));
   }
 
   @SuppressWarnings("unchecked")
@@ -426,4 +527,53 @@ public class TestFieldResolver {
     }
   }
 
+  @SuppressWarnings("unchecked")
+  @Test
+  public void testBinaryStorage() {
+    FieldResolver<TestModel.MsgA> binaryResolver =
+        new FieldResolver<>(TestModel.MsgA.class).useBinaryStorage();
+    TestModel.MsgB msgB = TestModel.MsgB.newBuilder().setId("b").setCreateTime(100).build();
+    TestModel.MsgA msgA = TestModel.MsgA.newBuilder().setMsgb(msgB).addMsgbArr(msgB)
+        .addMsgbArr(TestModel.MsgB.getDefaultInstance()).addInt32Arr(1).addInt32Arr(-1)
+        .addStringArr("").addStringArr(",%").putMsgbMap("a", msgB).putStringMap("k", "v").build();
+    for (String field : Lists.newArrayList("msgb", "msgb_arr", "int32_arr", "string_arr",
+        "msgb_map", "string_map", "bytes_arr")) {
+      Descriptors.FieldDescriptor fd = helperA.getFieldDescriptor(field);
+      assertEquals(byte[].class, binaryResolver.resolveSqlValueType(fd));
+      Object sqlValue = binaryResolver.toSqlValue(fd, msgA.getField(fd));
+      assertTrue(sqlValue instanceof byte[]);
+      Object value = binaryResolver.fromSqlValue(fd, sqlValue);
+      assertEquals(field, msgA.getField(fd), value);
+    }
+    Descriptors.FieldDescriptor mapFd = helperA.getFieldDescriptor("msgb_map");
+    Object sqlValue = binaryResolver.toSqlValue(mapFd, msgA.getMsgbMapMap());
+    List<MapEntry> mapEntries = (List<MapEntry>) binaryResolver.fromSqlValue(mapFd, sqlValue);
+    assertEquals(1, mapEntries.size());
+    assertEquals(msgB, mapEntries.get(0).getValue());
+    assertEquals(Collections.emptyList(), binaryResolver.fromSqlValue(mapFd, null));
+    assertEquals(TestModel.MsgB.getDefaultInstance(),
+        binaryResolver.fromSqlValue(helperA.getFieldDescriptor("msgb"), new byte[0]));
+    // 基本类型的field不受影响
+    assertEquals(Integer.class,
+        binaryResolver.resolveSqlValueType(helperA.getFieldDescriptor("int32")));
+
+    // 单独指定field
+    binaryResolver = new FieldResolver<>(TestModel.MsgA.class).useBinaryStorage("msgb_arr");
+    assertEquals(byte[].class,
+        binaryResolver.resolveSqlValueType(helperA.getFieldDescriptor("msgb_arr")));
+    assertEquals(String.class,
+        binaryResolver.resolveSqlValueType(helperA.getFieldDescriptor("int32_arr")));
+    try {
+      binaryResolver.useBinaryStorage("int32");
+      fail();
+    } catch (IllegalArgumentException e) {
+      System.out.println(e.getMessage());
+    }
+    try {
+      binaryResolver.fromSqlValue(helperA.getFieldDescriptor("msgb_arr"), new byte[]{1, 2, 3});
+      fail();
+    } catch (FieldConversionException e) {
+      System.out.println(e.getMessage());
+    }
+  }
 }
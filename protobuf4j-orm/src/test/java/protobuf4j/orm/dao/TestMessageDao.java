@@ -1,6 +1,7 @@
 package protobuf4j.orm.dao;
 
 import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 import com.google.protobuf.util.Durations;
 import com.google.protobuf.util.Timestamps;
 import org.junit.Assert;
@@ -8,21 +9,31 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.core.SingleColumnRowMapper;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 import protobuf4j.core.ProtoMessageHelper;
+import protobuf4j.orm.converter.FieldResolver;
 import protobuf4j.orm.sql.FieldAndValue;
 import protobuf4j.orm.sql.IExpression;
+import protobuf4j.orm.sql.QueryCreator;
 import protobuf4j.orm.sql.RawSql;
+import protobuf4j.orm.sql.SelectSql;
 import protobuf4j.orm.sql.clause.WhereClause;
+import protobuf4j.orm.util.RateLimit;
+import protobuf4j.orm.util.ValueInterner;
 import protobuf4j.test.proto.TestModel;
 
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.*;
 
@@ -93,6 +104,217 @@ public class TestMessageDao {
     assertNotNull(dao.selectOneByWhere(new WhereClause()));
   }
 
+  @Test
+  public void testSelectParallel() throws Exception {
+    String strValue = "testSelectParallel";
+    List<TestModel.DbMsg> msgs = Lists.newArrayList();
+    for (int i = 0; i < 50; i++) {
+      msgs.add(msgTemplate.toBuilder().setStringV(strValue).setInt32V(i).build());
+    }
+    dao.insertMulti(msgs);
+    WhereClause where = QueryCreator.where();
+    where.setCond(FieldAndValue.eq("string_v", strValue));
+    where.orderBy().asc("int32_v");
+    List<TestModel.DbMsg> expected = dao.selectByWhere(where);
+    assertEquals(50, expected.size());
+
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<TestModel.DbMsg> ordered = Lists.newArrayList();
+      assertEquals(50, dao.selectParallel(where, executor, 8, true, ordered::add));
+      assertEquals(expected, ordered);
+
+      List<TestModel.DbMsg> unordered = Lists.newArrayList();
+      assertEquals(50, dao.selectParallel(where, executor, 3, false, unordered::add));
+      assertEquals(Sets.newHashSet(expected), Sets.newHashSet(unordered));
+
+      try {
+        dao.selectParallel(where, executor, 8, true, msg -> {
+          throw new IllegalStateException("stop");
+        });
+        fail();
+      } catch (IllegalStateException e) {
+        assertEquals("stop", e.getMessage());
+      }
+    } finally {
+      executor.shutdown();
+    }
+    assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void testHeavyFields() {
+    String strValue = "testHeavyFields";
+    List<TestModel.DbMsg> msgs = Lists.newArrayList();
+    for (int i = 0; i < 3; i++) {
+      msgs.add(msgTemplate.toBuilder().setStringV(strValue).setInt32V(i).build());
+    }
+    dao.insertMulti(msgs);
+    WhereClause where = QueryCreator.where();
+    where.setCond(FieldAndValue.eq("string_v", strValue));
+    where.orderBy().asc("int32_v");
+    List<TestModel.DbMsg> expected = dao.selectByWhere(where);
+
+    PrimaryKeyProtoMessageDao<Long, TestModel.DbMsg> lightDao =
+        new PrimaryKeyProtoMessageDao<>(TestModel.DbMsg.class, primaryKey);
+    lightDao.setHeavyFields("string_map", "int64_arr");
+    lightDao.setJdbcTemplate(jdbcTemplate);
+    lightDao.afterPropertiesSet();
+    DeferredMessages<Long, TestModel.DbMsg> deferred = lightDao.selectDeferred(where);
+    assertEquals(3, deferred.getMessages().size());
+    for (TestModel.DbMsg msg : deferred.getMessages()) {
+      assertEquals(0, msg.getStringMapCount());
+      assertEquals(0, msg.getInt64ArrCount());
+      assertEquals(msgTemplate.getInt32MapMap(), msg.getInt32MapMap());
+    }
+    assertEquals(expected, deferred.loadAll());
+    assertEquals(Lists.newArrayList(expected.get(1)),
+        deferred.load(msg -> msg.getInt32V() == 1));
+    assertEquals(expected.subList(0, 1), lightDao.loadHeavyFields(expected.subList(0, 1)));
+
+    try {
+      lightDao.setHeavyFields(primaryKey);
+      fail();
+    } catch (IllegalArgumentException e) {
+      System.out.println(e.getMessage());
+    }
+  }
+
+  @Test
+  public void testHeavyFieldsPartialTable() {
+    // db_msg_lite只有id、int32_v、string_v列
+    PrimaryKeyProtoMessageDao<Long, TestModel.DbMsg> liteDao =
+        new PrimaryKeyProtoMessageDao<>(TestModel.DbMsg.class,
+            new FieldResolver<>(TestModel.DbMsg.class), "db_msg_lite", primaryKey);
+    liteDao.setHeavyFields("string_v");
+    liteDao.setJdbcTemplate(jdbcTemplate);
+    liteDao.afterPropertiesSet();
+    liteDao.warmUp(true);
+    for (int i = 0; i < 3; i++) {
+      jdbcTemplate.update("insert into db_msg_lite (int32_v, string_v) values (?, ?)", i,
+          "testHeavyFieldsPartialTable");
+    }
+    WhereClause where = QueryCreator.where();
+    where.setCond(FieldAndValue.gte("int32_v", 0));
+    where.orderBy().asc("id");
+    List<TestModel.DbMsg> msgs = liteDao.selectByWhere(where);
+    assertTrue(msgs.size() >= 3);
+    for (TestModel.DbMsg msg : msgs) {
+      assertEquals("", msg.getStringV());
+    }
+    List<TestModel.DbMsg> parallel = Lists.newArrayList();
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      liteDao.selectParallel(where, executor, 2, true, parallel::add);
+    } finally {
+      executor.shutdown();
+    }
+    assertEquals(msgs, parallel);
+
+    // slot_counter中没有DbMsg的任何字段
+    PrimaryKeyProtoMessageDao<Long, TestModel.DbMsg> mismatchDao =
+        new PrimaryKeyProtoMessageDao<>(TestModel.DbMsg.class,
+            new FieldResolver<>(TestModel.DbMsg.class), "slot_counter", primaryKey);
+    mismatchDao.setHeavyFields("string_v");
+    mismatchDao.setJdbcTemplate(jdbcTemplate);
+    mismatchDao.afterPropertiesSet();
+    try {
+      mismatchDao.selectByWhere(where);
+      fail();
+    } catch (IllegalStateException e) {
+      assertEquals("no light columns found in table slot_counter", e.getMessage());
+    }
+    for (TestModel.DbMsg msg : liteDao.loadHeavyFields(msgs)) {
+      assertEquals(jdbcTemplate
+          .queryForObject("select string_v from db_msg_lite where id=?", String.class,
+              msg.getId()), msg.getStringV());
+    }
+  }
+
+  @Test
+  public void testTypedMapping() {
+    String strValue = "testTypedMapping";
+    dao.insert(msgTemplate.toBuilder().setStringV(strValue).build());
+    jdbcTemplate.update("update db_msg set int64_v = null, bool_v = null where string_v = ?",
+        strValue);
+    ProtoMessageRowMapper<TestModel.DbMsg> untypedMapper =
+        new ProtoMessageRowMapper<>(dao.getMessageHelper(),
+            new FieldResolver<>(TestModel.DbMsg.class));
+    untypedMapper.setTypedMapping(false);
+    List<TestModel.DbMsg> expected =
+        jdbcTemplate.query("select * from db_msg where string_v = ?", untypedMapper, strValue);
+    List<TestModel.DbMsg> msgs = dao.selectByCond(FieldAndValue.eq("string_v", strValue));
+    assertEquals(1, msgs.size());
+    assertEquals(expected, msgs);
+    TestModel.DbMsg msg = msgs.get(0);
+    assertEquals(msgTemplate.getInt32V(), msg.getInt32V());
+    assertEquals(0L, msg.getInt64V());
+    assertEquals(msgTemplate.getFloatV(), msg.getFloatV(), 0.0001f);
+    assertEquals(msgTemplate.getDoubleV(), msg.getDoubleV(), 0.000001);
+    assertFalse(msg.getBoolV());
+    assertEquals(msgTemplate.getEnumaV(), msg.getEnumaV());
+
+    assertEquals("Int32V", ScalarColumnMapper.javaName(
+        dao.getMessageHelper().getFieldDescriptor("int32_v")));
+  }
+
+  @Test
+  public void testValueInterner() {
+    String strValue = "testValueInterner";
+    for (int i = 0; i < 3; i++) {
+      dao.insert(msgTemplate.toBuilder().setStringV(strValue).setInt32V(i).build());
+    }
+    IExpression cond = FieldAndValue.eq("string_v", strValue);
+    List<TestModel.DbMsg> msgs = dao.selectByCond(cond);
+    assertEquals(3, msgs.size());
+
+    dao.setValueInterner(new ValueInterner());
+    try {
+      List<TestModel.DbMsg> interned = dao.selectByCond(cond);
+      assertEquals(msgs, interned);
+      TestModel.DbMsg msg0 = interned.get(0);
+      for (TestModel.DbMsg msg : interned) {
+        assertSame(msg0.getStringV(), msg.getStringV());
+        assertSame(msg0.getStringArr(1), msg.getStringArr(1));
+        assertSame(msg0.getStringMapMap().get("%"), msg.getStringMapMap().get("%"));
+      }
+    } finally {
+      dao.setValueInterner(null);
+    }
+  }
+
+  @Test
+  public void testWarmUp() {
+    dao.warmUp(false);
+    dao.warmUp(true);
+
+    ProtoMessageDao<TestModel.DbMsg> missingTableDao =
+        new ProtoMessageDao<>(TestModel.DbMsg.class, new FieldResolver<>(TestModel.DbMsg.class),
+            "db_msg_missing");
+    missingTableDao.setJdbcTemplate(jdbcTemplate);
+    missingTableDao.warmUp(false);
+    try {
+      missingTableDao.warmUp(true);
+      fail();
+    } catch (DataAccessException e) {
+      System.out.println(e.getMessage());
+    }
+
+    // 有延迟加载字段时，不校验也不会查询数据表的列
+    PrimaryKeyProtoMessageDao<Long, TestModel.DbMsg> heavyMissingTableDao =
+        new PrimaryKeyProtoMessageDao<>(TestModel.DbMsg.class,
+            new FieldResolver<>(TestModel.DbMsg.class), "db_msg_missing", primaryKey);
+    heavyMissingTableDao.setHeavyFields("string_map");
+    heavyMissingTableDao.setJdbcTemplate(jdbcTemplate);
+    heavyMissingTableDao.warmUp(false);
+    try {
+      heavyMissingTableDao.warmUp(true);
+      fail();
+    } catch (DataAccessException e) {
+      System.out.println(e.getMessage());
+    }
+  }
+
   @Test
   public void testUpdate() {
     TestModel.DbMsg oldItem = dao.selectOneByPrimaryKey(1L);
@@ -284,4 +506,196 @@ public class TestMessageDao {
       System.out.println(e.getMessage());
     }
   }
+
+  @Test
+  public void testCounter() {
+    dao.setCounterFlushIntervalMs(0);
+    dao.insert(TestModel.DbMsg.newBuilder().setInt32V(1).setInt64V(10).setStringV("testCounter")
+        .build());
+    long id = dao.selectOneByCond(FieldAndValue.eq("string_v", "testCounter")).getId();
+    for (int i = 0; i < 10; i++) {
+      dao.incrCounter(id, "int32_v", 1);
+      dao.incrCounter(id, "int64_v", 2);
+    }
+    assertEquals(10, dao.getPendingCounter(id, "int32_v"));
+    assertEquals(20, dao.getPendingCounter(id, "int64_v"));
+    // not flushed yet
+    assertEquals(1, dao.selectOneByPrimaryKey(id).getInt32V());
+
+    assertEquals(1, dao.flushCounters());
+    assertEquals(0, dao.getPendingCounter(id, "int32_v"));
+    TestModel.DbMsg msg = dao.selectOneByPrimaryKey(id);
+    assertEquals(11, msg.getInt32V());
+    assertEquals(30, msg.getInt64V());
+    assertEquals(0, dao.flushCounters());
+
+    // flush on destroy
+    dao.incrCounter(id, "int32_v", -1);
+    dao.destroy();
+    assertEquals(10, dao.selectOneByPrimaryKey(id).getInt32V());
+
+    try {
+      dao.incrCounter(id, "string_v", 1);
+      fail();
+    } catch (IllegalArgumentException e) {
+      System.out.println(e.getMessage());
+    }
+  }
+
+  @Test
+  public void testCounterFlushFailure() {
+    // db_msg_lite没有int64_v列，包含int64_v的分组会失败
+    PrimaryKeyProtoMessageDao<Long, TestModel.DbMsg> liteDao =
+        new PrimaryKeyProtoMessageDao<>(TestModel.DbMsg.class,
+            new FieldResolver<>(TestModel.DbMsg.class), "db_msg_lite", primaryKey);
+    liteDao.setJdbcTemplate(jdbcTemplate);
+    liteDao.afterPropertiesSet();
+    liteDao.setCounterFlushIntervalMs(0);
+    List<Long> ids = Lists.newArrayList();
+    for (int i = 0; i < 5; i++) {
+      jdbcTemplate.update("insert into db_msg_lite (int32_v, string_v) values (?, ?)", 1,
+          "testCounterFlushFailure");
+      ids.add(jdbcTemplate.queryForObject("select max(id) from db_msg_lite", Long.class));
+    }
+    for (long id : ids) {
+      liteDao.incrCounter(id, "int32_v", 1);
+    }
+    liteDao.incrCounter(ids.get(0), "int64_v", 1);
+    for (int round = 0; round < 2; round++) {
+      try {
+        liteDao.flushCounters();
+        fail();
+      } catch (DataAccessException e) {
+        System.out.println(e.getMessage());
+      }
+      // 整体回滚，增量合并回去等待下一次flush，已执行的分组不会重复累加
+      for (long id : ids) {
+        assertEquals(1, liteDao.getPendingCounter(id, "int32_v"));
+        assertEquals(Integer.valueOf(1), jdbcTemplate
+            .queryForObject("select int32_v from db_msg_lite where id=?", Integer.class, id));
+      }
+      assertEquals(1, liteDao.getPendingCounter(ids.get(0), "int64_v"));
+    }
+  }
+
+  @Test
+  public void testDeleteInChunks() {
+    prepare("testDeleteInChunks", 7);
+    IExpression cond = FieldAndValue.eq("string_v", "testDeleteInChunks");
+    List<Long> chunkRows = Lists.newArrayList();
+    ChunkProgress progress =
+        dao.deleteInChunks(cond, 3, RateLimit.pause(1, TimeUnit.MILLISECONDS),
+            p -> chunkRows.add(p.getRows()));
+    assertEquals(7, progress.getRows());
+    assertEquals(3, progress.getChunks());
+    assertEquals(Lists.newArrayList(3L, 6L, 7L), chunkRows);
+    assertEquals(0, dao.count(cond));
+
+    // DELETE ... LIMIT
+    ProtoMessageDao<TestModel.DbMsg> plainDao = new ProtoMessageDao<>(TestModel.DbMsg.class);
+    plainDao.setJdbcTemplate(jdbcTemplate);
+    plainDao.afterPropertiesSet();
+    prepare("testDeleteInChunks", 4);
+    progress = plainDao.deleteInChunks(cond, 2, RateLimit.NONE);
+    assertEquals(4, progress.getRows());
+    assertEquals(0, dao.count(cond));
+
+    int[] rows = prepare("testDeleteInChunks", 5);
+    List<Long> ids = Lists.newArrayList();
+    for (TestModel.DbMsg msg : dao.selectByCond(cond)) {
+      ids.add(msg.getId());
+    }
+    assertEquals(rows.length, ids.size());
+    progress = dao.deleteMultiByPrimaryKeyInChunks(ids, 2, RateLimit.rowsPerSecond(1000));
+    assertEquals(5, progress.getRows());
+    assertEquals(3, progress.getChunks());
+    assertFalse(progress.isInterrupted());
+    assertEquals(0, dao.count(cond));
+  }
+
+  @Test
+  public void testDeleteInChunksConcurrentUpdate() {
+    String strValue = "testDeleteInChunksConcurrentUpdate";
+    prepare(strValue, 5);
+    IExpression cond = FieldAndValue.eq("string_v", strValue);
+    // 每批查询主键之后，把这一批的第一条修改为不满足条件
+    List<Long> revived = Lists.newArrayList();
+    PrimaryKeyProtoMessageDao<Long, TestModel.DbMsg> racingDao =
+        new PrimaryKeyProtoMessageDao<Long, TestModel.DbMsg>(TestModel.DbMsg.class, primaryKey) {
+          @Override
+          public <V> List<V> doSelect(SelectSql selectSql, RowMapper<V> mapper) {
+            List<V> result = super.doSelect(selectSql, mapper);
+            if (mapper instanceof ProtoFieldRowMapper && !result.isEmpty()) {
+              Long id = (Long) result.get(0);
+              jdbcTemplate.update("update db_msg set string_v = 'revived' where id = ?", id);
+              revived.add(id);
+            }
+            return result;
+          }
+        };
+    racingDao.setJdbcTemplate(jdbcTemplate);
+    racingDao.afterPropertiesSet();
+    ChunkProgress progress = racingDao.deleteInChunks(cond, 2, RateLimit.NONE);
+    assertEquals(3, revived.size());
+    assertEquals(2, progress.getRows());
+    assertEquals(0, dao.count(cond));
+    for (long id : revived) {
+      assertEquals("revived", dao.selectOneByPrimaryKey(id).getStringV());
+    }
+  }
+
+  @Test
+  public void testDeleteInChunksRateLimitAndInterrupt() {
+    prepare("testDeleteInChunksRateLimitAndInterrupt", 7);
+    IExpression cond = FieldAndValue.eq("string_v", "testDeleteInChunksRateLimitAndInterrupt");
+    // 只在下一批之前限流，最后一批之后不限流
+    List<Integer> acquired = Lists.newArrayList();
+    ChunkProgress progress = dao.deleteInChunks(cond, 3, acquired::add);
+    assertEquals(3, progress.getChunks());
+    assertEquals(Lists.newArrayList(3, 3), acquired);
+    assertFalse(progress.isInterrupted());
+
+    prepare("testDeleteInChunksRateLimitAndInterrupt", 7);
+    try {
+      progress = dao.deleteInChunks(cond, 3, RateLimit.NONE,
+          p -> Thread.currentThread().interrupt());
+      assertTrue(progress.isInterrupted());
+      assertEquals(1, progress.getChunks());
+      assertEquals(3, progress.getRows());
+      assertEquals(4, dao.count(cond));
+    } finally {
+      // 中断状态保留
+      assertTrue(Thread.interrupted());
+    }
+  }
+
+  @Test
+  public void testArchiveInChunks() {
+    prepare("testArchiveInChunks", 5);
+    IExpression cond = FieldAndValue.eq("string_v", "testArchiveInChunks");
+    String countArchive =
+        "select count(*) from db_msg_archive where string_v = 'testArchiveInChunks'";
+    List<Long> lastKeys = Lists.newArrayList();
+    ChunkProgress progress = dao.archiveInChunks("db_msg_archive", cond, null, 2, RateLimit.NONE,
+        p -> lastKeys.add(p.getLastKey()));
+    assertEquals(5, progress.getRows());
+    assertEquals(3, progress.getChunks());
+    assertEquals(3, lastKeys.size());
+    assertEquals(lastKeys.get(2), progress.getLastKey());
+    assertEquals(0, dao.count(cond));
+    assertEquals(5, jdbcTemplate.queryForObject(countArchive, Integer.class).intValue());
+
+    // resume after last key
+    prepare("testArchiveInChunks", 3);
+    progress = dao.archiveInChunks("db_msg_archive", cond, progress.getLastKey(), 10,
+        RateLimit.NONE, null);
+    assertEquals(3, progress.getRows());
+    assertEquals(1, progress.getChunks());
+    assertEquals(0, dao.count(cond));
+    assertEquals(8, jdbcTemplate.queryForObject(countArchive, Integer.class).intValue());
+
+    progress = dao.archiveInChunks("db_msg_archive", cond, 2, RateLimit.NONE);
+    assertEquals(0, progress.getRows());
+    assertEquals(0, progress.getChunks());
+  }
 }
@@ -0,0 +1,79 @@
+package protobuf4j.orm.dao;
+
+import com.google.common.collect.Lists;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import protobuf4j.orm.sql.FieldAndValue;
+import protobuf4j.test.proto.TestModel;
+
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = JdbcConfiguration.class)
+public class TestShardedCounterDao {
+  @Autowired
+  private JdbcTemplate jdbcTemplate;
+
+  private ShardedCounterDao<String, TestModel.SlotCounter> dao;
+
+  @Before
+  public void setup() {
+    dao = new ShardedCounterDao<>(TestModel.SlotCounter.class, "counter_key", "slot", 4,
+        "view_count", "like_count");
+    dao.setJdbcTemplate(jdbcTemplate);
+    dao.afterPropertiesSet();
+  }
+
+  @Test
+  public void testIncrAndTotal() {
+    for (int i = 0; i < 20; i++) {
+      assertEquals(1, dao.incr("testIncr", "view_count", 2));
+    }
+    dao.setSlotStrategy(ShardedCounterDao.SlotStrategy.THREAD);
+    assertEquals(1, dao.incr("testIncr", "like_count", 1));
+    assertEquals(0, dao.incr("testIncr", "like_count", 0));
+    assertEquals(40, dao.total("testIncr", "view_count"));
+    assertEquals(1, dao.total("testIncr", "like_count"));
+    assertEquals(0, dao.total("testIncr-none", "view_count"));
+    int rows = dao.count(FieldAndValue.eq("counter_key", "testIncr"));
+    assertTrue(rows > 1 && rows <= 4);
+
+    Map<String, Long> totals =
+        dao.totals(Lists.newArrayList("testIncr", "testIncr-none"), "view_count");
+    assertEquals(1, totals.size());
+    assertEquals(40L, totals.get("testIncr").longValue());
+
+    try {
+      dao.incr("testIncr", "slot", 1);
+      fail();
+    } catch (IllegalArgumentException e) {
+      System.out.println(e.getMessage());
+    }
+  }
+
+  @Test
+  public void testCompact() {
+    for (int i = 0; i < 20; i++) {
+      dao.incr("testCompact", "view_count", 1);
+      dao.incr("testCompact", "like_count", 3);
+    }
+    int rows = dao.count(FieldAndValue.eq("counter_key", "testCompact"));
+    int deleted = dao.compactAll();
+    assertTrue(deleted > 0);
+    assertEquals(1, dao.count(FieldAndValue.eq("counter_key", "testCompact")));
+    assertTrue(rows > dao.count(FieldAndValue.eq("counter_key", "testCompact")));
+    TestModel.SlotCounter base = dao.selectOneByCond(FieldAndValue.eq("counter_key", "testCompact"));
+    assertEquals(ShardedCounterDao.BASE_SLOT, base.getSlot());
+    assertEquals(20, base.getViewCount());
+    assertEquals(60, base.getLikeCount());
+    assertEquals(0, dao.compact("testCompact"));
+    assertEquals(20, dao.total("testCompact", "view_count"));
+  }
+}
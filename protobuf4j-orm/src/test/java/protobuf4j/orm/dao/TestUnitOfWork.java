@@ -0,0 +1,97 @@
+package protobuf4j.orm.dao;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import protobuf4j.orm.sql.FieldAndValue;
+import protobuf4j.orm.sql.IExpression;
+import protobuf4j.orm.sql.clause.SetClause;
+import protobuf4j.test.proto.TestModel;
+
+import static org.junit.Assert.*;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = JdbcConfiguration.class)
+public class TestUnitOfWork {
+  @Autowired
+  private JdbcTemplate jdbcTemplate;
+
+  private ProtoMessageDao<TestModel.DbMsg> msgDao;
+  private ProtoMessageDao<TestModel.SlotCounter> counterDao;
+
+  @Before
+  public void setup() {
+    msgDao = new ProtoMessageDao<>(TestModel.DbMsg.class);
+    msgDao.setJdbcTemplate(jdbcTemplate);
+    msgDao.afterPropertiesSet();
+    counterDao = new ProtoMessageDao<>(TestModel.SlotCounter.class);
+    counterDao.setJdbcTemplate(jdbcTemplate);
+    counterDao.afterPropertiesSet();
+  }
+
+  private TestModel.DbMsg msg(String stringV, int int32V) {
+    return TestModel.DbMsg.newBuilder().setStringV(stringV).setInt32V(int32V).build();
+  }
+
+  private TestModel.SlotCounter counter(String key) {
+    return TestModel.SlotCounter.newBuilder().setCounterKey(key).setViewCount(1).build();
+  }
+
+  @Test
+  public void testCommit() {
+    IExpression cond = FieldAndValue.eq("string_v", "testUnitOfWork");
+    UnitOfWork unitOfWork = new UnitOfWork(jdbcTemplate);
+    UnitOfWork.Result r0 = unitOfWork.insert(msgDao, msg("testUnitOfWork", 1));
+    unitOfWork.insert(msgDao, msg("testUnitOfWork", 2));
+    unitOfWork.insert(msgDao, msg("testUnitOfWork", 3));
+    UnitOfWork.Result r3 = unitOfWork.insert(counterDao, counter("testUnitOfWork"));
+    unitOfWork.update(msgDao, new SetClause().setValue("int64_v", 9L),
+        cond.and(FieldAndValue.gt("int32_v", 1)));
+    UnitOfWork.Result r5 = unitOfWork.update(msgDao, new SetClause(), cond);
+    UnitOfWork.Result r6 =
+        unitOfWork.delete(msgDao, cond.and(FieldAndValue.eq("int32_v", 3)));
+    assertEquals(7, unitOfWork.size());
+    assertFalse(r0.isDone());
+    assertTrue(r5.isDone());
+    try {
+      r0.getRows();
+      fail();
+    } catch (IllegalStateException e) {
+      System.out.println(e.getMessage());
+    }
+
+    assertArrayEquals(new int[]{1, 1, 1, 1, 2, 0, 1}, unitOfWork.commit());
+    assertEquals(1, r3.getRows());
+    assertEquals(1, r6.getRows());
+    assertEquals(2, msgDao.count(cond));
+    assertEquals(1, msgDao.count(cond.and(FieldAndValue.eq("int64_v", 9L))));
+    assertEquals(1, counterDao.count(FieldAndValue.eq("counter_key", "testUnitOfWork")));
+
+    try {
+      unitOfWork.commit();
+      fail();
+    } catch (IllegalStateException e) {
+      System.out.println(e.getMessage());
+    }
+  }
+
+  @Test
+  public void testRollback() {
+    counterDao.insert(counter("testUnitOfWorkRollback"));
+    UnitOfWork unitOfWork = new UnitOfWork(jdbcTemplate);
+    unitOfWork.insert(msgDao, msg("testUnitOfWorkRollback", 1));
+    unitOfWork.insert(counterDao, counter("testUnitOfWorkRollback"));
+    try {
+      unitOfWork.commit();
+      fail();
+    } catch (DataAccessException e) {
+      System.out.println(e.getMessage());
+    }
+    assertEquals(0, msgDao.count(FieldAndValue.eq("string_v", "testUnitOfWorkRollback")));
+  }
+}
@@ -0,0 +1,40 @@
+package protobuf4j.orm.util;
+
+import com.google.protobuf.ByteString;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * author: yuanwq
+ */
+public class TestValueInterner {
+  @Test
+  public void test() {
+    ValueInterner interner = new ValueInterner(16, 4);
+    String a = interner.intern(new String("abc"));
+    assertSame(a, interner.intern(new String("abc")));
+    assertSame(a, interner.internValue(new String("abc")));
+    assertNull(interner.intern((String) null));
+    assertEquals(1, interner.internValue(1));
+
+    String longValue = "abcde";
+    assertSame(longValue, interner.intern(longValue));
+    assertNotSame(longValue, interner.intern(new String(longValue)));
+
+    ByteString b = interner.intern(ByteString.copyFromUtf8("abc"));
+    assertSame(b, interner.intern(ByteString.copyFromUtf8("abc")));
+    assertSame(b, interner.internValue(ByteString.copyFromUtf8("abc")));
+    assertSame(a, interner.intern(new String("abc")));
+
+    for (int i = 0; i < 100; i++) {
+      String v = String.valueOf(i);
+      assertEquals(v, interner.intern(v));
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testCapacity() {
+    new ValueInterner(1, 4);
+  }
+}
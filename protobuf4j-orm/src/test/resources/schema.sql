@@ -29,3 +29,80 @@ create table `db_msg` (
 
   PRIMARY KEY (`id`)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8;
+
+create table `slot_counter` (
+  `counter_key` VARCHAR(100) NOT NULL,
+  `slot` INT(11) NOT NULL,
+
+  `view_count` BIGINT(20) DEFAULT 0,
+  `like_count` INT(11) DEFAULT 0,
+
+  PRIMARY KEY (`counter_key`, `slot`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8;
+
+create table `db_msg_archive` (
+  `id` BIGINT(20) NOT NULL,
+
+  `int32_v` INT(20) DEFAULT 0,
+  `int64_v` BIGINT(20) DEFAULT 0,
+  `float_v` DECIMAL(10,4) DEFAULT 0,
+  `double_v` DECIMAL(20,6) DEFAULT 0,
+  `bool_v` TINYINT(1) DEFAULT 0,
+  `enuma_v` TINYINT(2) DEFAULT 0,
+  `string_v` VARCHAR(100) DEFAULT '',
+
+  `int32_arr` TEXT,
+  `int64_arr` TEXT,
+  `float_arr` TEXT,
+  `double_arr` TEXT,
+  `bool_arr` TEXT,
+  `string_arr` TEXT,
+  `enuma_arr` TEXT,
+
+  `int32_map` TEXT,
+  `int64_map` TEXT,
+  `float_map` TEXT,
+  `double_map` TEXT,
+  `bool_map` TEXT,
+  `string_map` TEXT,
+  `enuma_map` TEXT,
+
+  `create_time` DATETIME DEFAULT now(),
+
+  PRIMARY KEY (`id`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8;
+
+create table `bin_msg` (
+  `id` BIGINT(20) NOT NULL AUTO_INCREMENT,
+
+  `msgb` BLOB,
+  `int32_arr` BLOB,
+  `string_arr` BLOB,
+  `msgb_arr` BLOB,
+  `int64_map` BLOB,
+  `msgb_map` BLOB,
+
+  `bytes_v` BLOB,
+  `bytes_arr` BLOB,
+  `bytes_map` BLOB,
+
+  PRIMARY KEY (`id`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8;
+
+create table `blob_msg` (
+  `id` BIGINT(20) NOT NULL AUTO_INCREMENT,
+  `status` INT(11) DEFAULT 0,
+  `data` BLOB,
+
+  PRIMARY KEY (`id`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8;
+
+-- 只存储DbMsg的部分字段
+create table `db_msg_lite` (
+  `id` BIGINT(20) NOT NULL AUTO_INCREMENT,
+
+  `int32_v` INT(20) DEFAULT 0,
+  `string_v` VARCHAR(100) DEFAULT '',
+
+  PRIMARY KEY (`id`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8;
@@ -1,5 +1,6 @@
 package protobuf4j.orm.sql;
 
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import lombok.Data;
 import lombok.NonNull;
@@ -7,9 +8,12 @@ import org.apache.commons.lang3.StringUtils;
 import protobuf4j.orm.sql.expr.Value;
 
 import javax.annotation.Nonnull;
+import java.util.Collection;
 import java.util.LinkedHashMap;
 import java.util.List;
 
+import static com.google.common.base.Preconditions.*;
+
 /**
  * author: yuanwq
  * date: 2018/7/26
@@ -20,6 +24,11 @@ public class InsertSql extends AbstractSqlObject implements ISqlStatement {
   private final ITableRef table;
   private final LinkedHashMap<String, IExpression> insertFields = Maps.newLinkedHashMap();
   private boolean ignore = false;
+  /**
+   * 插入的数据来源查询：{@code INSERT INTO t (columns) SELECT ...}，与{@link #insertFields}不能同时使用
+   */
+  private final List<String> sourceColumns = Lists.newArrayList();
+  private SelectSql source;
 
   public InsertSql addValue(String field, Object value) {
     return addExpression(field, Value.of(value, field));
@@ -30,6 +39,17 @@ public class InsertSql extends AbstractSqlObject implements ISqlStatement {
     return this;
   }
 
+  /**
+   * 插入{@code source}查询的结果，{@code source}选择的列需要与{@code columns}一一对应
+   */
+  public InsertSql select(Collection<String> columns, @NonNull SelectSql source) {
+    checkArgument(!columns.isEmpty(), "no column to insert");
+    this.sourceColumns.clear();
+    this.sourceColumns.addAll(columns);
+    this.source = source;
+    return this;
+  }
+
   @Override
   public StringBuilder toSqlTemplate(@Nonnull StringBuilder sb) {
     if (isIgnore()) {
@@ -38,6 +58,11 @@ public class InsertSql extends AbstractSqlObject implements ISqlStatement {
       sb.append("INSERT INTO ");
     }
     table.toSqlTemplate(sb);
+    if (source != null) {
+      checkState(insertFields.isEmpty(), "both values and select source to insert");
+      sb.append(" (").append(StringUtils.join(sourceColumns, ",")).append(") ");
+      return source.toSqlTemplate(sb);
+    }
     sb.append(" (").append(StringUtils.join(insertFields.keySet(), ",")).append(") VALUES (");
     boolean first = true;
     for (IExpression value : insertFields.values()) {
@@ -60,6 +85,11 @@ public class InsertSql extends AbstractSqlObject implements ISqlStatement {
       sb.append("INSERT INTO ");
     }
     table.toSolidSql(sb);
+    if (source != null) {
+      checkState(insertFields.isEmpty(), "both values and select source to insert");
+      sb.append(" (").append(StringUtils.join(sourceColumns, ",")).append(") ");
+      return source.toSolidSql(sb);
+    }
     sb.append(" (").append(StringUtils.join(insertFields.keySet(), ",")).append(") VALUES (");
     boolean first = true;
     for (IExpression value : insertFields.values()) {
@@ -78,6 +108,9 @@ public class InsertSql extends AbstractSqlObject implements ISqlStatement {
   public List<ISqlValue> collectSqlValue(@Nonnull List<ISqlValue> sqlValues) {
     table.collectSqlValue(sqlValues);
     insertFields.values().forEach(v -> v.collectSqlValue(sqlValues));
+    if (source != null) {
+      source.collectSqlValue(sqlValues);
+    }
     return sqlValues;
   }
 }
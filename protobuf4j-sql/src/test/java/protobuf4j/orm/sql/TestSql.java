@@ -207,4 +207,29 @@ public class TestSql {
     assertEquals("INSERT IGNORE INTO aa (b,c) VALUES (1,a+2)",
         sql.toSolidSql(new StringBuilder()).toString());
   }
+
+  @Test
+  public void testInsertSelect() {
+    SelectSql selectSql = QueryCreator.selectFrom("bb");
+    selectSql.getSelect().select("a").select("b");
+    selectSql.where().limit(10).setCond(FieldAndValue.gt("a", 1));
+    selectSql.where().orderBy().asc("a");
+    InsertSql sql = QueryCreator.insertInto("aa").select(Lists.newArrayList("a", "b"), selectSql);
+    System.out.println(sql);
+    assertEquals("INSERT INTO aa (a,b) SELECT a,b FROM bb WHERE a>? ORDER BY a ASC LIMIT 10",
+        sql.toSqlTemplate(new StringBuilder()).toString());
+    assertEquals("INSERT INTO aa (a,b) SELECT a,b FROM bb WHERE a>1 ORDER BY a ASC LIMIT 10",
+        sql.toSolidSql(new StringBuilder()).toString());
+    List<ISqlValue> sqlValues = sql.collectSqlValue(Lists.newArrayList());
+    assertEquals(1, sqlValues.size());
+    assertEquals(1, sqlValues.get(0).getValue());
+
+    sql.addValue("c", 1);
+    try {
+      sql.toSqlTemplate(new StringBuilder());
+      fail();
+    } catch (IllegalStateException e) {
+      System.out.println(e.getMessage());
+    }
+  }
 }